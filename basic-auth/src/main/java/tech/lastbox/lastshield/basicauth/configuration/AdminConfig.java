@@ -21,10 +21,12 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import tech.lastbox.jwt.InvalidationEvent;
+import tech.lastbox.jwt.InvalidationTransport;
 import tech.lastbox.lastshield.basicauth.entity.User;
 import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
 import tech.lastbox.lastshield.basicauth.repository.UserRepository;
+import tech.lastbox.lastshield.basicauth.service.PasswordHashingExecutor;
 
 import java.util.Optional;
 
@@ -36,19 +38,22 @@ import java.util.Optional;
 @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
 public class AdminConfig {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
     private final BasicAuthProperties basicAuthProperties;
+    private final InvalidationTransport invalidationTransport;
     private final Logger logger = LoggerFactory.getLogger(AdminConfig.class);
 
-    public AdminConfig(UserRepository userRepository, PasswordEncoder passwordEncoder, BasicAuthProperties basicAuthProperties) {
+    public AdminConfig(UserRepository userRepository, PasswordHashingExecutor passwordHashingExecutor, BasicAuthProperties basicAuthProperties, InvalidationTransport invalidationTransport) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
         this.basicAuthProperties = basicAuthProperties;
+        this.invalidationTransport = invalidationTransport;
     }
 
     /**
      * CommandLineRunner bean that runs when the application starts.
      * It checks if an admin user exists, and if not, creates one with the configured properties.
+     * The password is hashed on the {@link PasswordHashingExecutor}, like the passwords of every other user.
      *
      * @return CommandLineRunner that sets up or updates the admin user.
      */
@@ -66,16 +71,25 @@ public class AdminConfig {
                 User adminUser = new User();
                 adminUser.setName(adminName);
                 adminUser.setUsername(adminUsername);
-                adminUser.setPassword(passwordEncoder.encode(adminPassword));
+                adminUser.setPassword(passwordHashingExecutor.encode(adminPassword));
                 adminUser.setRole("ADMIN");
                 userRepository.save(adminUser);
+                invalidationTransport.publish(InvalidationEvent.principalChanged(adminUsername));
                 logger.info("Admin user registered with login: {}", adminUsername);
             } else {
                 User adminUser = adminOptional.get();
+                String previousUsername = adminUser.getUsername();
                 if (!adminUser.getName().equals(adminName)) adminUser.setName(adminName);
                 if (!adminUser.getUsername().equals(adminUsername)) adminUser.setUsername(adminUsername);
-                if (!passwordEncoder.matches(adminPassword, adminUser.getPassword())) adminUser.setPassword(passwordEncoder.encode(adminPassword));
+                if (!passwordHashingExecutor.matches(adminPassword, adminUser.getPassword())
+                        || passwordHashingExecutor.upgradeEncoding(adminUser.getPassword())) {
+                    adminUser.setPassword(passwordHashingExecutor.encode(adminPassword));
+                }
                 userRepository.save(adminUser);
+                invalidationTransport.publish(InvalidationEvent.principalChanged(previousUsername));
+                if (!previousUsername.equals(adminUsername)) {
+                    invalidationTransport.publish(InvalidationEvent.principalChanged(adminUsername));
+                }
                 logger.info("Admin user is set with login: {}", adminUsername);
             }
         };
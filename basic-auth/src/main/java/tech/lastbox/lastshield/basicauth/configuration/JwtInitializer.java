@@ -1,17 +1,31 @@
 package tech.lastbox.lastshield.basicauth.configuration;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import tech.lastbox.jwt.ExpirationTimeUnit;
+import tech.lastbox.jwt.InMemoryInvalidationTransport;
+import tech.lastbox.jwt.InMemoryTokenStore;
+import tech.lastbox.jwt.InvalidationTransport;
+import tech.lastbox.jwt.JdbcInvalidationTransport;
+import tech.lastbox.jwt.JdbcTokenStore;
 import tech.lastbox.jwt.JwtAlgorithm;
 import tech.lastbox.jwt.JwtConfig;
 import tech.lastbox.jwt.JwtService;
+import tech.lastbox.jwt.MappedRevocationSet;
+import tech.lastbox.jwt.TokenStore;
 import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+import tech.lastbox.lastshield.basicauth.enviroment.InvalidationTransportType;
+import tech.lastbox.lastshield.basicauth.repository.MVStoreTokenStore;
 import tech.lastbox.lastshield.basicauth.repository.TokenRepository;
 
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
 @Configuration
 public class JwtInitializer {
     private final BasicAuthProperties basicAuthProperties;
@@ -25,36 +39,160 @@ public class JwtInitializer {
     /**
      * Creates a JWT configuration bean.
      *
+     * @param tokenStore the token store to persist tokens in, or null to keep tokens stateless.
      * @return JwtConfig for configuring JWT behavior.
      */
-    private JwtConfig getJwtConfig() {
+    private JwtConfig getJwtConfig(TokenStore tokenStore) {
+        if (tokenStore == null) {
+            return new JwtConfig(JwtAlgorithm.HMAC256,
+                    basicAuthProperties.getSecretKey(),
+                    basicAuthProperties.getIssuer(),
+                    7,
+                    ExpirationTimeUnit.DAYS);
+        }
         return new JwtConfig(JwtAlgorithm.HMAC256,
                 basicAuthProperties.getSecretKey(),
                 basicAuthProperties.getIssuer(),
                 7,
                 ExpirationTimeUnit.DAYS,
-                tokenRepository);
+                tokenStore);
+    }
+
+    /**
+     * Resolves the token store selected with {@code lastshield.basicauth.token-store}.
+     *
+     * @param inMemoryTokenStore the in-memory token store, only available when it is selected.
+     * @param mvStoreTokenStore the MVStore token store, only available when it is selected.
+     * @param jdbcTokenStore the JDBC token store, only available when it is selected.
+     * @return the selected token store, or null when tokens are not persisted.
+     */
+    private TokenStore resolveTokenStore(ObjectProvider<InMemoryTokenStore> inMemoryTokenStore,
+                                         ObjectProvider<MVStoreTokenStore> mvStoreTokenStore,
+                                         ObjectProvider<JdbcTokenStore> jdbcTokenStore) {
+        return switch (basicAuthProperties.getTokenStore()) {
+            case JPA -> tokenRepository;
+            case JDBC -> jdbcTokenStore.getObject();
+            case MEMORY -> inMemoryTokenStore.getObject();
+            case MVSTORE -> mvStoreTokenStore.getObject();
+            case NONE -> null;
+        };
+    }
+
+    /**
+     * Creates the InMemoryTokenStore bean, only when {@code lastshield.basicauth.token-store} is {@code memory}.
+     *
+     * @return InMemoryTokenStore that keeps tokens on the heap until they expire.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "lastshield.basicauth.token-store", havingValue = "memory")
+    public InMemoryTokenStore inMemoryTokenStore() {
+        return new InMemoryTokenStore();
+    }
+
+    /**
+     * Creates the MVStoreTokenStore bean, only when {@code lastshield.basicauth.token-store} is {@code mvstore}.
+     * Tokens are kept in the file set by {@code lastshield.basicauth.token-store-file}, with a page cache of
+     * {@code lastshield.basicauth.token-store-cache-size} megabytes.
+     *
+     * @return MVStoreTokenStore that persists tokens in an embedded H2 MVStore file.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "lastshield.basicauth.token-store", havingValue = "mvstore")
+    public MVStoreTokenStore mvStoreTokenStore() {
+        return new MVStoreTokenStore(Path.of(basicAuthProperties.getTokenStoreFile()),
+                basicAuthProperties.getTokenStoreCacheSize(), Duration.ofSeconds(1), Duration.ofMinutes(10));
+    }
+
+    /**
+     * Creates the JdbcTokenStore bean, only when {@code lastshield.basicauth.token-store} is {@code jdbc}.
+     *
+     * @param dataSource the application data source, holding the token table.
+     * @return JdbcTokenStore that persists tokens with plain prepared statements.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "lastshield.basicauth.token-store", havingValue = "jdbc")
+    public JdbcTokenStore jdbcTokenStore(DataSource dataSource) {
+        return new JdbcTokenStore(dataSource);
     }
 
     /**
-     * Creates a PasswordEncoder bean using BCryptPasswordEncoder.
+     * Creates the PasswordEncoder bean.
+     * New passwords are encoded with the algorithm selected by {@code lastshield.basicauth.password-encoder}, with
+     * its configured or calibrated parameters, while passwords encoded with the other algorithms keep matching.
      *
-     * @return PasswordEncoder that uses BCrypt for hashing passwords.
+     * @return PasswordEncoder delegating to the supported hashing algorithms.
      */
     @Bean
     @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return PasswordEncoderFactory.create(basicAuthProperties);
+    }
+
+    /**
+     * Enables JDBC batching of Hibernate inserts and updates, in batches matching the identifier blocks of the
+     * {@code users_seq} sequence, so bulk imports send one statement per 50 users. Values set through
+     * {@code spring.jpa.properties} take precedence. The method is static because the entity manager factory needs
+     * it before this configuration, whose token repository depends on that factory, can be created.
+     *
+     * @return HibernatePropertiesCustomizer adding the batching defaults.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+    public static HibernatePropertiesCustomizer hibernateBatchingCustomizer() {
+        return hibernateProperties -> {
+            hibernateProperties.putIfAbsent("hibernate.jdbc.batch_size", 50);
+            hibernateProperties.putIfAbsent("hibernate.order_inserts", true);
+            hibernateProperties.putIfAbsent("hibernate.order_updates", true);
+        };
+    }
+
+    /**
+     * Creates the InvalidationTransport bean used to broadcast token revocations and user updates.
+     * The transport is selected with {@code lastshield.basicauth.invalidation-transport}.
+     *
+     * @param dataSource the application data source, used by the JDBC transport.
+     * @return InvalidationTransport shared by the JWT service and the node-local caches.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+    public InvalidationTransport invalidationTransport(DataSource dataSource) {
+        if (basicAuthProperties.getInvalidationTransport() == InvalidationTransportType.JDBC) {
+            return new JdbcInvalidationTransport(dataSource, basicAuthProperties.getInvalidationPollInterval());
+        }
+        return new InMemoryInvalidationTransport();
+    }
+
+    /**
+     * Creates the MappedRevocationSet bean shared by the processes of the host.
+     * It is only created when {@code lastshield.basicauth.revocation-file} is set.
+     *
+     * @return MappedRevocationSet backed by the configured file.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "lastshield.basicauth.revocation-file")
+    public MappedRevocationSet revocationSet() {
+        return new MappedRevocationSet(Path.of(basicAuthProperties.getRevocationFile()), basicAuthProperties.getRevocationCapacity());
     }
 
     /**
      * Creates a JwtService bean for generating JWT tokens.
      *
+     * @param invalidationTransport the transport used to broadcast token revocations.
+     * @param revocationSet the memory-mapped revocation set, when configured.
+     * @param inMemoryTokenStore the in-memory token store, when selected.
+     * @param mvStoreTokenStore the MVStore token store, when selected.
+     * @param jdbcTokenStore the JDBC token store, when selected.
      * @return JwtService used for handling JWT generation and validation.
      */
     @Bean
     @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
-    public JwtService jwtService() {
-        return new JwtService(getJwtConfig());
+    public JwtService jwtService(InvalidationTransport invalidationTransport,
+                                 ObjectProvider<MappedRevocationSet> revocationSet,
+                                 ObjectProvider<InMemoryTokenStore> inMemoryTokenStore,
+                                 ObjectProvider<MVStoreTokenStore> mvStoreTokenStore,
+                                 ObjectProvider<JdbcTokenStore> jdbcTokenStore) {
+        return new JwtService(getJwtConfig(resolveTokenStore(inMemoryTokenStore, mvStoreTokenStore, jdbcTokenStore))
+                .setInvalidationTransport(invalidationTransport)
+                .setRevocationSet(revocationSet.getIfAvailable()));
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+import tech.lastbox.lastshield.basicauth.enviroment.PasswordEncoderType;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Builds the password encoder of Basic Authentication from its properties.
+ * <p>
+ * The encoder is a {@link DelegatingPasswordEncoder}: new passwords are encoded with the selected algorithm and
+ * prefixed with its id, while passwords encoded with any supported algorithm, including the unprefixed BCrypt
+ * hashes of earlier versions, keep matching. Its {@link PasswordEncoder#upgradeEncoding(String)} reports the
+ * passwords encoded with another algorithm or weaker parameters than the current ones, which are rehashed on
+ * login.
+ * <p>
+ * When {@code password-hash-target} is set, the work factor of the selected algorithm is calibrated at startup so
+ * that one hash takes about that long on the current machine: the BCrypt cost, the Argon2 iterations for the
+ * configured memory and parallelism, or the PBKDF2 iterations. Only weaker hashes are upgraded, so the small
+ * differences between two calibrations do not rehash the whole user base after every restart.
+ */
+final class PasswordEncoderFactory {
+    private static final String BCRYPT_ID = "bcrypt";
+    private static final String ARGON2_ID = "argon2";
+    private static final String PBKDF2_ID = "pbkdf2-sha256";
+    private static final int DEFAULT_BCRYPT_STRENGTH = 10;
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+    private static final int PBKDF2_PROBE_ITERATIONS = 10_000;
+    private static final int CALIBRATION_MAX_RUNS = 20;
+    private static final int CALIBRATION_STABLE_RUNS = 3;
+    private static final String CALIBRATION_PASSWORD = "lastshield-calibration";
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordEncoderFactory.class);
+
+    private PasswordEncoderFactory() {
+    }
+
+    /**
+     * Creates the password encoder described by the properties, calibrating it if a target hash time is set.
+     *
+     * @param properties the Basic Authentication properties.
+     * @return the delegating password encoder.
+     */
+    static PasswordEncoder create(BasicAuthProperties properties) {
+        PasswordEncoderType type = properties.getPasswordEncoder();
+        Duration target = properties.getPasswordHashTarget();
+        int bcryptStrength = properties.getBcryptStrength() == null ? DEFAULT_BCRYPT_STRENGTH : properties.getBcryptStrength();
+        int argon2Iterations = properties.getArgon2Iterations();
+        int pbkdf2Iterations = properties.getPbkdf2Iterations();
+
+        if (target != null) {
+            switch (type) {
+                case BCRYPT -> bcryptStrength = calibrateBCrypt(target);
+                case ARGON2 -> argon2Iterations = calibrateArgon2(target, properties);
+                case PBKDF2 -> pbkdf2Iterations = calibratePbkdf2(target);
+            }
+        }
+
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT_ID, bcrypt);
+        encoders.put(ARGON2_ID, argon2(properties, argon2Iterations));
+        encoders.put(PBKDF2_ID, new Pbkdf2Sha256PasswordEncoder(pbkdf2Iterations));
+        String idForEncode = switch (type) {
+            case BCRYPT -> BCRYPT_ID;
+            case ARGON2 -> ARGON2_ID;
+            case PBKDF2 -> PBKDF2_ID;
+        };
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        logger.info("Encoding passwords with {} ({}).", type, switch (type) {
+            case BCRYPT -> "cost " + bcryptStrength;
+            case ARGON2 -> "memory " + properties.getArgon2Memory() + " KiB, " + argon2Iterations + " iterations, parallelism "
+                    + properties.getArgon2Parallelism();
+            case PBKDF2 -> pbkdf2Iterations + " iterations";
+        });
+        return passwordEncoder;
+    }
+
+    private static PasswordEncoder argon2(BasicAuthProperties properties, int iterations) {
+        return new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, properties.getArgon2Parallelism(),
+                properties.getArgon2Memory(), iterations);
+    }
+
+    /**
+     * Picks the BCrypt cost closest to the target: each cost step doubles the hash time.
+     */
+    private static int calibrateBCrypt(Duration target) {
+        int probeCost = 8;
+        double probeNanos = measure(cost -> new BCryptPasswordEncoder(cost), probeCost);
+        int cost = probeCost + (int) Math.round(Math.log(target.toNanos() / probeNanos) / Math.log(2));
+        return Math.max(4, Math.min(31, cost));
+    }
+
+    /**
+     * Picks the Argon2 iterations closest to the target for the configured memory and parallelism: the hash time
+     * grows linearly with the iterations.
+     */
+    private static int calibrateArgon2(Duration target, BasicAuthProperties properties) {
+        double probeNanos = measure(iterations -> argon2(properties, iterations), 1);
+        if (probeNanos > target.toNanos()) {
+            logger.warn("A single Argon2 iteration with {} KiB takes longer than the {} ms target; using one iteration.",
+                    properties.getArgon2Memory(), target.toMillis());
+        }
+        return (int) Math.max(1, Math.round(target.toNanos() / probeNanos));
+    }
+
+    /**
+     * Picks the PBKDF2 iterations matching the target, rounded down to two significant digits so that two
+     * calibrations on the same machine usually agree.
+     */
+    private static int calibratePbkdf2(Duration target) {
+        double probeNanos = measure(Pbkdf2Sha256PasswordEncoder::new, PBKDF2_PROBE_ITERATIONS);
+        long iterations = Math.round(PBKDF2_PROBE_ITERATIONS * (target.toNanos() / probeNanos));
+        long scale = 1;
+        while (iterations / scale >= 100) scale *= 10;
+        return (int) Math.max(1_000, Math.min(Integer.MAX_VALUE, iterations / scale * scale));
+    }
+
+    /**
+     * Measures the fastest hash with the given work factor. The first hashes run before the JIT has compiled the
+     * hashing code and can be several times slower, so hashes are repeated until the fastest one has not improved
+     * for a few runs.
+     */
+    private static double measure(IntFunction<PasswordEncoder> encoderFactory, int workFactor) {
+        PasswordEncoder encoder = encoderFactory.apply(workFactor);
+        long fastest = Long.MAX_VALUE;
+        int stableRuns = 0;
+        for (int run = 0; run < CALIBRATION_MAX_RUNS && stableRuns < CALIBRATION_STABLE_RUNS; run++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed < fastest * 0.95) {
+                fastest = elapsed;
+                stableRuns = 0;
+            } else {
+                stableRuns++;
+            }
+        }
+        return Math.max(1, fastest);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.configuration;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 with HMAC-SHA256 password encoder that stores its iteration count in every encoded password, as
+ * {@code iterations$salt$hash} with Base64 salt and hash.
+ * <p>
+ * Unlike the Spring Security PBKDF2 encoder, the iteration count can therefore be changed at any time: passwords
+ * keep matching with the count they were encoded with, and those encoded with fewer iterations than configured are
+ * reported by {@link #upgradeEncoding(String)} so they are rehashed on the next login.
+ */
+final class Pbkdf2Sha256PasswordEncoder implements PasswordEncoder {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Constructs the encoder.
+     *
+     * @param iterations the iteration count of the passwords encoded from now on.
+     * @throws IllegalArgumentException if the iteration count is not positive.
+     */
+    Pbkdf2Sha256PasswordEncoder(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("PBKDF2 iterations must be positive.");
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash(rawPassword, salt, iterations));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        String[] parts = split(encodedPassword);
+        if (parts == null) return false;
+        try {
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            byte[] actual = hash(rawPassword, Base64.getDecoder().decode(parts[1]), Integer.parseInt(parts[0]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        String[] parts = split(encodedPassword);
+        try {
+            return parts != null && Integer.parseInt(parts[0]) < iterations;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String[] split(String encodedPassword) {
+        if (encodedPassword == null) return null;
+        String[] parts = encodedPassword.split("\\$");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private static byte[] hash(CharSequence rawPassword, byte[] salt, int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("PBKDF2 iterations must be positive.");
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toString().toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 with HMAC-SHA256 is not available.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
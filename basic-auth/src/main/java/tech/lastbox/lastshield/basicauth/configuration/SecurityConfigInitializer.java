@@ -18,7 +18,9 @@ package tech.lastbox.lastshield.basicauth.configuration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
 import tech.lastbox.lastshield.security.SecurityConfig;
+import tech.lastbox.lastshield.security.core.AuthenticationLevel;
 
 import java.util.List;
 
@@ -32,12 +34,16 @@ import java.util.List;
 public class SecurityConfigInitializer {
 
     /**
-     * Configures security settings for the application.
+     * Configures security settings for the application. Administrative routes are always authenticated with
+     * {@link AuthenticationLevel#FULL}, so revoked tokens, deleted users and role changes take effect on them
+     * immediately, even in claims authentication mode.
      *
      * @param securityConfig an instance of SecurityConfig to be configured (auto-injected by Spring IoC).
+     * @param basicAuthProperties the Basic Authentication properties, which may enable claims authentication.
      * Initialize the configured SecurityConfig instance.
      */
-    public SecurityConfigInitializer(SecurityConfig securityConfig) {
+    public SecurityConfigInitializer(SecurityConfig securityConfig, BasicAuthProperties basicAuthProperties) {
+        if (basicAuthProperties.isClaimsAuthentication()) securityConfig.enableClaimsAuthentication("name");
         securityConfig.corsAllowCredentials(true)
                 .corsAllowedOrigins(List.of("*"))
                 .corsAllowedMethods(List.of("*"))
@@ -45,9 +51,11 @@ public class SecurityConfigInitializer {
                 .addRouteAuthority("/register")
                 .addRouteAuthority("/api-docs/**")
                 .addRouteAuthority("/swagger-ui/**")
-                .addRouteAuthority("/admin", "ADMIN")
-                .addRouteAuthority("/actuator", "ADMIN")
-                .addRouteAuthority("/actuator/**", "ADMIN")
+                .addRouteAuthority("/introspect", "ADMIN", AuthenticationLevel.FULL)
+                .addRouteAuthority("/admin", "ADMIN", AuthenticationLevel.FULL)
+                .addRouteAuthority("/admin/**", "ADMIN", AuthenticationLevel.FULL)
+                .addRouteAuthority("/actuator", "ADMIN", AuthenticationLevel.FULL)
+                .addRouteAuthority("/actuator/**", "ADMIN", AuthenticationLevel.FULL)
                 .addRouteAuthority("/**", List.of("USER", "ADMIN"))
                 .setCsrfProtection(false);
         securityConfig.build();
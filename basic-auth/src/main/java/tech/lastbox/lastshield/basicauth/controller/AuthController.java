@@ -20,7 +20,9 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -35,8 +37,12 @@ import tech.lastbox.lastshield.basicauth.dto.RegisterRequest;
 import tech.lastbox.lastshield.basicauth.entity.User;
 import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
 import tech.lastbox.lastshield.basicauth.exception.DuplicatedUserException;
+import tech.lastbox.lastshield.basicauth.exception.HashingOverloadedException;
+import tech.lastbox.lastshield.basicauth.service.LoginThrottle;
 import tech.lastbox.lastshield.basicauth.service.UserService;
+import tech.lastbox.lastshield.security.core.SecurityUtil;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
@@ -53,17 +59,26 @@ public class AuthController {
     private final UserService userService;
     private final JwtService jwtService;
     private final BasicAuthProperties basicAuthProperties;
+    private final SecurityUtil securityUtil;
+    private final LoginThrottle loginThrottle;
 
-    public AuthController(UserService userService, JwtService jwtService, BasicAuthProperties basicAuthProperties) {
+    public AuthController(UserService userService, JwtService jwtService, BasicAuthProperties basicAuthProperties, SecurityUtil securityUtil,
+                          LoginThrottle loginThrottle) {
         this.userService = userService;
         this.jwtService = jwtService;
         this.basicAuthProperties = basicAuthProperties;
+        this.securityUtil = securityUtil;
+        this.loginThrottle = loginThrottle;
     }
 
     /**
      * Endpoint for user login. Validates credentials and returns a JWT token.
+     * Attempts exceeding the rate of their username or client address are rejected by the {@link LoginThrottle}
+     * before the password is checked, with a {@code Retry-After} header. When the password hashing executor is
+     * saturated, the attempt is answered with 503 Service Unavailable and a {@code Retry-After} header as well.
      *
      * @param loginRequest the login credentials containing the username and password
+     * @param request the HTTP request, whose remote address identifies the client
      * @return ResponseEntity with the login result and JWT token
      */
     @PostMapping("/login")
@@ -83,20 +98,43 @@ public class AuthController {
                     responseCode = "401",
                     description = "Authentication failed. Incorrect username or password.",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many login attempts for the username or from the client address. Retry after the delay of the Retry-After header.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Password hashing is saturated. Retry after the delay of the Retry-After header.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
-        Optional<User> userOptional = userService.login(loginRequest.username(), loginRequest.password());
+    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        Duration retryAfter = loginThrottle.acquire(loginRequest.username(), request.getRemoteAddr());
+        if (!retryAfter.isZero()) {
+            long retryAfterSeconds = Math.max(1, retryAfter.plusNanos(999_999_999).toSeconds());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(new ErrorResponse("Too many login attempts, retry later.", HttpStatus.TOO_MANY_REQUESTS.toString(), LocalDateTime.now()));
+        }
+        Optional<User> userOptional;
+        try {
+            userOptional = userService.login(loginRequest.username(), loginRequest.password());
+        } catch (HashingOverloadedException e) {
+            return hashingOverloaded(e);
+        }
         if (userOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ErrorResponse("Invalid username or password.", HttpStatus.UNAUTHORIZED.toString(), LocalDateTime.now()));
         }
         User user = userOptional.get();
-        Token token = jwtService.generateToken(loginRequest.username(), basicAuthProperties.getIssuer());
+        Token token = jwtService.generateToken(loginRequest.username(), basicAuthProperties.getIssuer(), securityUtil.getTokenClaims(user));
         return ResponseEntity.status(HttpStatus.OK).body(new AuthResponseDTO(user.getId(), token.token(), "Login successful.", LocalDateTime.now()));
     }
 
     /**
      * Endpoint for user registration. Registers a new user and returns a JWT token for authentication.
+     * When the password hashing executor is saturated, the registration is answered with 503 Service Unavailable.
      *
      * @param registerRequest the user registration details
      * @return ResponseEntity with the registration result and JWT token
@@ -118,15 +156,32 @@ public class AuthController {
                     responseCode = "409",
                     description = "Registration failed. The username is already in use.",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Password hashing is saturated. Retry after the delay of the Retry-After header.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
             )
     })
     public ResponseEntity<?> register(@RequestBody RegisterRequest registerRequest) {
         try {
             User user = userService.createUser(registerRequest.name(), registerRequest.username(), registerRequest.password());
-            Token token = jwtService.generateToken(user.getUsername(), basicAuthProperties.getIssuer());
+            Token token = jwtService.generateToken(user.getUsername(), basicAuthProperties.getIssuer(), securityUtil.getTokenClaims(user));
             return ResponseEntity.status(HttpStatus.CREATED).body(new AuthResponseDTO(user.getId(), token.token(), "User created successfully.", LocalDateTime.now()));
         } catch (DuplicatedUserException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage(), HttpStatus.CONFLICT.toString(), LocalDateTime.now()));
+        } catch (HashingOverloadedException e) {
+            return hashingOverloaded(e);
         }
     }
+
+    /**
+     * Builds the 503 response of a request rejected because password hashing is saturated. Hashes take tens of
+     * milliseconds, so the queue drains within a second.
+     */
+    private ResponseEntity<ErrorResponse> hashingOverloaded(HashingOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE.toString(), LocalDateTime.now()));
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import tech.lastbox.jwt.JwtService;
+import tech.lastbox.jwt.TokenValidation;
+import tech.lastbox.lastshield.basicauth.dto.ErrorResponse;
+import tech.lastbox.lastshield.basicauth.dto.IntrospectionRequest;
+import tech.lastbox.lastshield.basicauth.dto.IntrospectionResponse;
+import tech.lastbox.lastshield.basicauth.dto.IntrospectionResult;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller exposing RFC 7662 style token introspection for services that cannot run LastShield themselves.
+ * Unlike the single-token endpoint of the RFC, it accepts many tokens per call, so a caller such as an API
+ * gateway can validate its whole in-flight set with one request and one batched token store lookup.
+ */
+@RestController
+@ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+@Schema(description = "Handles bulk token introspection for the application.")
+public class IntrospectionController {
+
+    private final JwtService jwtService;
+    private final BasicAuthProperties basicAuthProperties;
+
+    public IntrospectionController(JwtService jwtService, BasicAuthProperties basicAuthProperties) {
+        this.jwtService = jwtService;
+        this.basicAuthProperties = basicAuthProperties;
+    }
+
+    /**
+     * Endpoint for bulk token introspection. Validates every token of the request and returns whether
+     * each one is active, together with its claims.
+     *
+     * @param introspectionRequest the tokens to introspect
+     * @return ResponseEntity with one introspection result per distinct token
+     */
+    @PostMapping("/introspect")
+    @Operation(
+            summary = "Bulk Token Introspection",
+            description = "Validates many tokens in a single call. Every distinct token gets a result telling whether it is active and, if so, its claims.",
+            operationId = "introspectTokens",
+            tags = {"Authentication"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Introspection completed. Returns one result per distinct token.",
+                    content = @Content(schema = @Schema(implementation = IntrospectionResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Introspection failed. No tokens were sent or the batch exceeds the configured limit.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    public ResponseEntity<?> introspect(@RequestBody IntrospectionRequest introspectionRequest) {
+        List<String> tokens = introspectionRequest.tokens();
+        if (tokens == null || tokens.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("At least one token must be provided.", HttpStatus.BAD_REQUEST.toString(), LocalDateTime.now()));
+        }
+        if (tokens.size() > basicAuthProperties.getIntrospectionMaxTokens()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("At most " + basicAuthProperties.getIntrospectionMaxTokens() + " tokens can be introspected per request.", HttpStatus.BAD_REQUEST.toString(), LocalDateTime.now()));
+        }
+
+        Map<String, TokenValidation> validations = jwtService.validateTokens(tokens);
+        List<IntrospectionResult> results = new ArrayList<>(validations.size());
+        validations.forEach((token, validation) -> results.add(validation.tokenOptional()
+                .map(IntrospectionResult::active)
+                .orElseGet(() -> IntrospectionResult.inactive(token))));
+        return ResponseEntity.status(HttpStatus.OK).body(new IntrospectionResponse(results));
+    }
+}
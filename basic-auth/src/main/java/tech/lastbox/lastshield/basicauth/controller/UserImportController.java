@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import tech.lastbox.lastshield.basicauth.dto.RegisterRequest;
+import tech.lastbox.lastshield.basicauth.dto.UserImportResult;
+import tech.lastbox.lastshield.basicauth.service.UserService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Controller exposing the bulk import of users, for migrations from another system.
+ * The request body is newline-delimited JSON, one {@link RegisterRequest} per line, and is read as the import
+ * progresses, so bodies of millions of users are never held in memory.
+ */
+@RestController
+@ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+@Schema(description = "Handles the bulk import of users for administrators.")
+public class UserImportController {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final UserService userService;
+    private final ObjectReader recordReader;
+
+    public UserImportController(UserService userService, ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.recordReader = objectMapper.readerFor(RegisterRequest.class);
+    }
+
+    /**
+     * Endpoint for bulk user import. Creates a user with the {@code USER} role for every line of the body whose
+     * username is free; blank lines are ignored and malformed lines are counted as invalid.
+     *
+     * @param request the HTTP request, whose body is read line by line
+     * @return ResponseEntity with the number of imported, duplicated and invalid records
+     * @throws IOException if the request body cannot be read
+     */
+    @PostMapping(path = "/admin/users/import", consumes = NDJSON)
+    @Operation(
+            summary = "Bulk User Import",
+            description = "Imports users from a newline-delimited JSON body, one object with name, username and password per line. Usernames already taken are skipped.",
+            operationId = "importUsers",
+            tags = {"Administration"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import completed. Returns how many records were imported, duplicated or invalid.",
+                    content = @Content(schema = @Schema(implementation = UserImportResult.class))
+            )
+    })
+    public ResponseEntity<UserImportResult> importUsers(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.OK).body(userService.importUsers(new RecordIterator(reader)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Iterates over the non-blank lines of the body, parsing each one when it is consumed. A malformed line yields
+     * {@code null}.
+     */
+    private final class RecordIterator implements Iterator<RegisterRequest> {
+        private final BufferedReader reader;
+        private String line;
+
+        private RecordIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (line == null) {
+                    String next = reader.readLine();
+                    if (next == null) return false;
+                    if (!next.isBlank()) line = next;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public RegisterRequest next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String current = line;
+            line = null;
+            try {
+                return recordReader.readValue(current);
+            } catch (JsonProcessingException e) {
+                return null;
+            }
+        }
+    }
+}
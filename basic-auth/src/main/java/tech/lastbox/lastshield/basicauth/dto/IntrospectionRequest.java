@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing a bulk token introspection request.
+ * This DTO carries every token a caller, such as an API gateway, wants to validate in a single call.
+ */
+@Schema(description = "DTO for bulk token introspection request containing the tokens to be validated.")
+public record IntrospectionRequest(
+
+        @Schema(description = "The tokens to be introspected.", example = "[\"eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...\"]")
+        List<String> tokens
+) {
+}
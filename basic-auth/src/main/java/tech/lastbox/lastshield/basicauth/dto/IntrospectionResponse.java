@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing a bulk token introspection response.
+ * It contains one result per distinct token of the request, in the order they were sent.
+ */
+@Schema(description = "Response DTO for bulk token introspection, containing one result per distinct token.")
+public record IntrospectionResponse(
+        @Schema(description = "Introspection result of every distinct token of the request.")
+        List<IntrospectionResult> results
+) {
+}
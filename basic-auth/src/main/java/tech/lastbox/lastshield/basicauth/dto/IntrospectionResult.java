@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import tech.lastbox.jwt.Token;
+
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the introspection result of a single token.
+ * The fields follow RFC 7662: inactive tokens only carry the token and {@code active = false},
+ * while active tokens also carry their claims, with timestamps as seconds since the epoch.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Introspection result of a single token, following RFC 7662.")
+public record IntrospectionResult(
+        @Schema(description = "The introspected token.", example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
+        String token,
+
+        @Schema(description = "Whether the token is currently active.", example = "true")
+        boolean active,
+
+        @Schema(description = "Subject of the token, usually the username.", example = "johndoe")
+        String sub,
+
+        @Schema(description = "Issuer of the token.", example = "MyAuthSystem")
+        String iss,
+
+        @Schema(description = "Time the token was issued, in seconds since the epoch.", example = "1732365296")
+        Long iat,
+
+        @Schema(description = "Time the token expires, in seconds since the epoch.", example = "1732372496")
+        Long exp,
+
+        @Schema(description = "Scope granted by the token.", example = "[\"name, username\"]")
+        List<String> scope
+) {
+
+    /**
+     * Creates the result of an active token.
+     *
+     * @param token the validated token.
+     * @return the active introspection result with the token claims.
+     */
+    public static IntrospectionResult active(Token token) {
+        return new IntrospectionResult(token.token(), true, token.subject(), token.issuer(),
+                token.issuedAt().toEpochSecond(ZoneOffset.UTC), token.expiresIn().toEpochSecond(ZoneOffset.UTC),
+                token.scope());
+    }
+
+    /**
+     * Creates the result of an inactive token.
+     *
+     * @param token the introspected token.
+     * @return the inactive introspection result.
+     */
+    public static IntrospectionResult inactive(String token) {
+        return new IntrospectionResult(token, false, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Data Transfer Object (DTO) representing the outcome of a bulk user import.
+ * Every record of the import is counted once, as imported, duplicated or invalid.
+ */
+@Schema(description = "Response DTO for bulk user import, counting the imported, duplicated and invalid records.")
+public record UserImportResult(
+
+        @Schema(description = "Number of users created.", example = "998")
+        long imported,
+
+        @Schema(description = "Number of records skipped because their username was taken, by an existing user or an earlier record.", example = "1")
+        long duplicates,
+
+        @Schema(description = "Number of records skipped because they were malformed or missing a username or password.", example = "1")
+        long invalid
+) {
+}
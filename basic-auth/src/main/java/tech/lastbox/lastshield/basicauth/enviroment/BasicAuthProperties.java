@@ -22,6 +22,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.time.Duration;
+
 /**
  * This class holds the configuration properties for Basic Authentication.
  * The properties are loaded from the application's configuration (e.g., `application.yml` or `application.properties`)
@@ -50,6 +52,87 @@ public class BasicAuthProperties {
     @Schema(description = "Password of the administrator user.", example = "admin")
     private String adminPassword = "admin";
 
+    @Schema(description = "BCrypt cost factor used to hash passwords. When not set, the encoder default is used.", example = "10")
+    private Integer bcryptStrength;
+
+    @Schema(description = "Password hashing algorithm used to encode new passwords; passwords encoded with the others keep matching.", example = "BCRYPT")
+    private PasswordEncoderType passwordEncoder = PasswordEncoderType.BCRYPT;
+
+    @Schema(description = "Memory in KiB used by each Argon2id hash.", example = "19456")
+    private int argon2Memory = 19456;
+
+    @Schema(description = "Iterations of each Argon2id hash.", example = "2")
+    private int argon2Iterations = 2;
+
+    @Schema(description = "Lanes of each Argon2id hash.", example = "1")
+    private int argon2Parallelism = 1;
+
+    @Schema(description = "Iterations of each PBKDF2 with HMAC-SHA256 hash.", example = "600000")
+    private int pbkdf2Iterations = 600_000;
+
+    @Schema(description = "Target duration of one password hash. When set, the work factor of the selected encoder is calibrated at startup to match it.", example = "250ms")
+    private Duration passwordHashTarget;
+
+    @Schema(description = "Token store implementation used to persist issued tokens.", example = "JPA")
+    private TokenStoreType tokenStore = TokenStoreType.JPA;
+
+    @Schema(description = "File of the embedded token store when the MVSTORE token store is used.", example = "lastshield-tokens.mv.db")
+    private String tokenStoreFile = "lastshield-tokens.mv.db";
+
+    @Schema(description = "Page cache size in megabytes of the embedded token store; about 300 bytes per live token keeps lookups in memory.", example = "64")
+    private int tokenStoreCacheSize = 64;
+
+    @Schema(description = "Maximum number of tokens accepted by a single introspection request.", example = "1000")
+    private int introspectionMaxTokens = 1000;
+
+    @Schema(description = "Transport used to broadcast token revocations and user updates to every node.", example = "IN_MEMORY")
+    private InvalidationTransportType invalidationTransport = InvalidationTransportType.IN_MEMORY;
+
+    @Schema(description = "Delay between two polls of the invalidation change-log table when the JDBC transport is used.", example = "1s")
+    private Duration invalidationPollInterval = Duration.ofSeconds(1);
+
+    @Schema(description = "File of the memory-mapped revocation set shared by the processes of the host. Disabled when not set.", example = "/var/lib/lastshield/revocations")
+    private String revocationFile;
+
+    @Schema(description = "Number of slots of the memory-mapped revocation set when the file is created.", example = "1048576")
+    private int revocationCapacity = 1 << 20;
+
+    @Schema(description = "Whether requests are authenticated from the roles and name carried by their token, without loading the user.", example = "false")
+    private boolean claimsAuthentication;
+
+    @Schema(description = "Whether login attempts are throttled per username and client address before the password is checked.", example = "true")
+    private boolean loginThrottle = true;
+
+    @Schema(description = "Sustained login attempts allowed per minute for a username.", example = "10")
+    private int loginAttemptsPerMinute = 10;
+
+    @Schema(description = "Login attempts a username can make in a burst before the sustained rate applies.", example = "5")
+    private int loginBurst = 5;
+
+    @Schema(description = "Sustained login attempts allowed per minute from a client address.", example = "60")
+    private int loginAttemptsPerMinutePerAddress = 60;
+
+    @Schema(description = "Login attempts a client address can make in a burst before the sustained rate applies.", example = "20")
+    private int loginBurstPerAddress = 20;
+
+    @Schema(description = "Threads hashing passwords. When not set, one per available processor.", example = "4")
+    private int hashingThreads;
+
+    @Schema(description = "Password hashes waiting for a hashing thread before logins and registrations are answered with 503.", example = "32")
+    private int hashingQueueCapacity = 32;
+
+    @Schema(description = "Whether repeated logins with a recently verified password skip the password encoder. Only an HMAC of the password is cached.", example = "false")
+    private boolean credentialCache;
+
+    @Schema(description = "Time a verified credential stays cached.", example = "60s")
+    private Duration credentialCacheTtl = Duration.ofSeconds(60);
+
+    @Schema(description = "Maximum number of cached verified credentials.", example = "10000")
+    private int credentialCacheMaxSize = 10_000;
+
+    @Schema(description = "Users checked, hashed and inserted together by a bulk import; each chunk is committed on its own.", example = "1000")
+    private int importChunkSize = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(BasicAuthProperties.class);
 
     /**
@@ -165,4 +248,546 @@ public class BasicAuthProperties {
     public void setAdminName(String adminName) {
         this.adminName = adminName;
     }
+
+    /**
+     * Gets the BCrypt cost factor used to hash passwords.
+     *
+     * @return the BCrypt strength, or {@code null} to use the encoder default.
+     */
+    @Schema(description = "Gets the BCrypt cost factor used to hash passwords.")
+    public Integer getBcryptStrength() {
+        return bcryptStrength;
+    }
+
+    /**
+     * Sets the BCrypt cost factor used to hash passwords.
+     *
+     * @param bcryptStrength the BCrypt strength, between 4 and 31.
+     */
+    @Schema(description = "Sets the BCrypt cost factor used to hash passwords.")
+    public void setBcryptStrength(Integer bcryptStrength) {
+        this.bcryptStrength = bcryptStrength;
+    }
+
+    /**
+     * Gets the password hashing algorithm used to encode new passwords.
+     *
+     * @return the password encoder type.
+     */
+    @Schema(description = "Gets the password hashing algorithm used to encode new passwords.")
+    public PasswordEncoderType getPasswordEncoder() {
+        return passwordEncoder;
+    }
+
+    /**
+     * Sets the password hashing algorithm used to encode new passwords.
+     *
+     * @param passwordEncoder the password encoder type.
+     */
+    @Schema(description = "Sets the password hashing algorithm used to encode new passwords.")
+    public void setPasswordEncoder(PasswordEncoderType passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    /**
+     * Gets the memory in KiB used by each Argon2id hash.
+     *
+     * @return the Argon2id memory in KiB.
+     */
+    @Schema(description = "Gets the memory in KiB used by each Argon2id hash.")
+    public int getArgon2Memory() {
+        return argon2Memory;
+    }
+
+    /**
+     * Sets the memory in KiB used by each Argon2id hash.
+     *
+     * @param argon2Memory the Argon2id memory in KiB.
+     */
+    @Schema(description = "Sets the memory in KiB used by each Argon2id hash.")
+    public void setArgon2Memory(int argon2Memory) {
+        this.argon2Memory = argon2Memory;
+    }
+
+    /**
+     * Gets the iterations of each Argon2id hash.
+     *
+     * @return the Argon2id iterations.
+     */
+    @Schema(description = "Gets the iterations of each Argon2id hash.")
+    public int getArgon2Iterations() {
+        return argon2Iterations;
+    }
+
+    /**
+     * Sets the iterations of each Argon2id hash.
+     *
+     * @param argon2Iterations the Argon2id iterations, ignored when a hash target is set.
+     */
+    @Schema(description = "Sets the iterations of each Argon2id hash.")
+    public void setArgon2Iterations(int argon2Iterations) {
+        this.argon2Iterations = argon2Iterations;
+    }
+
+    /**
+     * Gets the lanes of each Argon2id hash.
+     *
+     * @return the Argon2id parallelism.
+     */
+    @Schema(description = "Gets the lanes of each Argon2id hash.")
+    public int getArgon2Parallelism() {
+        return argon2Parallelism;
+    }
+
+    /**
+     * Sets the lanes of each Argon2id hash.
+     *
+     * @param argon2Parallelism the Argon2id parallelism.
+     */
+    @Schema(description = "Sets the lanes of each Argon2id hash.")
+    public void setArgon2Parallelism(int argon2Parallelism) {
+        this.argon2Parallelism = argon2Parallelism;
+    }
+
+    /**
+     * Gets the iterations of each PBKDF2 with HMAC-SHA256 hash.
+     *
+     * @return the PBKDF2 iterations.
+     */
+    @Schema(description = "Gets the iterations of each PBKDF2 hash.")
+    public int getPbkdf2Iterations() {
+        return pbkdf2Iterations;
+    }
+
+    /**
+     * Sets the iterations of each PBKDF2 with HMAC-SHA256 hash.
+     *
+     * @param pbkdf2Iterations the PBKDF2 iterations, ignored when a hash target is set.
+     */
+    @Schema(description = "Sets the iterations of each PBKDF2 hash.")
+    public void setPbkdf2Iterations(int pbkdf2Iterations) {
+        this.pbkdf2Iterations = pbkdf2Iterations;
+    }
+
+    /**
+     * Gets the target duration of one password hash used to calibrate the encoder at startup.
+     *
+     * @return the target hash duration, or {@code null} when the encoder is not calibrated.
+     */
+    @Schema(description = "Gets the target duration of one password hash.")
+    public Duration getPasswordHashTarget() {
+        return passwordHashTarget;
+    }
+
+    /**
+     * Sets the target duration of one password hash used to calibrate the encoder at startup.
+     *
+     * @param passwordHashTarget the target hash duration, or {@code null} to use the configured work factors.
+     */
+    @Schema(description = "Sets the target duration of one password hash.")
+    public void setPasswordHashTarget(Duration passwordHashTarget) {
+        this.passwordHashTarget = passwordHashTarget;
+    }
+
+    /**
+     * Gets the token store implementation used to persist issued tokens.
+     *
+     * @return the token store type.
+     */
+    @Schema(description = "Gets the token store implementation used to persist issued tokens.")
+    public TokenStoreType getTokenStore() {
+        return tokenStore;
+    }
+
+    /**
+     * Sets the token store implementation used to persist issued tokens.
+     *
+     * @param tokenStore the token store type.
+     */
+    @Schema(description = "Sets the token store implementation used to persist issued tokens.")
+    public void setTokenStore(TokenStoreType tokenStore) {
+        this.tokenStore = tokenStore;
+    }
+
+    /**
+     * Gets the file of the embedded token store used by the MVSTORE token store.
+     *
+     * @return the token store file path.
+     */
+    @Schema(description = "Gets the file of the embedded token store.")
+    public String getTokenStoreFile() {
+        return tokenStoreFile;
+    }
+
+    /**
+     * Sets the file of the embedded token store used by the MVSTORE token store.
+     *
+     * @param tokenStoreFile the token store file path.
+     */
+    @Schema(description = "Sets the file of the embedded token store.")
+    public void setTokenStoreFile(String tokenStoreFile) {
+        this.tokenStoreFile = tokenStoreFile;
+    }
+
+    /**
+     * Gets the page cache size, in megabytes, of the embedded token store.
+     *
+     * @return the page cache size in megabytes.
+     */
+    @Schema(description = "Gets the page cache size of the embedded token store.")
+    public int getTokenStoreCacheSize() {
+        return tokenStoreCacheSize;
+    }
+
+    /**
+     * Sets the page cache size, in megabytes, of the embedded token store.
+     *
+     * @param tokenStoreCacheSize the page cache size in megabytes.
+     */
+    @Schema(description = "Sets the page cache size of the embedded token store.")
+    public void setTokenStoreCacheSize(int tokenStoreCacheSize) {
+        this.tokenStoreCacheSize = tokenStoreCacheSize;
+    }
+
+    /**
+     * Gets the maximum number of tokens accepted by a single introspection request.
+     *
+     * @return the introspection batch limit.
+     */
+    @Schema(description = "Gets the maximum number of tokens accepted by a single introspection request.")
+    public int getIntrospectionMaxTokens() {
+        return introspectionMaxTokens;
+    }
+
+    /**
+     * Sets the maximum number of tokens accepted by a single introspection request.
+     *
+     * @param introspectionMaxTokens the introspection batch limit.
+     */
+    @Schema(description = "Sets the maximum number of tokens accepted by a single introspection request.")
+    public void setIntrospectionMaxTokens(int introspectionMaxTokens) {
+        this.introspectionMaxTokens = introspectionMaxTokens;
+    }
+
+    /**
+     * Gets the transport used to broadcast token revocations and user updates to every node.
+     *
+     * @return the invalidation transport type.
+     */
+    @Schema(description = "Gets the transport used to broadcast token revocations and user updates.")
+    public InvalidationTransportType getInvalidationTransport() {
+        return invalidationTransport;
+    }
+
+    /**
+     * Sets the transport used to broadcast token revocations and user updates to every node.
+     *
+     * @param invalidationTransport the invalidation transport type.
+     */
+    @Schema(description = "Sets the transport used to broadcast token revocations and user updates.")
+    public void setInvalidationTransport(InvalidationTransportType invalidationTransport) {
+        this.invalidationTransport = invalidationTransport;
+    }
+
+    /**
+     * Gets the delay between two polls of the invalidation change-log table.
+     *
+     * @return the poll interval, which bounds the propagation delay of the JDBC transport.
+     */
+    @Schema(description = "Gets the delay between two polls of the invalidation change-log table.")
+    public Duration getInvalidationPollInterval() {
+        return invalidationPollInterval;
+    }
+
+    /**
+     * Sets the delay between two polls of the invalidation change-log table.
+     *
+     * @param invalidationPollInterval the poll interval.
+     */
+    @Schema(description = "Sets the delay between two polls of the invalidation change-log table.")
+    public void setInvalidationPollInterval(Duration invalidationPollInterval) {
+        this.invalidationPollInterval = invalidationPollInterval;
+    }
+
+    /**
+     * Gets the file of the memory-mapped revocation set.
+     *
+     * @return the revocation file path, or {@code null} if the revocation set is disabled.
+     */
+    @Schema(description = "Gets the file of the memory-mapped revocation set.")
+    public String getRevocationFile() {
+        return revocationFile;
+    }
+
+    /**
+     * Sets the file of the memory-mapped revocation set.
+     *
+     * @param revocationFile the revocation file path.
+     */
+    @Schema(description = "Sets the file of the memory-mapped revocation set.")
+    public void setRevocationFile(String revocationFile) {
+        this.revocationFile = revocationFile;
+    }
+
+    /**
+     * Gets the number of slots of the memory-mapped revocation set.
+     *
+     * @return the revocation set capacity.
+     */
+    @Schema(description = "Gets the number of slots of the memory-mapped revocation set.")
+    public int getRevocationCapacity() {
+        return revocationCapacity;
+    }
+
+    /**
+     * Sets the number of slots of the memory-mapped revocation set. Only used when the file is created.
+     *
+     * @param revocationCapacity the revocation set capacity.
+     */
+    @Schema(description = "Sets the number of slots of the memory-mapped revocation set.")
+    public void setRevocationCapacity(int revocationCapacity) {
+        this.revocationCapacity = revocationCapacity;
+    }
+
+    /**
+     * Checks whether requests are authenticated from the claims of their token.
+     *
+     * @return true if tokens carry the roles and name of the user and requests do not load the user.
+     */
+    @Schema(description = "Checks whether requests are authenticated from the claims of their token.")
+    public boolean isClaimsAuthentication() {
+        return claimsAuthentication;
+    }
+
+    /**
+     * Sets whether requests are authenticated from the claims of their token. Role changes then take effect when
+     * the tokens of the user expire or are revoked.
+     *
+     * @param claimsAuthentication true to authenticate requests from the claims of their token.
+     */
+    @Schema(description = "Sets whether requests are authenticated from the claims of their token.")
+    public void setClaimsAuthentication(boolean claimsAuthentication) {
+        this.claimsAuthentication = claimsAuthentication;
+    }
+
+    /**
+     * Checks whether login attempts are throttled.
+     *
+     * @return true if excess login attempts are rejected before the password is checked.
+     */
+    @Schema(description = "Checks whether login attempts are throttled.")
+    public boolean isLoginThrottle() {
+        return loginThrottle;
+    }
+
+    /**
+     * Sets whether login attempts are throttled per username and client address.
+     *
+     * @param loginThrottle true to reject excess login attempts before the password is checked.
+     */
+    @Schema(description = "Sets whether login attempts are throttled.")
+    public void setLoginThrottle(boolean loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    /**
+     * Gets the sustained login attempts allowed per minute for a username.
+     *
+     * @return the login attempts per minute for a username.
+     */
+    @Schema(description = "Gets the sustained login attempts allowed per minute for a username.")
+    public int getLoginAttemptsPerMinute() {
+        return loginAttemptsPerMinute;
+    }
+
+    /**
+     * Sets the sustained login attempts allowed per minute for a username.
+     *
+     * @param loginAttemptsPerMinute the login attempts per minute, at least one.
+     */
+    @Schema(description = "Sets the sustained login attempts allowed per minute for a username.")
+    public void setLoginAttemptsPerMinute(int loginAttemptsPerMinute) {
+        this.loginAttemptsPerMinute = loginAttemptsPerMinute;
+    }
+
+    /**
+     * Gets the login attempts a username can make in a burst.
+     *
+     * @return the login burst of a username.
+     */
+    @Schema(description = "Gets the login attempts a username can make in a burst.")
+    public int getLoginBurst() {
+        return loginBurst;
+    }
+
+    /**
+     * Sets the login attempts a username can make in a burst before the sustained rate applies.
+     *
+     * @param loginBurst the login burst, at least one.
+     */
+    @Schema(description = "Sets the login attempts a username can make in a burst.")
+    public void setLoginBurst(int loginBurst) {
+        this.loginBurst = loginBurst;
+    }
+
+    /**
+     * Gets the sustained login attempts allowed per minute from a client address.
+     *
+     * @return the login attempts per minute from a client address.
+     */
+    @Schema(description = "Gets the sustained login attempts allowed per minute from a client address.")
+    public int getLoginAttemptsPerMinutePerAddress() {
+        return loginAttemptsPerMinutePerAddress;
+    }
+
+    /**
+     * Sets the sustained login attempts allowed per minute from a client address.
+     *
+     * @param loginAttemptsPerMinutePerAddress the login attempts per minute, at least one.
+     */
+    @Schema(description = "Sets the sustained login attempts allowed per minute from a client address.")
+    public void setLoginAttemptsPerMinutePerAddress(int loginAttemptsPerMinutePerAddress) {
+        this.loginAttemptsPerMinutePerAddress = loginAttemptsPerMinutePerAddress;
+    }
+
+    /**
+     * Gets the login attempts a client address can make in a burst.
+     *
+     * @return the login burst of a client address.
+     */
+    @Schema(description = "Gets the login attempts a client address can make in a burst.")
+    public int getLoginBurstPerAddress() {
+        return loginBurstPerAddress;
+    }
+
+    /**
+     * Sets the login attempts a client address can make in a burst before the sustained rate applies.
+     *
+     * @param loginBurstPerAddress the login burst, at least one.
+     */
+    @Schema(description = "Sets the login attempts a client address can make in a burst.")
+    public void setLoginBurstPerAddress(int loginBurstPerAddress) {
+        this.loginBurstPerAddress = loginBurstPerAddress;
+    }
+
+    /**
+     * Gets the number of threads hashing passwords.
+     *
+     * @return the number of hashing threads, or zero for one per available processor.
+     */
+    @Schema(description = "Gets the number of threads hashing passwords.")
+    public int getHashingThreads() {
+        return hashingThreads;
+    }
+
+    /**
+     * Sets the number of threads hashing passwords.
+     *
+     * @param hashingThreads the number of hashing threads, or zero for one per available processor.
+     */
+    @Schema(description = "Sets the number of threads hashing passwords.")
+    public void setHashingThreads(int hashingThreads) {
+        this.hashingThreads = hashingThreads;
+    }
+
+    /**
+     * Gets the number of password hashes that can wait for a hashing thread.
+     *
+     * @return the capacity of the hashing queue.
+     */
+    @Schema(description = "Gets the number of password hashes that can wait for a hashing thread.")
+    public int getHashingQueueCapacity() {
+        return hashingQueueCapacity;
+    }
+
+    /**
+     * Sets the number of password hashes that can wait for a hashing thread. Once the threads and the queue are
+     * full, logins and registrations are answered with 503 Service Unavailable.
+     *
+     * @param hashingQueueCapacity the capacity of the hashing queue, zero to never queue.
+     */
+    @Schema(description = "Sets the number of password hashes that can wait for a hashing thread.")
+    public void setHashingQueueCapacity(int hashingQueueCapacity) {
+        this.hashingQueueCapacity = hashingQueueCapacity;
+    }
+
+    /**
+     * Checks whether repeated logins with a recently verified password skip the password encoder.
+     *
+     * @return true if verified credentials are cached.
+     */
+    @Schema(description = "Checks whether repeated logins with a recently verified password skip the password encoder.")
+    public boolean isCredentialCache() {
+        return credentialCache;
+    }
+
+    /**
+     * Sets whether repeated logins with a recently verified password skip the password encoder.
+     *
+     * @param credentialCache true to cache verified credentials.
+     */
+    @Schema(description = "Sets whether repeated logins with a recently verified password skip the password encoder.")
+    public void setCredentialCache(boolean credentialCache) {
+        this.credentialCache = credentialCache;
+    }
+
+    /**
+     * Gets the time a verified credential stays cached.
+     *
+     * @return the credential cache time to live.
+     */
+    @Schema(description = "Gets the time a verified credential stays cached.")
+    public Duration getCredentialCacheTtl() {
+        return credentialCacheTtl;
+    }
+
+    /**
+     * Sets the time a verified credential stays cached.
+     *
+     * @param credentialCacheTtl the credential cache time to live.
+     */
+    @Schema(description = "Sets the time a verified credential stays cached.")
+    public void setCredentialCacheTtl(Duration credentialCacheTtl) {
+        this.credentialCacheTtl = credentialCacheTtl;
+    }
+
+    /**
+     * Gets the maximum number of cached verified credentials.
+     *
+     * @return the maximum size of the credential cache.
+     */
+    @Schema(description = "Gets the maximum number of cached verified credentials.")
+    public int getCredentialCacheMaxSize() {
+        return credentialCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of cached verified credentials.
+     *
+     * @param credentialCacheMaxSize the maximum size of the credential cache.
+     */
+    @Schema(description = "Sets the maximum number of cached verified credentials.")
+    public void setCredentialCacheMaxSize(int credentialCacheMaxSize) {
+        this.credentialCacheMaxSize = credentialCacheMaxSize;
+    }
+
+    /**
+     * Gets the number of users checked, hashed and inserted together by a bulk import.
+     *
+     * @return the import chunk size.
+     */
+    @Schema(description = "Gets the number of users processed together by a bulk import.")
+    public int getImportChunkSize() {
+        return importChunkSize;
+    }
+
+    /**
+     * Sets the number of users checked, hashed and inserted together by a bulk import.
+     *
+     * @param importChunkSize the import chunk size, which bounds the users held in memory by an import.
+     */
+    @Schema(description = "Sets the number of users processed together by a bulk import.")
+    public void setImportChunkSize(int importChunkSize) {
+        this.importChunkSize = importChunkSize;
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.enviroment;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Enum representing the transports used to broadcast token revocations and user updates to every node.
+ * It is selected through the {@code lastshield.basicauth.invalidation-transport} property.
+ */
+@Schema(description = "Transport used to broadcast token revocations and user updates.")
+public enum InvalidationTransportType {
+
+    /** Events are only delivered inside the current JVM. Suited for single-node deployments. This is the default. */
+    IN_MEMORY,
+
+    /** Events are written to a change-log table that every node polls. */
+    JDBC
+}
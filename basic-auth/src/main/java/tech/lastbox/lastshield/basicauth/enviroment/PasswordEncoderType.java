@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.enviroment;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Enum representing the password hashing algorithms that Basic Authentication can encode new passwords with.
+ * It is selected through the {@code lastshield.basicauth.password-encoder} property; passwords encoded with any of
+ * them keep matching, whichever is selected.
+ */
+@Schema(description = "Password hashing algorithm used by Basic Authentication to encode new passwords.")
+public enum PasswordEncoderType {
+
+    /** BCrypt, tuned with {@code bcrypt-strength}. This is the default. */
+    BCRYPT,
+
+    /** Argon2id, tuned with {@code argon2-memory}, {@code argon2-iterations} and {@code argon2-parallelism}. Requires Bouncy Castle. */
+    ARGON2,
+
+    /** PBKDF2 with HMAC-SHA256, tuned with {@code pbkdf2-iterations}. */
+    PBKDF2
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.enviroment;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Enum representing the token store implementations that Basic Authentication can be wired with.
+ * It is selected through the {@code lastshield.basicauth.token-store} property.
+ */
+@Schema(description = "Token store implementation used by Basic Authentication.")
+public enum TokenStoreType {
+
+    /** Tokens are persisted through the JPA {@code TokenRepository}. This is the default. */
+    JPA,
+
+    /** Tokens are persisted in a flat table by the {@code JdbcTokenStore}, with plain prepared statements and no ORM. */
+    JDBC,
+
+    /** Tokens are kept on the heap by an {@code InMemoryTokenStore} and evicted at expiry; they are lost on restart. */
+    MEMORY,
+
+    /** Tokens are persisted in an embedded H2 MVStore file by the {@code MVStoreTokenStore}, without JPA. */
+    MVSTORE,
+
+    /** Tokens are not persisted; validation relies only on the token signature and claims. */
+    NONE
+}
@@ -22,7 +22,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
  * This exception is used to indicate that the username is not unique and cannot be used for new user registration.
  * <p>
  * This exception extends {@link Exception} and provides a default message indicating
- * that the username already exists in the system.
+ * that the username already exists in the system. It is an expected outcome of registration, so it carries
+ * no stack trace.
  */
 @Schema(description = "Exception thrown when attempting to create a user with a username that already exists.")
 public class DuplicatedUserException extends Exception {
@@ -31,6 +32,6 @@ public class DuplicatedUserException extends Exception {
      * The constructor uses a default message indicating that the username already exists.
      */
     public DuplicatedUserException() {
-        super("This username already exists.");
+        super("This username already exists.", null, false, false);
     }
 }
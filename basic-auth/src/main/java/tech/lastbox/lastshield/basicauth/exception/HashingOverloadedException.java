@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.exception;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Exception thrown when a password cannot be hashed or checked because the hashing executor and its queue are full.
+ * <p>
+ * It is an expected outcome under load, answered with 503 Service Unavailable, so it carries no stack trace.
+ */
+@Schema(description = "Exception thrown when the password hashing executor is saturated.")
+public class HashingOverloadedException extends RuntimeException {
+    /**
+     * Constructor for HashingOverloadedException.
+     * The constructor uses a default message indicating that password hashing is saturated.
+     */
+    public HashingOverloadedException() {
+        super("Too many password checks in progress, retry later.", null, false, false);
+    }
+}
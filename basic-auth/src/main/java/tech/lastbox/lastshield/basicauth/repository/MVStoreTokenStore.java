@@ -0,0 +1,260 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.repository;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.BasicDataType;
+import org.h2.mvstore.type.StringDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.lastbox.jwt.TokenEntity;
+import tech.lastbox.jwt.TokenStore;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token store backed directly by an H2 MVStore key-value map, without JPA or Hibernate.
+ * <p>
+ * Tokens are keyed by their token string and their fields are written with a compact binary encoding
+ * (variable-length timestamps and strings), so a lookup is a single B-tree probe. Lookups only stay in the
+ * microsecond range while the pages of the live tokens fit in the page cache, so the cache should be sized for
+ * the token population, roughly 300 bytes per token.
+ * Changes are committed to the file by the MVStore background thread every commit delay, and on close; a crash
+ * may therefore lose the tokens saved during the last delay. Expired tokens are swept periodically.
+ */
+@Schema(description = "Token store backed by an embedded H2 MVStore file.")
+public class MVStoreTokenStore implements TokenStore, AutoCloseable {
+    private static final String MAP_NAME = "lastshield_tokens";
+
+    private final MVStore store;
+    private final MVMap<String, StoredToken> tokens;
+    private final ScheduledExecutorService sweeper;
+    private final Logger logger = LoggerFactory.getLogger(MVStoreTokenStore.class);
+
+    /**
+     * Opens the token store file with a 64 MB page cache, a one second commit delay and an expiry sweep every
+     * ten minutes.
+     *
+     * @param file the MVStore file, created if it does not exist.
+     */
+    public MVStoreTokenStore(Path file) {
+        this(file, 64, Duration.ofSeconds(1), Duration.ofMinutes(10));
+    }
+
+    /**
+     * Opens the token store file.
+     *
+     * @param file          the MVStore file, created if it does not exist.
+     * @param cacheSizeMb   the page cache size in megabytes.
+     * @param commitDelay   the delay between two background commits, which bounds the changes lost on a crash.
+     * @param sweepInterval the delay between two sweeps of expired tokens.
+     */
+    public MVStoreTokenStore(Path file, int cacheSizeMb, Duration commitDelay, Duration sweepInterval) {
+        this.store = new MVStore.Builder()
+                .fileName(file.toString())
+                .cacheSize(cacheSizeMb)
+                .open();
+        store.setAutoCommitDelay((int) commitDelay.toMillis());
+        this.tokens = store.openMap(MAP_NAME, new MVMap.Builder<String, StoredToken>()
+                .keyType(StringDataType.INSTANCE)
+                .valueType(StoredTokenDataType.INSTANCE));
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lastshield-mvstore-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        logger.info("MVStore token store opened at {} with {} tokens.", file, tokens.sizeAsLong());
+    }
+
+    /**
+     * Saves a token entity in the store. It becomes durable with the next background commit.
+     *
+     * @param tokenEntity the token entity to be saved.
+     * @return the saved token entity.
+     */
+    @Override
+    public TokenEntity save(TokenEntity tokenEntity) {
+        tokens.put(tokenEntity.getToken(), StoredToken.of(tokenEntity));
+        return tokenEntity;
+    }
+
+    /**
+     * Finds a token entity by its token string.
+     *
+     * @param token the token string of the entity to be retrieved.
+     * @return an {@link Optional} containing the found token entity, or {@link Optional#empty()} if not found.
+     */
+    @Override
+    public Optional<TokenEntity> findById(String token) {
+        StoredToken storedToken = tokens.get(token);
+        return storedToken == null ? Optional.empty() : Optional.of(storedToken.toEntity(token));
+    }
+
+    /**
+     * Gets the number of stored tokens, including expired tokens not swept yet.
+     *
+     * @return the number of stored tokens.
+     */
+    public long size() {
+        return tokens.sizeAsLong();
+    }
+
+    /**
+     * Stops the sweeper, commits pending changes and closes the file.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        store.close();
+    }
+
+    /**
+     * Removes every expired token. Reads do not block while the sweep runs.
+     */
+    private void sweepExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            long removed = 0;
+            Iterator<Map.Entry<String, StoredToken>> entries = tokens.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, StoredToken> entry = entries.next();
+                if (entry.getValue().expiresIn() <= now && tokens.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+            if (removed > 0) logger.debug("Swept {} expired tokens.", removed);
+        } catch (RuntimeException e) {
+            logger.error("Could not sweep expired tokens.", e);
+        }
+    }
+
+    /**
+     * Stored fields of a token; the token string itself is the map key.
+     *
+     * @param issuedAt  issue time in epoch milliseconds.
+     * @param expiresIn expiry time in epoch milliseconds.
+     * @param subject   the token subject.
+     * @param issuer    the token issuer.
+     * @param scope     the token scope.
+     * @param revoked   whether the token is revoked.
+     */
+    record StoredToken(long issuedAt, long expiresIn, String subject, String issuer, List<String> scope, boolean revoked) {
+
+        static StoredToken of(TokenEntity tokenEntity) {
+            return new StoredToken(toMillis(tokenEntity.getIssuedAt()), toMillis(tokenEntity.getExpiresIn()),
+                    tokenEntity.getSubject(), tokenEntity.getIssuer(),
+                    tokenEntity.getScope() == null ? List.of() : List.copyOf(tokenEntity.getScope()), tokenEntity.isRevoked());
+        }
+
+        TokenEntity toEntity(String token) {
+            TokenEntity tokenEntity = new TokenEntity(token, Instant.ofEpochMilli(issuedAt), Instant.ofEpochMilli(expiresIn),
+                    subject, issuer, new ArrayList<>(scope));
+            tokenEntity.setRevoked(revoked);
+            return tokenEntity;
+        }
+
+        private static long toMillis(Instant instant) {
+            return instant == null ? 0 : instant.toEpochMilli();
+        }
+    }
+
+    /**
+     * Compact binary encoding of {@link StoredToken}: a format version, both timestamps as variable-length longs,
+     * the revocation flag and every string as a variable-length character count followed by its characters.
+     */
+    static final class StoredTokenDataType extends BasicDataType<StoredToken> {
+        static final StoredTokenDataType INSTANCE = new StoredTokenDataType();
+        private static final byte FORMAT_VERSION = 1;
+
+        private StoredTokenDataType() {
+        }
+
+        @Override
+        public int getMemory(StoredToken storedToken) {
+            int memory = 64 + 2 * (length(storedToken.subject()) + length(storedToken.issuer()));
+            for (String scope : storedToken.scope()) memory += 40 + 2 * scope.length();
+            return memory;
+        }
+
+        @Override
+        public void write(WriteBuffer buffer, StoredToken storedToken) {
+            buffer.put(FORMAT_VERSION)
+                    .putVarLong(storedToken.issuedAt())
+                    .putVarLong(storedToken.expiresIn())
+                    .put((byte) (storedToken.revoked() ? 1 : 0));
+            writeString(buffer, storedToken.subject());
+            writeString(buffer, storedToken.issuer());
+            buffer.putVarInt(storedToken.scope().size());
+            for (String scope : storedToken.scope()) writeString(buffer, scope);
+        }
+
+        @Override
+        public StoredToken read(ByteBuffer buffer) {
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported stored token format: " + version);
+            }
+            long issuedAt = DataUtils.readVarLong(buffer);
+            long expiresIn = DataUtils.readVarLong(buffer);
+            boolean revoked = buffer.get() == 1;
+            String subject = readString(buffer);
+            String issuer = readString(buffer);
+            int scopeSize = DataUtils.readVarInt(buffer);
+            List<String> scope = new ArrayList<>(scopeSize);
+            for (int i = 0; i < scopeSize; i++) scope.add(readString(buffer));
+            return new StoredToken(issuedAt, expiresIn, subject, issuer, List.copyOf(scope), revoked);
+        }
+
+        @Override
+        public StoredToken[] createStorage(int size) {
+            return new StoredToken[size];
+        }
+
+        private static void writeString(WriteBuffer buffer, String value) {
+            if (value == null) {
+                buffer.putVarInt(0);
+                return;
+            }
+            buffer.putVarInt(value.length() + 1).putStringData(value, value.length());
+        }
+
+        private static String readString(ByteBuffer buffer) {
+            int length = DataUtils.readVarInt(buffer);
+            return length == 0 ? null : DataUtils.readString(buffer, length - 1);
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import tech.lastbox.jwt.TokenEntity;
 import tech.lastbox.jwt.TokenStore;
 
+import java.util.List;
+
 /**
  * Repository interface for handling token-related operations.
  * This interface extends JpaRepository for CRUD operations and TokenStore for token-specific behavior.
@@ -31,4 +33,14 @@ import tech.lastbox.jwt.TokenStore;
 @ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
 @Schema(description = "Repository for handling token data and providing token-specific operations.")
 public interface TokenRepository extends JpaRepository<TokenEntity, String>, TokenStore {
+
+    /**
+     * Finds every token entity whose token string is in the given collection.
+     * Spring Data resolves the whole batch with a single {@code IN} query.
+     *
+     * @param tokens the token strings of the entities to be retrieved.
+     * @return the found token entities.
+     */
+    @Override
+    List<TokenEntity> findAllById(Iterable<String> tokens);
 }
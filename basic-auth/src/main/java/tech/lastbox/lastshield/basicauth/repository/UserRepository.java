@@ -16,15 +16,20 @@
 package tech.lastbox.lastshield.basicauth.repository;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.QueryHint;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import tech.lastbox.lastshield.security.core.annotations.UserHandler;
 import tech.lastbox.lastshield.basicauth.dto.UserDTO;
 import tech.lastbox.lastshield.basicauth.entity.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Repository interface for handling User-related database operations.
@@ -48,6 +53,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Schema(description = "Finds a user by their unique ID.")
     Optional<User> findUserById(Long id);
 
+    /**
+     * Reads the username stored in the database for a user ID.
+     * <p>
+     * Unlike {@link #findById(Object)}, which returns the managed instance when the user is already loaded in the
+     * persistence context, this reads the stored row, so it still returns the previous username of a user being
+     * renamed. Pending changes are not flushed before the query.
+     *
+     * @param id the unique identifier of the user.
+     * @return an Optional containing the stored username, empty if there is no such user.
+     */
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+    @Schema(description = "Reads the username stored in the database for a user ID, ignoring unsaved changes.")
+    Optional<String> findStoredUsernameById(@Param("id") Long id);
+
     /**
      * Find a user by their unique username.
      *
@@ -66,6 +86,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Schema(description = "Checks if a user exists with the specified username.")
     boolean existsUserByUsername(String username);
 
+    /**
+     * Finds which of the given usernames are already taken, with a single query.
+     *
+     * @param usernames the usernames to check.
+     * @return the subset of the usernames that belong to an existing user.
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    @Schema(description = "Finds which of the given usernames already belong to a user, with a single query.")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
     /**
      * Find a user by their role.
      *
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles login attempts per username and per client address, before the password encoder is reached.
+ * <p>
+ * Each dimension is a rate limiter following the generic cell rate algorithm, the virtual-scheduling form of a
+ * token bucket: a key may make a burst of attempts, then one attempt per interval. Instead of one bucket per key,
+ * the theoretical arrival times of the keys are kept in a fixed count-min sketch of four rows of 4,096 cells,
+ * so memory stays bounded whatever the number of usernames or addresses an attacker cycles through. A key reads
+ * the minimum of its cells and, when admitted, raises each of them with a lock-free compare-and-set. Keys sharing
+ * every cell can only be throttled earlier than their own rate, never later, and the row hashes are seeded at
+ * startup so colliding keys cannot be crafted offline.
+ * <p>
+ * The number of allowed and throttled attempts, and the number of keys currently slowed down, are published as
+ * Micrometer metrics when a {@link MeterRegistry} is available.
+ */
+@Service
+@ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+@Schema(description = "Throttles login attempts per username and client address before passwords are checked.")
+public class LoginThrottle {
+    private final boolean enabled;
+    private final RateSketch usernames;
+    private final RateSketch addresses;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttledUsernames = new LongAdder();
+    private final LongAdder throttledAddresses = new LongAdder();
+
+    /**
+     * Constructs the login throttle from the Basic Authentication properties and registers its metrics.
+     *
+     * @param basicAuthProperties the Basic Authentication properties holding the login rates.
+     * @param meterRegistry       the registry of the application metrics (auto-injected by Spring IoC, optional).
+     * @throws IllegalArgumentException if a rate or burst is not positive.
+     */
+    public LoginThrottle(BasicAuthProperties basicAuthProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = basicAuthProperties.isLoginThrottle();
+        this.usernames = new RateSketch(basicAuthProperties.getLoginAttemptsPerMinute(), basicAuthProperties.getLoginBurst());
+        this.addresses = new RateSketch(basicAuthProperties.getLoginAttemptsPerMinutePerAddress(),
+                basicAuthProperties.getLoginBurstPerAddress());
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Records a login attempt and checks whether it may proceed. The client address is checked first, so a burst
+     * of attempts from one address against many usernames does not consume the budget of those usernames.
+     *
+     * @param username      the username of the attempt.
+     * @param clientAddress the address of the client.
+     * @return {@link Duration#ZERO} if the attempt may proceed, otherwise how long the client should wait.
+     */
+    @Schema(description = "Records a login attempt and returns how long the client should wait, or zero if it may proceed.")
+    public Duration acquire(String username, String clientAddress) {
+        if (!enabled) return Duration.ZERO;
+
+        long wait = addresses.acquire(clientAddress == null ? "" : clientAddress);
+        if (wait > 0) {
+            throttledAddresses.increment();
+            return Duration.ofNanos(wait);
+        }
+        wait = usernames.acquire(username == null ? "" : username);
+        if (wait > 0) {
+            throttledUsernames.increment();
+            return Duration.ofNanos(wait);
+        }
+        allowed.increment();
+        return Duration.ZERO;
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("lastshield.login.attempts", allowed, LongAdder::sum)
+                .description("Login attempts allowed or throttled before the password check.")
+                .tag("outcome", "allowed")
+                .register(registry);
+        FunctionCounter.builder("lastshield.login.attempts", throttledUsernames, LongAdder::sum)
+                .description("Login attempts allowed or throttled before the password check.")
+                .tag("outcome", "throttled").tag("key", "username")
+                .register(registry);
+        FunctionCounter.builder("lastshield.login.attempts", throttledAddresses, LongAdder::sum)
+                .description("Login attempts allowed or throttled before the password check.")
+                .tag("outcome", "throttled").tag("key", "address")
+                .register(registry);
+        Gauge.builder("lastshield.login.throttle.active", usernames, RateSketch::activeCells)
+                .description("Sketch cells of keys whose login budget is not full, an estimate of the keys being slowed down.")
+                .tag("key", "username")
+                .register(registry);
+        Gauge.builder("lastshield.login.throttle.active", addresses, RateSketch::activeCells)
+                .description("Sketch cells of keys whose login budget is not full, an estimate of the keys being slowed down.")
+                .tag("key", "address")
+                .register(registry);
+    }
+
+    /**
+     * Count-min sketch of theoretical arrival times, in nanoseconds since the sketch was created.
+     */
+    static final class RateSketch {
+        private static final int ROWS = 4;
+        private static final int WIDTH_BITS = 12;
+        private static final int WIDTH = 1 << WIDTH_BITS;
+
+        private final AtomicLongArray cells = new AtomicLongArray(ROWS * WIDTH);
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final long seed = new SecureRandom().nextLong();
+        private final long origin = System.nanoTime();
+
+        RateSketch(int attemptsPerMinute, int burst) {
+            if (attemptsPerMinute < 1 || burst < 1) {
+                throw new IllegalArgumentException("Login attempts per minute and burst must be positive.");
+            }
+            this.intervalNanos = Duration.ofMinutes(1).toNanos() / attemptsPerMinute;
+            this.toleranceNanos = intervalNanos * (burst - 1);
+        }
+
+        /**
+         * Admits an attempt of a key if it conforms to the rate.
+         *
+         * @return zero if the attempt is admitted, otherwise the nanoseconds until the next one would be.
+         */
+        long acquire(String key) {
+            long hash = hash(key);
+            long now = System.nanoTime() - origin;
+            long arrival = Long.MAX_VALUE;
+            for (int row = 0; row < ROWS; row++) {
+                arrival = Math.min(arrival, cells.get(cell(hash, row)));
+            }
+            long start = Math.max(arrival, now);
+            if (start - now > toleranceNanos) return start - now - toleranceNanos;
+
+            long next = start + intervalNanos;
+            for (int row = 0; row < ROWS; row++) {
+                cells.accumulateAndGet(cell(hash, row), next, Math::max);
+            }
+            return 0;
+        }
+
+        /**
+         * Counts the cells of the first row whose theoretical arrival time is in the future.
+         */
+        int activeCells() {
+            long now = System.nanoTime() - origin;
+            int active = 0;
+            for (int i = 0; i < WIDTH; i++) {
+                if (cells.get(i) > now) active++;
+            }
+            return active;
+        }
+
+        /**
+         * Index of the cell of a key in a row, derived from the two halves of its hash.
+         */
+        private static int cell(long hash, int row) {
+            int index = ((int) hash + row * (int) (hash >>> 32)) & (WIDTH - 1);
+            return row * WIDTH + index;
+        }
+
+        /**
+         * Seeded 64-bit FNV-1a hash followed by a murmur finalizer.
+         */
+        private long hash(String key) {
+            long hash = 0xcbf29ce484222325L ^ seed;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            return hash ^ (hash >>> 33);
+        }
+    }
+}
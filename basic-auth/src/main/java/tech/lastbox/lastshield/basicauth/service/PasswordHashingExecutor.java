@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+import tech.lastbox.lastshield.basicauth.exception.HashingOverloadedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the password encoder on a dedicated, bounded pool of threads instead of the request threads.
+ * <p>
+ * Hashing a password burns tens of milliseconds of CPU, so a burst of logins running on the servlet threads can
+ * occupy the whole request pool and delay every cheap authenticated call. Here, at most one thread per core hashes
+ * at a time and a bounded queue holds the following requests; once both are full, further requests fail right away
+ * with a {@link HashingOverloadedException}, answered with 503 Service Unavailable, instead of piling up.
+ * The calling thread waits for its result: a virtual request thread is unmounted while it waits, and platform
+ * request threads stay idle, bounded by the queue capacity.
+ */
+@Service
+@ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+@Schema(description = "Bounded executor running password hashing off the request threads.")
+public class PasswordHashingExecutor {
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+
+    /**
+     * Constructs the hashing executor and registers its metrics.
+     *
+     * @param passwordEncoder     the password encoder run by the executor.
+     * @param basicAuthProperties the Basic Authentication properties holding the pool and queue sizes.
+     * @param meterRegistry       the registry of the application metrics (auto-injected by Spring IoC, optional).
+     * @throws IllegalArgumentException if the number of threads is not positive or the queue capacity is negative.
+     */
+    public PasswordHashingExecutor(PasswordEncoder passwordEncoder, BasicAuthProperties basicAuthProperties,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        int threads = basicAuthProperties.getHashingThreads() > 0
+                ? basicAuthProperties.getHashingThreads()
+                : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = basicAuthProperties.getHashingQueueCapacity();
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Hashing queue capacity must not be negative.");
+        }
+        this.passwordEncoder = passwordEncoder;
+        this.threads = threads;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lastshield-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        meterRegistry.ifAvailable(registry ->
+                new ExecutorServiceMetrics(executor, "lastshield.hashing", List.of()).bindTo(registry));
+    }
+
+    /**
+     * Encodes a raw password on the hashing executor.
+     *
+     * @param rawPassword the password to encode.
+     * @return the encoded password.
+     * @throws HashingOverloadedException if the executor and its queue are full.
+     */
+    @Schema(description = "Encodes a raw password on the hashing executor.")
+    public String encode(CharSequence rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Encodes many raw passwords in parallel on the hashing executor, for bulk operations.
+     * <p>
+     * At most one password per hashing thread is in flight at a time, so the bulk operation never holds more than
+     * that many slots of the queue and concurrent logins keep being served in between. When the queue is full
+     * anyway, the password is encoded on the calling thread instead of failing.
+     *
+     * @param rawPasswords the passwords to encode.
+     * @return the encoded passwords, in the same order.
+     */
+    @Schema(description = "Encodes many raw passwords in parallel on the hashing executor.")
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        Semaphore inFlight = new Semaphore(threads);
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (CharSequence rawPassword : rawPasswords) {
+                inFlight.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return passwordEncoder.encode(rawPassword);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    futures.add(CompletableFuture.completedFuture(passwordEncoder.encode(rawPassword)));
+                }
+            }
+            List<String> encodedPasswords = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) encodedPasswords.add(await(future));
+            return encodedPasswords;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing.", e);
+        }
+    }
+
+    /**
+     * Checks a raw password against an encoded one on the hashing executor.
+     *
+     * @param rawPassword     the password to check.
+     * @param encodedPassword the stored encoded password.
+     * @return true if the passwords match.
+     * @throws HashingOverloadedException if the executor and its queue are full.
+     */
+    @Schema(description = "Checks a raw password against an encoded one on the hashing executor.")
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Checks whether an encoded password should be encoded again, because it was encoded with another algorithm or
+     * weaker parameters than the current ones. This only parses the encoded password, so it runs on the caller.
+     *
+     * @param encodedPassword the stored encoded password.
+     * @return true if the password should be encoded again.
+     */
+    @Schema(description = "Checks whether an encoded password should be encoded again with the current parameters.")
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Stops the hashing threads once the queued work is done.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new HashingOverloadedException();
+        }
+        try {
+            return await(future);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing.", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException("Password hashing failed.", e.getCause());
+        }
+    }
+}
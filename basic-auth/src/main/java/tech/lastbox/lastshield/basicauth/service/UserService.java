@@ -16,18 +16,30 @@
 package tech.lastbox.lastshield.basicauth.service;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.EntityManager;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import tech.lastbox.jwt.InvalidationEvent;
+import tech.lastbox.jwt.InvalidationTransport;
+import tech.lastbox.lastshield.basicauth.dto.RegisterRequest;
 import tech.lastbox.lastshield.basicauth.dto.UserDTO;
+import tech.lastbox.lastshield.basicauth.dto.UserImportResult;
 import tech.lastbox.lastshield.basicauth.entity.User;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
 import tech.lastbox.lastshield.basicauth.exception.DuplicatedUserException;
+import tech.lastbox.lastshield.basicauth.exception.HashingOverloadedException;
 import tech.lastbox.lastshield.basicauth.exception.UnregisteredUserException;
 import tech.lastbox.lastshield.basicauth.exception.UsernameNotFoundException;
 import tech.lastbox.lastshield.basicauth.repository.UserRepository;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service class for managing user-related operations, such as creating new users, logging in, and updating user details.
@@ -39,11 +51,21 @@ import java.util.Optional;
 @Schema(description = "Service for managing user-related operations, including user creation, login, and updates.")
 public class UserService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final InvalidationTransport invalidationTransport;
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    private final BasicAuthProperties basicAuthProperties;
+    private final EntityManager entityManager;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordHashingExecutor passwordHashingExecutor,
+                       InvalidationTransport invalidationTransport, VerifiedCredentialCache verifiedCredentialCache,
+                       BasicAuthProperties basicAuthProperties, EntityManager entityManager) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.invalidationTransport = invalidationTransport;
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        this.basicAuthProperties = basicAuthProperties;
+        this.entityManager = entityManager;
     }
 
     /**
@@ -63,31 +85,131 @@ public class UserService {
     /**
      * Creates a new user.
      * If a user with the given username already exists, throws DuplicatedUserException.
+     * Once saved, the username is broadcast so no node keeps anything cached under it.
+     * The password is hashed on the {@link PasswordHashingExecutor}.
      *
      * @param name the name of the new user.
      * @param username the username of the new user.
      * @param rawPassword the raw password for the new user.
      * @return the created User object.
      * @throws DuplicatedUserException if a user with the given username already exists.
+     * @throws HashingOverloadedException if too many passwords are being hashed.
      */
     @Schema(description = "Creates a new user. Throws DuplicatedUserException if the username already exists.")
     public User createUser(String name, String username, String rawPassword) throws DuplicatedUserException {
         if (userRepository.existsUserByUsername(username)) throw new DuplicatedUserException();
-        return userRepository.save(new User(name, username, passwordEncoder.encode(rawPassword)));
+        User createdUser = userRepository.save(new User(name, username, passwordHashingExecutor.encode(rawPassword)));
+        invalidationTransport.publish(InvalidationEvent.principalChanged(username));
+        return createdUser;
+    }
+
+    /**
+     * Imports users in bulk, with the {@code USER} role, reading the records as they are consumed.
+     * <p>
+     * Records are processed in chunks of {@code lastshield.basicauth.import-chunk-size}: the usernames of a chunk
+     * are checked with a single query, the passwords are hashed in parallel with
+     * {@link PasswordHashingExecutor#encodeAll(List)} and the users are inserted in one transaction, with JDBC
+     * batching. Each chunk is committed on its own, so an interrupted import can be resumed by sending the same
+     * records again: the users already imported are then counted as duplicates. When a username is taken
+     * concurrently, the chunk is checked again and retried once. The persistence context is cleared after every
+     * chunk, so the users of earlier chunks are not kept managed when it spans the whole request.
+     * <p>
+     * Unlike {@link #createUser(String, String, String)}, no invalidation is broadcast per user: a node that
+     * looked up a username shortly before it was imported only remembers it as unknown for the short unknown
+     * subject time to live.
+     *
+     * @param records the records to import; a {@code null} record stands for a malformed one and is counted as invalid.
+     * @return the number of imported, duplicated and invalid records.
+     */
+    @Schema(description = "Imports users in bulk, checking usernames per chunk, hashing in parallel and inserting in batches.")
+    public UserImportResult importUsers(Iterator<RegisterRequest> records) {
+        int chunkSize = Math.max(1, basicAuthProperties.getImportChunkSize());
+        long imported = 0;
+        long duplicates = 0;
+        long invalid = 0;
+        while (records.hasNext()) {
+            Map<String, RegisterRequest> chunk = new LinkedHashMap<>();
+            int read = 0;
+            while (read < chunkSize && records.hasNext()) {
+                RegisterRequest record = records.next();
+                read++;
+                if (record == null || record.username() == null || record.username().isBlank() || record.password() == null) {
+                    invalid++;
+                } else if (chunk.putIfAbsent(record.username(), record) != null) {
+                    duplicates++;
+                }
+            }
+            int saved = importChunk(chunk);
+            imported += saved;
+            duplicates += chunk.size() - saved;
+        }
+        return new UserImportResult(imported, duplicates, invalid);
+    }
+
+    /**
+     * Inserts the records of a chunk whose username is free and returns how many were inserted.
+     */
+    private int importChunk(Map<String, RegisterRequest> chunk) {
+        if (chunk.isEmpty()) return 0;
+        Set<String> existing = userRepository.findExistingUsernames(chunk.keySet());
+        List<RegisterRequest> records = new ArrayList<>(chunk.size());
+        chunk.values().stream().filter(record -> !existing.contains(record.username())).forEach(records::add);
+        List<String> encodedPasswords = passwordHashingExecutor.encodeAll(records.stream().map(RegisterRequest::password).toList());
+        try {
+            return saveImported(records, encodedPasswords, Set.of());
+        } catch (DataIntegrityViolationException e) {
+            Set<String> taken = userRepository.findExistingUsernames(records.stream().map(RegisterRequest::username).toList());
+            return saveImported(records, encodedPasswords, taken);
+        }
+    }
+
+    private int saveImported(List<RegisterRequest> records, List<String> encodedPasswords, Set<String> taken) {
+        List<User> users = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            RegisterRequest record = records.get(i);
+            if (!taken.contains(record.username())) {
+                users.add(new User(record.name(), record.username(), encodedPasswords.get(i)));
+            }
+        }
+        try {
+            userRepository.saveAll(users);
+        } finally {
+            entityManager.clear();
+        }
+        return users.size();
     }
 
     /**
      * Attempts to log in with the provided username and password.
      * Returns an Optional containing the user if the login is successful (username matches and password is correct).
+     * The password is checked on the {@link PasswordHashingExecutor}. When it matches but was encoded with another
+     * algorithm or weaker parameters than the current ones, it is encoded again and saved; this is skipped while the
+     * executor is overloaded and retried on a later login. When the {@link VerifiedCredentialCache} is enabled, a
+     * password verified shortly before against the same stored password is accepted without checking it again.
      *
      * @param username the username to log in with.
      * @param rawPassword the raw password to check.
      * @return an Optional containing the User if login is successful, empty otherwise.
+     * @throws HashingOverloadedException if too many passwords are being checked.
      */
     @Schema(description = "Attempts to log in with the given username and raw password.")
     public Optional<User> login(String username, String rawPassword) {
-        return userRepository.findUserByUsername(username)
-                .filter(user -> passwordEncoder.matches(rawPassword, user.getPassword()));
+        Optional<User> user = userRepository.findUserByUsername(username);
+        if (user.isPresent() && verifiedCredentialCache.contains(username, rawPassword, user.get().getPassword())) return user;
+        user = user.filter(candidate -> passwordHashingExecutor.matches(rawPassword, candidate.getPassword()));
+        user.filter(matched -> passwordHashingExecutor.upgradeEncoding(matched.getPassword()))
+                .ifPresent(matched -> rehash(matched, rawPassword));
+        user.ifPresent(matched -> verifiedCredentialCache.put(username, rawPassword, matched.getPassword()));
+        return user;
+    }
+
+    private void rehash(User user, String rawPassword) {
+        try {
+            user.setPassword(passwordHashingExecutor.encode(rawPassword));
+        } catch (HashingOverloadedException e) {
+            return;
+        }
+        userRepository.save(user);
     }
 
     /**
@@ -103,6 +225,8 @@ public class UserService {
     /**
      * Updates the user details.
      * If the user is not registered (i.e., ID is null or 0), throws UnregisteredUserException.
+     * Once saved, the change is broadcast so every node drops what it cached for this user, under its previous
+     * username as well when it was renamed.
      *
      * @param user the user object containing the updated information.
      * @return the updated User object.
@@ -111,6 +235,13 @@ public class UserService {
     @Schema(description = "Updates the user details. Throws UnregisteredUserException if the user is not registered.")
     public User updateUser(User user) throws UnregisteredUserException {
         if (user.getId() == null || user.getId() == 0) throw new UnregisteredUserException("User not registered to update.");
-        return userRepository.save(user);
+        Optional<String> previousUsername = userRepository.findStoredUsernameById(user.getId());
+        User updatedUser = userRepository.save(user);
+        verifiedCredentialCache.invalidate(updatedUser.getUsername());
+        previousUsername.ifPresent(verifiedCredentialCache::invalidate);
+        invalidationTransport.publish(InvalidationEvent.principalChanged(updatedUser.getUsername()));
+        previousUsername.filter(username -> !username.equals(updatedUser.getUsername()))
+                .ifPresent(username -> invalidationTransport.publish(InvalidationEvent.principalChanged(username)));
+        return updatedUser;
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.basicauth.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import tech.lastbox.jwt.CacheTrimmer;
+import tech.lastbox.lastshield.basicauth.enviroment.BasicAuthProperties;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, short-lived cache of the credentials that recently passed a password check, so clients logging in
+ * again and again with the right password are answered without another run of the password encoder.
+ * <p>
+ * The password itself is never kept: each entry holds an HMAC-SHA256 of the username and password under a key
+ * drawn at startup, which never leaves the process, together with the encoded password it was checked against.
+ * An entry therefore only matches while the stored password is unchanged, whichever node changed it, and is
+ * dropped as well when the user is updated through the {@link UserService}. A wrong password never matches an
+ * entry and always goes through the password encoder. MACs are compared in constant time.
+ * <p>
+ * The cache is disabled by default and enabled with {@code lastshield.basicauth.credential-cache}. When it is
+ * full, a {@link CacheTrimmer} drops expired entries first, then arbitrary ones, down to three quarters of its
+ * maximum size. Hits, misses and the number of entries are
+ * published as Micrometer metrics when a {@link MeterRegistry} is available.
+ */
+@Service
+@ConditionalOnProperty(name = "lastshield.basicauth", havingValue = "true")
+@Schema(description = "Short-lived cache of recently verified credentials, keyed by an HMAC of the password.")
+public class VerifiedCredentialCache {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final SecretKeySpec key;
+    private final ConcurrentHashMap<String, Credential> credentials = new ConcurrentHashMap<>();
+    private final CacheTrimmer<Credential> trimmer = new CacheTrimmer<>(Credential::expiresAt);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs the cache from the Basic Authentication properties and registers its metrics.
+     *
+     * @param basicAuthProperties the Basic Authentication properties holding the time to live and maximum size.
+     * @param meterRegistry       the registry of the application metrics (auto-injected by Spring IoC, optional).
+     * @throws IllegalArgumentException if the time to live or the maximum size is negative.
+     */
+    public VerifiedCredentialCache(BasicAuthProperties basicAuthProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        Duration ttl = basicAuthProperties.getCredentialCacheTtl();
+        if (ttl.isNegative() || basicAuthProperties.getCredentialCacheMaxSize() < 0) {
+            throw new IllegalArgumentException("Credential cache time to live and size must not be negative.");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = basicAuthProperties.getCredentialCacheMaxSize();
+        this.enabled = basicAuthProperties.isCredentialCache() && ttlNanos > 0 && maxSize > 0;
+        byte[] keyBytes = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        if (enabled) meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Checks whether a username and password were verified against the given encoded password within the time to
+     * live.
+     *
+     * @param username        the username of the login.
+     * @param rawPassword     the presented password.
+     * @param encodedPassword the encoded password currently stored for the user.
+     * @return true if the credential is cached, false if the password must be checked.
+     */
+    @Schema(description = "Checks whether a username and password were recently verified against the stored password.")
+    public boolean contains(String username, String rawPassword, String encodedPassword) {
+        if (!enabled) return false;
+        Credential credential = credentials.get(username);
+        if (credential != null && System.nanoTime() - credential.expiresAt() >= 0) {
+            credentials.remove(username, credential);
+            credential = null;
+        }
+        boolean hit = credential != null
+                && credential.encodedPassword().equals(encodedPassword)
+                && MessageDigest.isEqual(credential.mac(), mac(username, rawPassword));
+        (hit ? hits : misses).increment();
+        return hit;
+    }
+
+    /**
+     * Remembers that a username and password were verified against an encoded password.
+     *
+     * @param username        the username of the login.
+     * @param rawPassword     the verified password.
+     * @param encodedPassword the encoded password it was verified against.
+     */
+    @Schema(description = "Remembers that a username and password were verified against the stored password.")
+    public void put(String username, String rawPassword, String encodedPassword) {
+        if (!enabled) return;
+        credentials.put(username, new Credential(mac(username, rawPassword), encodedPassword, System.nanoTime() + ttlNanos));
+        trimmer.trim(credentials, maxSize);
+    }
+
+    /**
+     * Forgets the credential cached for a username.
+     *
+     * @param username the username whose credential is dropped.
+     */
+    @Schema(description = "Forgets the credential cached for a username.")
+    public void invalidate(String username) {
+        if (username != null) credentials.remove(username);
+    }
+
+    private byte[] mac(String username, String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("lastshield.login.credential.cache", hits, LongAdder::sum)
+                .description("Logins answered from, or missing, the verified credential cache.")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("lastshield.login.credential.cache", misses, LongAdder::sum)
+                .description("Logins answered from, or missing, the verified credential cache.")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("lastshield.login.credential.cache.size", credentials, ConcurrentHashMap::size)
+                .description("Credentials in the verified credential cache, including expired ones not dropped yet.")
+                .register(registry);
+    }
+
+    /**
+     * A verified credential.
+     *
+     * @param mac             the HMAC of the username and password.
+     * @param encodedPassword the encoded password the password was verified against.
+     * @param expiresAt       the {@link System#nanoTime()} after which the entry is stale.
+     */
+    private record Credential(byte[] mac, String encodedPassword, long expiresAt) {}
+}
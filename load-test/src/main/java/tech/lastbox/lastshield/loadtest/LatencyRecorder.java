@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Single-threaded latency buffer for one client and one endpoint.
+ * <p>
+ * Each client owns its own recorders, so recording never contends; the buffers are merged once the
+ * measured window is over and percentiles are computed from the sorted samples.
+ */
+final class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int size;
+    private long errors;
+
+    /**
+     * Records the latency of a completed request.
+     *
+     * @param nanos the request latency in nanoseconds.
+     * @param success whether the response had the expected status.
+     */
+    void record(long nanos, boolean success) {
+        if (!success) errors++;
+        if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+        samples[size++] = nanos;
+    }
+
+    /**
+     * Adds the samples of another recorder to this one.
+     *
+     * @param other the recorder to merge.
+     */
+    void merge(LatencyRecorder other) {
+        if (size + other.size > samples.length) samples = Arrays.copyOf(samples, size + other.size);
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        size += other.size;
+        errors += other.errors;
+    }
+
+    /**
+     * Summarizes the recorded samples.
+     *
+     * @param seconds the measured window, used to compute throughput.
+     * @return the summary of this recorder.
+     */
+    Summary summarize(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return new Summary(size, errors, size / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Latency and throughput summary of one endpoint.
+     *
+     * @param count number of completed requests.
+     * @param errors number of requests that did not return the expected status.
+     * @param throughput completed requests per second.
+     * @param p50 median latency in milliseconds.
+     * @param p99 99th percentile latency in milliseconds.
+     * @param p999 99.9th percentile latency in milliseconds.
+     */
+    record Summary(long count, long errors, double throughput, double p50, double p99, double p999) {}
+}
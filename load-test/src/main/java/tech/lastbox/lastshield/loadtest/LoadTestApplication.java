@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Minimal Spring Boot application that hosts the Basic Auth module for load testing.
+ * <p>
+ * It scans the whole {@code tech.lastbox.lastshield} package so the Basic Auth controllers, services and
+ * security configuration are registered, and points JPA at the Basic Auth entities and the token entity.
+ * <p>
+ * It can also run on its own, which is how the {@code native} profile packages it as a native image:
+ * the harness then targets it with {@code --base-url}.
+ */
+@SpringBootApplication(scanBasePackages = "tech.lastbox.lastshield")
+@EntityScan(basePackages = {"tech.lastbox.lastshield.basicauth.entity", "tech.lastbox.jwt"})
+@EnableJpaRepositories(basePackages = "tech.lastbox.lastshield.basicauth.repository")
+public class LoadTestApplication {
+
+    /**
+     * Starts the application on its own.
+     *
+     * @param args the Spring Boot arguments, e.g. {@code --lastshield.basicauth.secret-key=...}.
+     */
+    public static void main(String[] args) {
+        SpringApplication.run(LoadTestApplication.class, args);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tech.lastbox.lastshield.loadtest.LoadTestOptions.Endpoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load harness for the Basic Auth module.
+ * <p>
+ * For every combination of BCrypt cost and token store it boots {@link LoadTestApplication} on an in-memory
+ * H2 database and a random port, registers a pool of users, and then drives {@code /register}, {@code /login}
+ * and a protected endpoint with a weighted mix from a configurable number of concurrent clients. Throughput and
+ * p50/p99/p999 latency are reported per endpoint, which gives the capacity curve of the auth tier without any
+ * external service.
+ * <p>
+ * Run it from the project root with:
+ * <pre>
+ * mvn -pl load-test -am test -Pload-test -Dloadtest.args="--bcrypt-costs=4,10,12 --token-stores=jpa,none"
+ * </pre>
+ * See {@link LoadTestOptions} for every available option.
+ */
+public final class LoadTestHarness {
+    static final String PROTECTED_PATH = "/loadtest/probe";
+    private static final String PASSWORD = "load-test-password";
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final LoadTestOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LoadTestHarness(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Entry point of the harness.
+     *
+     * @param args the options, see {@link LoadTestOptions}.
+     * @throws Exception if a scenario cannot be started or driven.
+     */
+    public static void main(String[] args) throws Exception {
+        new LoadTestHarness(LoadTestOptions.parse(args)).run();
+    }
+
+    private void run() throws Exception {
+        if (options.csv() != null && Files.notExists(options.csv())) {
+            Files.writeString(options.csv(), "bcryptCost,tokenStore,threads,concurrency,endpoint,count,errors,throughput,p50Ms,p99Ms,p999Ms\n");
+        }
+
+        if (options.baseUrl() != null) {
+            runScenario(options.baseUrl(), "external", "external");
+            return;
+        }
+
+        for (String tokenStore : options.tokenStores()) {
+            for (int bcryptCost : options.bcryptCosts()) {
+                try (ConfigurableApplicationContext context = boot(bcryptCost, tokenStore)) {
+                    String port = context.getEnvironment().getProperty("local.server.port");
+                    runScenario("http://localhost:" + port, String.valueOf(bcryptCost), tokenStore);
+                }
+            }
+        }
+    }
+
+    /**
+     * Boots the Basic Auth application with the given BCrypt cost and token store.
+     *
+     * @param bcryptCost the BCrypt strength.
+     * @param tokenStore the token store type.
+     * @return the running application context.
+     */
+    private ConfigurableApplicationContext boot(int bcryptCost, String tokenStore) {
+        String database = "loadtest-" + tokenStore + "-" + bcryptCost + "-" + System.nanoTime();
+        return new SpringApplicationBuilder(LoadTestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.open-in-view=false",
+                        "logging.level.root=WARN",
+                        "lastshield.basicauth=true",
+                        "lastshield.basicauth.issuer=loadtest",
+                        "lastshield.basicauth.secret-key=load-test-secret-key",
+                        "lastshield.basicauth.bcrypt-strength=" + bcryptCost,
+                        "lastshield.basicauth.login-throttle=false",
+                        "lastshield.basicauth.token-store=" + tokenStore)
+                .run();
+    }
+
+    private void runScenario(String baseUrl, String bcryptCost, String tokenStore) throws Exception {
+        try (ExecutorService executor = options.virtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(options.concurrency() + 1)) {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            List<String> usernames = new ArrayList<>();
+            List<String> tokens = new ArrayList<>();
+            for (int i = 0; i < options.users(); i++) {
+                String username = nextUsername();
+                HttpResponse<String> response = client.send(register(baseUrl, username), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 201) {
+                    throw new IllegalStateException("Could not register seed user: " + response.statusCode() + " " + response.body());
+                }
+                usernames.add(username);
+                tokens.add(objectMapper.readTree(response.body()).get("token").asText());
+            }
+
+            drive(client, executor, baseUrl, usernames, tokens, options.warmup());
+            Map<Endpoint, LatencyRecorder> results = drive(client, executor, baseUrl, usernames, tokens, options.duration());
+            report(bcryptCost, tokenStore, results);
+        }
+    }
+
+    /**
+     * Drives the configured mix for the given duration.
+     *
+     * @return the merged latencies of every client, per endpoint.
+     */
+    private Map<Endpoint, LatencyRecorder> drive(HttpClient client, ExecutorService executor, String baseUrl,
+                                                 List<String> usernames, List<String> tokens, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Map<Endpoint, LatencyRecorder>>> clients = new ArrayList<>();
+        for (int i = 0; i < options.concurrency(); i++) {
+            clients.add(executor.submit(() -> runClient(client, baseUrl, usernames, tokens, deadline)));
+        }
+
+        Map<Endpoint, LatencyRecorder> merged = newRecorders();
+        for (Future<Map<Endpoint, LatencyRecorder>> future : clients) {
+            future.get().forEach((endpoint, recorder) -> merged.get(endpoint).merge(recorder));
+        }
+        return merged;
+    }
+
+    private Map<Endpoint, LatencyRecorder> runClient(HttpClient client, String baseUrl, List<String> usernames,
+                                                     List<String> tokens, long deadline) throws InterruptedException {
+        Map<Endpoint, LatencyRecorder> recorders = newRecorders();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Endpoint endpoint = pick(random);
+            int user = random.nextInt(usernames.size());
+            HttpRequest request = switch (endpoint) {
+                case REGISTER -> register(baseUrl, nextUsername());
+                case LOGIN -> login(baseUrl, usernames.get(user));
+                case PROTECTED -> probe(baseUrl, tokens.get(user));
+            };
+            int expectedStatus = endpoint == Endpoint.REGISTER ? 201 : 200;
+
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == expectedStatus;
+            } catch (IOException e) {
+                success = false;
+            }
+            recorders.get(endpoint).record(System.nanoTime() - start, success);
+        }
+        return recorders;
+    }
+
+    private Endpoint pick(ThreadLocalRandom random) {
+        int total = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<Endpoint, Integer> entry : options.mix().entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("Unreachable mix selection");
+    }
+
+    private void report(String bcryptCost, String tokenStore, Map<Endpoint, LatencyRecorder> results) throws IOException {
+        double seconds = options.duration().toMillis() / 1000.0;
+        String threads = options.virtualThreads() ? "virtual" : "platform";
+        System.out.printf(Locale.ROOT, "%n== bcrypt cost %s | token store %s | %d %s clients | %.0fs ==%n",
+                bcryptCost, tokenStore, options.concurrency(), threads, seconds);
+        System.out.printf(Locale.ROOT, "%-10s %10s %8s %12s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+
+        StringBuilder csv = new StringBuilder();
+        for (Map.Entry<Endpoint, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder.Summary summary = entry.getValue().summarize(seconds);
+            if (summary.count() == 0) continue;
+            String endpoint = entry.getKey().name().toLowerCase();
+            System.out.printf(Locale.ROOT, "%-10s %10d %8d %12.1f %10.2f %10.2f %10.2f%n", endpoint,
+                    summary.count(), summary.errors(), summary.throughput(), summary.p50(), summary.p99(), summary.p999());
+            csv.append(String.format(Locale.ROOT, "%s,%s,%s,%d,%s,%d,%d,%.1f,%.3f,%.3f,%.3f%n", bcryptCost, tokenStore,
+                    threads, options.concurrency(), endpoint, summary.count(), summary.errors(), summary.throughput(),
+                    summary.p50(), summary.p99(), summary.p999()));
+        }
+
+        if (options.csv() != null) {
+            Files.writeString(options.csv(), csv, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static Map<Endpoint, LatencyRecorder> newRecorders() {
+        Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) recorders.put(endpoint, new LatencyRecorder());
+        return recorders;
+    }
+
+    private static String nextUsername() {
+        return "load-" + SEQUENCE.incrementAndGet() + "-" + ProcessHandle.current().pid();
+    }
+
+    private static HttpRequest register(String baseUrl, String username) {
+        return json(baseUrl + "/register",
+                "{\"name\":\"Load Test\",\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}");
+    }
+
+    private static HttpRequest login(String baseUrl, String username) {
+        return json(baseUrl + "/login", "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}");
+    }
+
+    private static HttpRequest probe(String baseUrl, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + PROTECTED_PATH))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private static HttpRequest json(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options of the {@link LoadTestHarness}.
+ * <p>
+ * Every option has a default, so the harness can be started without arguments. Options are given as
+ * {@code --name=value} pairs:
+ * <ul>
+ *     <li>{@code --concurrency}: number of concurrent clients (default 32).</li>
+ *     <li>{@code --threads}: {@code virtual} or {@code platform} client threads (default virtual).</li>
+ *     <li>{@code --duration}: measured seconds per scenario (default 20).</li>
+ *     <li>{@code --warmup}: unmeasured seconds per scenario (default 5).</li>
+ *     <li>{@code --mix}: weighted endpoint mix, e.g. {@code register=1,login=4,protected=15}.</li>
+ *     <li>{@code --users}: users registered before the run and reused by login and protected calls (default 50).</li>
+ *     <li>{@code --bcrypt-costs}: comma separated BCrypt costs to sweep (default 10).</li>
+ *     <li>{@code --token-stores}: comma separated token stores to sweep, e.g. {@code jpa,none} (default jpa).</li>
+ *     <li>{@code --base-url}: drive an already running instance instead of booting one; disables the sweep.</li>
+ *     <li>{@code --csv}: file that receives one summary row per scenario and endpoint.</li>
+ * </ul>
+ */
+record LoadTestOptions(
+        int concurrency,
+        boolean virtualThreads,
+        Duration duration,
+        Duration warmup,
+        Map<Endpoint, Integer> mix,
+        int users,
+        List<Integer> bcryptCosts,
+        List<String> tokenStores,
+        String baseUrl,
+        Path csv
+) {
+
+    /**
+     * Endpoints exercised by the harness.
+     */
+    enum Endpoint {
+        /** {@code POST /register} with a new, unique username. */
+        REGISTER,
+        /** {@code POST /login} with one of the pre-registered users. */
+        LOGIN,
+        /** {@code GET} on the protected probe endpoint with a valid bearer token. */
+        PROTECTED
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the arguments in {@code --name=value} form.
+     * @return the parsed options.
+     * @throws IllegalArgumentException if an option is unknown or malformed.
+     */
+    static LoadTestOptions parse(String[] args) {
+        int concurrency = 32;
+        boolean virtualThreads = true;
+        Duration duration = Duration.ofSeconds(20);
+        Duration warmup = Duration.ofSeconds(5);
+        Map<Endpoint, Integer> mix = parseMix("register=1,login=4,protected=15");
+        int users = 50;
+        List<Integer> bcryptCosts = List.of(10);
+        List<String> tokenStores = List.of("jpa");
+        String baseUrl = null;
+        Path csv = null;
+
+        for (String arg : args) {
+            if (arg.isBlank()) continue;
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "concurrency" -> concurrency = Integer.parseInt(value);
+                case "threads" -> virtualThreads = switch (value) {
+                    case "virtual" -> true;
+                    case "platform" -> false;
+                    default -> throw new IllegalArgumentException("Threads must be 'virtual' or 'platform': " + value);
+                };
+                case "duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                case "warmup" -> warmup = Duration.ofSeconds(Long.parseLong(value));
+                case "mix" -> mix = parseMix(value);
+                case "users" -> users = Integer.parseInt(value);
+                case "bcrypt-costs" -> bcryptCosts = splitList(value).stream().map(Integer::valueOf).toList();
+                case "token-stores" -> tokenStores = splitList(value);
+                case "base-url" -> baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "csv" -> csv = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+
+        if (concurrency < 1 || users < 1) {
+            throw new IllegalArgumentException("Concurrency and users must be positive.");
+        }
+        return new LoadTestOptions(concurrency, virtualThreads, duration, warmup, mix, users,
+                bcryptCosts, tokenStores, baseUrl, csv);
+    }
+
+    /**
+     * Parses a weighted mix such as {@code register=1,login=4,protected=15}.
+     * Endpoints that are not listed get a weight of zero.
+     *
+     * @param value the mix definition.
+     * @return the weight of each endpoint.
+     */
+    private static Map<Endpoint, Integer> parseMix(String value) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String entry : splitList(value)) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            mix.put(Endpoint.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix must have at least one positive weight.");
+        }
+        return mix;
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) items.add(item.trim());
+        }
+        return items;
+    }
+}
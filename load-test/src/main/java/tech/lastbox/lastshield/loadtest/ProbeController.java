@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Protected endpoint used by the load harness to measure the cost of an authenticated request.
+ * It is covered by the Basic Auth {@code /**} route, so every call goes through the full token validation
+ * and user lookup performed by the security filter.
+ */
+@RestController
+public class ProbeController {
+
+    /**
+     * Returns an empty successful response once the request has been authenticated.
+     *
+     * @return a 200 response with a constant body.
+     */
+    @GetMapping(LoadTestHarness.PROTECTED_PATH)
+    public ResponseEntity<String> probe() {
+        return ResponseEntity.ok("ok");
+    }
+}
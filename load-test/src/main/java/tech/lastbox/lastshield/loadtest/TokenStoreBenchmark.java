@@ -0,0 +1,299 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.loadtest;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tech.lastbox.jwt.InMemoryTokenStore;
+import tech.lastbox.jwt.JdbcTokenStore;
+import tech.lastbox.jwt.TokenEntity;
+import tech.lastbox.jwt.TokenStore;
+import tech.lastbox.lastshield.basicauth.repository.MVStoreTokenStore;
+import tech.lastbox.lastshield.basicauth.repository.TokenRepository;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Micro-benchmark of {@link TokenStore} implementations with a large number of live tokens.
+ * <p>
+ * It signs the requested number of realistic tokens, then for each store reports the heap retained per token,
+ * the single-threaded save rate, the concurrent lookup rate, a 90/10 lookup/save mix and the revocation rate.
+ * For stores that evict on their own, it also measures how long a whole population of short-lived tokens takes
+ * to be evicted. The {@code jpa} and {@code jdbc} stores run against an in-memory H2 database inside a booted
+ * Basic Auth application, so both go through the same connection pool; for them the retained heap is mostly
+ * the database itself.
+ * <p>
+ * Run it from the project root with:
+ * <pre>
+ * mvn -pl load-test -am compile exec:java -Dexec.mainClass=tech.lastbox.lastshield.loadtest.TokenStoreBenchmark \
+ *     -Dexec.args="--tokens=1000000 --threads=4 --duration=10"
+ * </pre>
+ * Give the JVM enough heap for the population, e.g. {@code MAVEN_OPTS=-Xmx2g}.
+ */
+public final class TokenStoreBenchmark {
+    private static final String ISSUER = "benchmark";
+    private static final List<String> SCOPE = List.of("name, username");
+    private static final int REVOCATIONS = 10_000;
+
+    private final int tokenCount;
+    private final int threads;
+    private final Duration duration;
+    private final List<String> stores;
+    private final Instant issuedAt = Instant.now();
+    private final Instant expiresIn = issuedAt.plus(Duration.ofDays(7));
+
+    private TokenStoreBenchmark(int tokenCount, int threads, Duration duration, List<String> stores) {
+        this.tokenCount = tokenCount;
+        this.threads = threads;
+        this.duration = duration;
+        this.stores = stores;
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args {@code --tokens}, {@code --threads}, {@code --duration} in seconds and {@code --stores}
+     *             as {@code --name=value} pairs; every option has a default. {@code --stores} is a comma-separated
+     *             list among {@code memory}, {@code mvstore}, {@code jpa} and {@code jdbc}.
+     * @throws Exception if a benchmark phase fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int tokenCount = 1_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Duration duration = Duration.ofSeconds(10);
+        List<String> stores = List.of("memory", "mvstore");
+        for (String arg : args) {
+            if (arg.isBlank()) continue;
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "tokens" -> tokenCount = Integer.parseInt(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                case "stores" -> stores = List.of(value.split(","));
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        new TokenStoreBenchmark(tokenCount, threads, duration, stores).run();
+    }
+
+    private void run() throws Exception {
+        System.out.printf(Locale.ROOT, "Signing %,d tokens...%n", tokenCount);
+        List<String> tokens = signTokens(tokenCount);
+        double tokenBytes = tokens.stream().mapToInt(String::length).average().orElse(0);
+        System.out.printf(Locale.ROOT, "Average token length: %.0f characters%n", tokenBytes);
+
+        for (String store : stores) {
+            benchmark(store, tokens);
+        }
+    }
+
+    private void benchmark(String storeName, List<String> tokens) throws Exception {
+        System.out.printf(Locale.ROOT, "%n== %s store | %,d tokens | %d threads ==%n", storeName, tokens.size(), threads);
+        try (OpenStore openStore = open(storeName)) {
+            TokenStore store = openStore.store();
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+            for (String token : tokens) {
+                store.save(new TokenEntity(token, issuedAt, expiresIn, "subject", ISSUER, SCOPE));
+            }
+            double saveSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "save (1 thread):     %,12.0f ops/s%n", tokens.size() / saveSeconds);
+
+            long retained = usedHeap() - heapBefore;
+            System.out.printf(Locale.ROOT, "retained heap:       %,12d bytes (%.0f bytes/token, token strings excluded)%n",
+                    retained, (double) retained / tokens.size());
+
+            System.out.printf(Locale.ROOT, "findValidToken:      %,12.0f ops/s%n", drive(store, tokens, 0));
+            System.out.printf(Locale.ROOT, "90/10 find/save:     %,12.0f ops/s%n", drive(store, tokens, 10));
+
+            int revocations = Math.min(REVOCATIONS, tokens.size());
+            start = System.nanoTime();
+            for (int i = 0; i < revocations; i++) {
+                if (!store.revoke(tokens.get(i))) throw new IllegalStateException("Token not revoked: " + tokens.get(i));
+            }
+            System.out.printf(Locale.ROOT, "revoke (1 thread):   %,12.0f ops/s%n", revocations / ((System.nanoTime() - start) / 1e9));
+
+            if (store instanceof JdbcTokenStore jdbcTokenStore) {
+                measureBatchInsert(jdbcTokenStore, tokens);
+            }
+            if (store instanceof InMemoryTokenStore inMemoryTokenStore) {
+                measureEviction(inMemoryTokenStore, tokens);
+            }
+        }
+    }
+
+    /**
+     * Runs lookups, and saves with the given percentage, from every thread for the configured duration.
+     *
+     * @return the aggregated operations per second.
+     */
+    private double drive(TokenStore store, List<String> tokens, int savePercent) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Long>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long operations = 0;
+                    while ((operations & 1023) != 0 || System.nanoTime() < deadline) {
+                        String token = tokens.get(random.nextInt(tokens.size()));
+                        if (savePercent > 0 && random.nextInt(100) < savePercent) {
+                            store.save(new TokenEntity(token, issuedAt, expiresIn, "subject", ISSUER, SCOPE));
+                        } else if (store.findValidToken(token).isEmpty()) {
+                            throw new IllegalStateException("Token not found: " + token);
+                        }
+                        operations++;
+                    }
+                    return operations;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> worker : workers) total += worker.get();
+            return total / (duration.toMillis() / 1000.0);
+        }
+    }
+
+    /**
+     * Saves a population of tokens expiring within the next two seconds and measures how long after the last
+     * expiry the wheel has evicted all of them.
+     */
+    private void measureEviction(InMemoryTokenStore store, List<String> tokens) throws InterruptedException {
+        store.close();
+        try (InMemoryTokenStore evicting = new InMemoryTokenStore()) {
+            Instant now = Instant.now();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Instant lastExpiry = now;
+            for (String token : tokens) {
+                Instant expiresIn = now.plusMillis(1000 + random.nextInt(1000));
+                if (expiresIn.isAfter(lastExpiry)) lastExpiry = expiresIn;
+                evicting.save(new TokenEntity(token, now, expiresIn, "subject", ISSUER, SCOPE));
+            }
+            while (evicting.size() > 0) {
+                Thread.sleep(10);
+            }
+            System.out.printf(Locale.ROOT, "evict all:           %,12d ms after the last expiry%n",
+                    Math.max(0, Duration.between(lastExpiry, Instant.now()).toMillis()));
+        }
+    }
+
+    /**
+     * Inserts the whole population again, under new token strings, with JDBC batches.
+     */
+    private void measureBatchInsert(JdbcTokenStore store, List<String> tokens) {
+        List<TokenEntity> tokenEntities = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            tokenEntities.add(new TokenEntity(token + ".batch", issuedAt, expiresIn, "subject", ISSUER, SCOPE));
+        }
+        long start = System.nanoTime();
+        store.saveAll(tokenEntities);
+        System.out.printf(Locale.ROOT, "saveAll (batched):   %,12.0f ops/s%n", tokens.size() / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static OpenStore open(String storeName) throws IOException {
+        return switch (storeName) {
+            case "memory" -> OpenStore.of(new InMemoryTokenStore());
+            case "mvstore" -> {
+                Path file = Files.createTempFile("lastshield-benchmark", ".mv.db");
+                Files.delete(file);
+                file.toFile().deleteOnExit();
+                yield OpenStore.of(new MVStoreTokenStore(file, 512, Duration.ofSeconds(1), Duration.ofMinutes(10)));
+            }
+            case "jpa" -> {
+                ConfigurableApplicationContext context = boot("jpa");
+                yield new OpenStore(context.getBean(TokenRepository.class), context);
+            }
+            case "jdbc" -> {
+                ConfigurableApplicationContext context = boot("jdbc");
+                yield new OpenStore(context.getBean(JdbcTokenStore.class), context);
+            }
+            default -> throw new IllegalArgumentException("Unknown store: " + storeName);
+        };
+    }
+
+    /**
+     * Boots the Basic Auth application on a fresh in-memory H2 database with the given token store.
+     */
+    private static ConfigurableApplicationContext boot(String tokenStore) {
+        return new SpringApplicationBuilder(LoadTestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + tokenStore + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.open-in-view=false",
+                        "logging.level.root=WARN",
+                        "lastshield.basicauth=true",
+                        "lastshield.basicauth.issuer=benchmark",
+                        "lastshield.basicauth.secret-key=benchmark-secret",
+                        "lastshield.basicauth.token-store=" + tokenStore)
+                .run();
+    }
+
+    private static List<String> signTokens(int count) {
+        Algorithm algorithm = Algorithm.HMAC256("benchmark-secret");
+        Instant now = Instant.now();
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(JWT.create()
+                    .withSubject("user-" + i)
+                    .withIssuer(ISSUER)
+                    .withIssuedAt(now)
+                    .withExpiresAt(now.plus(Duration.ofDays(7)))
+                    .withClaim("scope", SCOPE)
+                    .sign(algorithm));
+        }
+        return tokens;
+    }
+
+    /**
+     * Store under benchmark and the resource to close once done with it.
+     */
+    private record OpenStore(TokenStore store, AutoCloseable resource) implements AutoCloseable {
+
+        static <T extends TokenStore & AutoCloseable> OpenStore of(T store) {
+            return new OpenStore(store, store);
+        }
+
+        @Override
+        public void close() throws Exception {
+            resource.close();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -16,11 +16,15 @@
 package tech.lastbox.lastshield.security;
 
 import org.springframework.stereotype.Component;
+import tech.lastbox.lastshield.security.core.AuthenticationLevel;
 import tech.lastbox.lastshield.security.core.CoreSecurityConfig;
 import tech.lastbox.lastshield.security.core.CorsConfig;
+import tech.lastbox.lastshield.security.core.PrincipalCache;
 import tech.lastbox.lastshield.security.core.RouteAuthority;
 import tech.lastbox.lastshield.security.core.http.HttpMethod;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.List;
 
@@ -33,16 +37,19 @@ import java.util.List;
 public class SecurityConfig {
     private final CorsConfig corsConfig;
     private final CoreSecurityConfig coreSecurityConfig;
+    private final PrincipalCache principalCache;
 
     /**
      * Constructor that injects the necessary dependencies.
      *
      * @param coreSecurityConfig The core security configuration (auto-injected by Spring IoC).
      * @param corsConfig The CORS configuration (auto-injected by Spring IoC).
+     * @param principalCache The cache of authenticated principals (auto-injected by Spring IoC).
      */
-    public SecurityConfig(CoreSecurityConfig coreSecurityConfig, CorsConfig corsConfig) {
+    public SecurityConfig(CoreSecurityConfig coreSecurityConfig, CorsConfig corsConfig, PrincipalCache principalCache) {
         this.coreSecurityConfig = coreSecurityConfig;
         this.corsConfig = corsConfig;
+        this.principalCache = principalCache;
     }
 
     /**
@@ -133,6 +140,80 @@ public class SecurityConfig {
         return this;
     }
 
+    /**
+     * Sets how long the user and authorities resolved for a token subject are reused before the user
+     * repository is queried again. Defaults to 60 seconds; a zero duration disables the cache.
+     *
+     * @param ttl The time to live of a cached principal.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig setPrincipalCacheTtl(Duration ttl) {
+        principalCache.setTtl(ttl);
+        return this;
+    }
+
+    /**
+     * Sets how long a token subject without a user, e.g. a deleted user, is remembered so retries with its tokens
+     * are rejected without querying the user repository. Registering or updating a user under that name drops the
+     * entry right away. Defaults to 5 seconds; a zero duration disables it.
+     *
+     * @param ttl The time to live of an unknown subject.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig setUnknownSubjectTtl(Duration ttl) {
+        principalCache.setUnknownTtl(ttl);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of principals kept in the cache. Defaults to 10,000; zero disables the cache.
+     *
+     * @param maxSize The maximum number of cached principals.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig setPrincipalCacheMaxSize(int maxSize) {
+        principalCache.setMaxSize(maxSize);
+        return this;
+    }
+
+    /**
+     * Declares that a role implies another one, so users with {@code role} can access every route restricted
+     * to {@code impliedRole}. Implications are transitive and must be declared before {@link #build()}.
+     *
+     * @param role The higher role, e.g. "ADMIN".
+     * @param impliedRole The role it implies, e.g. "USER".
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig addRoleHierarchy(String role, String impliedRole) {
+        coreSecurityConfig.addRoleHierarchy(role, impliedRole);
+        return this;
+    }
+
+    /**
+     * Authenticates requests from the roles and claims carried by their token instead of loading the user entity
+     * on every request. Tokens must be issued with {@code SecurityUtil.getTokenClaims(user)} as custom claims;
+     * tokens without roles fall back to loading the user.
+     *
+     * @param principalClaims Fields of the user entity copied into the tokens, e.g. "name".
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig enableClaimsAuthentication(String... principalClaims) {
+        for (String principalClaim : principalClaims) coreSecurityConfig.addPrincipalClaim(principalClaim);
+        coreSecurityConfig.setClaimsAuthentication(true);
+        return this;
+    }
+
+    /**
+     * Adds a route authority built by the caller, e.g. {@code new RouteAuthority("/account/**", "USER").requireUser()}.
+     *
+     * @param routeAuthority The route authority.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig addRouteAuthority(RouteAuthority routeAuthority){
+        coreSecurityConfig.addAuthority(routeAuthority);
+        return this;
+    }
+
     /**
      * Adds a public route without restrictions on HTTP methods.
      *
@@ -192,6 +273,35 @@ public class SecurityConfig {
         return this;
     }
 
+    /**
+     * Adds a route restricted to a specific user role, authenticated with the given depth. For instance,
+     * {@link AuthenticationLevel#SIGNATURE} serves cheap read routes without querying the token store or the
+     * user repository, while {@link AuthenticationLevel#FULL} keeps every check on sensitive routes.
+     *
+     * @param path The route path.
+     * @param role The required user role.
+     * @param authenticationLevel The checks run on requests to the route.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig addRouteAuthority(String path, String role, AuthenticationLevel authenticationLevel){
+        coreSecurityConfig.addAuthority(new RouteAuthority(path, role).setAuthenticationLevel(authenticationLevel));
+        return this;
+    }
+
+    /**
+     * Adds a route restricted to multiple user roles, authenticated with the given depth,
+     * see {@link #addRouteAuthority(String, String, AuthenticationLevel)}.
+     *
+     * @param path The route path.
+     * @param roles A list of required user roles.
+     * @param authenticationLevel The checks run on requests to the route.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig addRouteAuthority(String path, List<String> roles, AuthenticationLevel authenticationLevel){
+        coreSecurityConfig.addAuthority(new RouteAuthority(path, roles).setAuthenticationLevel(authenticationLevel));
+        return this;
+    }
+
     /**
      * Adds a route restricted to a specific user role and HTTP method.
      *
@@ -218,6 +328,57 @@ public class SecurityConfig {
         return this;
     }
 
+    /**
+     * Replaces every authority of a route, keeping its position in the matching order. Can be called after
+     * {@link #build()}: the new routes are compiled and take effect atomically for the following requests.
+     *
+     * @param path The route path.
+     * @param authorities The new authorities of the route, e.g. {@code new RouteAuthority(path, "ADMIN")}.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     * @throws IllegalArgumentException if a route pattern is not supported, in which case the routes are unchanged.
+     */
+    public SecurityConfig replaceRouteAuthority(String path, RouteAuthority... authorities){
+        coreSecurityConfig.replaceAuthorities(path, List.of(authorities));
+        return this;
+    }
+
+    /**
+     * Removes every authority of a route. Can be called after {@link #build()}, in which case requests to the route
+     * are matched against the remaining routes right away.
+     *
+     * @param path The route path.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     */
+    public SecurityConfig removeRouteAuthority(String path){
+        coreSecurityConfig.removeAuthorities(path);
+        return this;
+    }
+
+    /**
+     * Loads route authorities from a properties file, checked for changes every two seconds.
+     *
+     * @param file The route file, one {@code path=ROLE1,ROLE2@GET,POST;permitAll@OPTIONS} entry per route.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     * @throws IllegalStateException if the file cannot be loaded.
+     */
+    public SecurityConfig watchRouteFile(Path file){
+        return watchRouteFile(file, Duration.ofSeconds(2));
+    }
+
+    /**
+     * Loads route authorities from a properties file and reloads them when it changes. Its routes are matched before
+     * the ones added through this class; a version of the file that cannot be parsed is ignored.
+     *
+     * @param file The route file, one {@code path=ROLE1,ROLE2@GET,POST;permitAll@OPTIONS} entry per route.
+     * @param pollInterval How often the file is checked for changes.
+     * @return The current instance of {@link SecurityConfig} for method chaining.
+     * @throws IllegalStateException if the file cannot be loaded.
+     */
+    public SecurityConfig watchRouteFile(Path file, Duration pollInterval){
+        coreSecurityConfig.watchRouteFile(file, pollInterval);
+        return this;
+    }
+
     /**
      * Finalizes and validates the security configuration.
      */
@@ -15,72 +15,101 @@
  */
 package tech.lastbox.lastshield.security.core;
 
-import java.util.ArrayList;
-import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
 
 /**
- * The {@code AdvancedFilterChecker} class provides utility methods to check
- * if advanced filtering is enabled and to manage a list of paths that should
- * not be filtered.
+ * The {@code AdvancedFilterChecker} class provides methods to check
+ * if advanced filtering is enabled and holds the compiled {@link RouteTrie} of the route authorities.
  * <p>
- * This utility class is used by {@link  CoreSecurityConfig} and {@link SecurityFilter} to manage route
- * authorizations. It allows checking whether a given path should be excluded from filtering
- * and provides a mechanism to add paths to a "do not filter" list.
+ * This bean is shared by {@link  CoreSecurityConfig}, {@link SecurityUtil} and {@link SecurityFilter} to manage route
+ * authorizations. It allows checking whether a given request should be excluded from filtering,
+ * and the {@link RouteAuthorizationManager} resolves the rule of each request from the same routes.
+ * <p>
+ * The state belongs to the application context rather than to the class, so several contexts in the same JVM
+ * do not share their routes, and nothing is captured when the class is initialized at image build time.
  * @see CoreSecurityConfig
  * @see SecurityFilter
  */
+@Component
 class AdvancedFilterChecker {
 
     /**
      * A boolean attribute indicating if advanced filtering is enabled or not.
      */
-    private static boolean isAdvancedFiltered;
+    private volatile boolean isAdvancedFiltered;
+
+    /**
+     * The routes compiled when the security configuration is built; empty until then.
+     */
+    private volatile RouteTrie routes = RouteTrie.empty();
 
     /**
-     * A list of paths that should not be filtered.
-     * Paths are stored in a normalized format without the wildcard "/**".
+     * Whether requests are authenticated from the claims of their token rather than from the user entity.
      */
-    private final static List<String> shouldNotFilterPathList = new ArrayList<>();
+    private volatile boolean claimsAuthentication;
+
+    /**
+     * Default constructor for the AdvancedFilterChecker bean.
+     */
+    AdvancedFilterChecker() {
+    }
 
     /**
      * Returns the current state of the advanced filter.
      *
      * @return {@code true} if advanced filtering is enabled, {@code false} otherwise.
      */
-    public static boolean isAdvancedFiltered() {
+    public boolean isAdvancedFiltered() {
         return isAdvancedFiltered;
     }
 
     /**
-     * Checks if the given path should not be filtered by comparing it against
-     * the list of paths that should not be filtered.
-     * <p>
-     * This method checks if the given path starts with any of the paths in the
-     * {@code shouldNotFilterPathList}.
+     * Checks if the given request should not be filtered, that is if the first route matching its method and
+     * path is public.
+     *
+     * @param request the request to check.
+     * @return {@code true} if the request matches a public route, {@code false} otherwise.
+     */
+    public boolean isInShoudNotFilterList(HttpServletRequest request) {
+        RouteTrie.Route route = routes.match(request);
+        return route != null && route.isPublic();
+    }
+
+    /**
+     * Gets the compiled routes.
      *
-     * @param pathToCompare the path to check.
-     * @return {@code true} if the path matches any path in the shouldNotFilter list,
-     *         {@code false} otherwise.
+     * @return the current route trie.
      */
-    public static boolean isInShoudNotFilterList(String pathToCompare) {
-        if (shouldNotFilterPathList.isEmpty()) {
-            return false;
-        }
+    public RouteTrie getRoutes() {
+        return routes;
+    }
 
-        return shouldNotFilterPathList.stream()
-                .filter(path -> path != null && !path.trim().isEmpty())
-                .anyMatch(path -> pathToCompare.startsWith(path.trim()));
+    /**
+     * Replaces the compiled routes.
+     *
+     * @param routes the new route trie.
+     */
+    public void setRoutes(RouteTrie routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Checks whether requests are authenticated from the claims of their token, see {@link ClaimsPrincipal}.
+     *
+     * @return {@code true} if claims authentication is enabled.
+     */
+    public boolean isClaimsAuthentication() {
+        return claimsAuthentication;
     }
 
     /**
-     * Adds a path to the list of paths that should not be filtered.
-     * <p>
-     * The path is normalized by removing any wildcard suffix "/**" before adding it to the list.
+     * Enables or disables claims authentication.
      *
-     * @param path the path to add to the list.
+     * @param claimsAuthentication {@code true} to authenticate requests from the claims of their token.
      */
-    public static void addShoudNotFilterPath(String path) {
-        shouldNotFilterPathList.add(path.replace("/**", ""));
+    public void setClaimsAuthentication(boolean claimsAuthentication) {
+        this.claimsAuthentication = claimsAuthentication;
     }
 
     /**
@@ -89,7 +118,7 @@ class AdvancedFilterChecker {
      * @param isAdvancedFiltered {@code true} to enable advanced filtering,
      *                           {@code false} to disable it.
      */
-    public static void setAdvancedFiltered(boolean isAdvancedFiltered) {
-        AdvancedFilterChecker.isAdvancedFiltered = isAdvancedFiltered;
+    public void setAdvancedFiltered(boolean isAdvancedFiltered) {
+        this.isAdvancedFiltered = isAdvancedFiltered;
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+/**
+ * Depth of the checks the {@link SecurityFilter} runs to authenticate a request on a route, see
+ * {@link RouteAuthority#setAuthenticationLevel(AuthenticationLevel)}.
+ * <p>
+ * Each level runs the stages of the previous one and adds its own, so cheap read routes can skip the token store
+ * and user lookups while sensitive routes keep every check. At the levels below {@link #FULL}, the request is
+ * authenticated with a {@link ClaimsPrincipal} built from the roles carried by the token; tokens without roles
+ * fall back to loading the user, since the roles are needed to authorize the request.
+ */
+public enum AuthenticationLevel {
+
+    /**
+     * Only the token itself is checked: its signature, algorithm, issuer and validity period, plus the revocation
+     * set when one is configured, which is a local lookup. The token store is not queried, so a token revoked
+     * through the store alone stays accepted on the route until it expires.
+     */
+    SIGNATURE,
+
+    /**
+     * The token is checked, then looked up in the token store, so revoked tokens are rejected as soon as the
+     * store knows them. The user is not loaded. This is the default of every route in claims authentication mode.
+     */
+    REVOCATION_CHECKED,
+
+    /**
+     * The token is checked and looked up in the token store, then the user entity is loaded, from the principal
+     * cache or the repository, and set as the principal. Deleted users and role changes take effect immediately.
+     * This is the default of every route unless claims authentication is enabled.
+     */
+    FULL
+}
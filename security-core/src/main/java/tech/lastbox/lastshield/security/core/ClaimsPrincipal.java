@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Principal of a request authenticated from the claims of its token, without loading the user entity.
+ * <p>
+ * When claims authentication is enabled, tokens issued with {@link SecurityUtil#getTokenClaims(Object)} carry the
+ * roles of the user and the principal claims selected in the configuration. The {@link SecurityFilter} then
+ * authenticates requests with this principal on the routes below {@link AuthenticationLevel#FULL}, and only loads
+ * the user entity on the routes that require it, see {@link RouteAuthority#requireUser()}.
+ *
+ * @param subject    the subject of the token, usually the username.
+ * @param roles      the roles of the user when the token was issued.
+ * @param attributes the other custom claims of the token, by name.
+ */
+public record ClaimsPrincipal(String subject, List<String> roles, Map<String, Object> attributes) {
+
+    /**
+     * Name of the claim holding the roles of the user.
+     */
+    public static final String ROLES_CLAIM = "roles";
+
+    /**
+     * Gets a custom claim of the token.
+     *
+     * @param name the name of the claim.
+     * @return the value of the claim, or {@code null} if the token does not carry it.
+     */
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+}
@@ -15,12 +15,14 @@
  */
 package tech.lastbox.lastshield.security.core;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -30,8 +32,8 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,17 +45,27 @@ import java.util.List;
  * <p>
  * This class is responsible for setting up the security filter chain, including the handling of custom
  * CORS configurations, CSRF protection settings, and adding custom authorities for route access.
+ * <p>
+ * The configuration keeps no static state and its bean methods are not proxied, so it can be processed ahead of
+ * time by Spring AOT; the hints needed by a native image are registered by {@link LastShieldRuntimeHints}.
  */
-@Configuration
+@Configuration(proxyBeanMethods = false)
 @ComponentScan
 @EnableWebSecurity
+@ImportRuntimeHints(LastShieldRuntimeHints.class)
 public class CoreSecurityConfig {
-    private boolean isCalled = false;
+    private volatile boolean isCalled = false;
     private boolean csrfProtection = true;
     private final CorsConfig corsConfig;
     private final SecurityUtil securityUtil;
     private final SecurityFilter securityFilter;
-    private final List<RouteAuthority> authorities = new ArrayList<>();
+    private final RoleRegistry roleRegistry;
+    private final AdvancedFilterChecker advancedFilterChecker;
+    private final PrincipalCache principalCache;
+    private List<RouteAuthority> authorities = List.of();
+    private List<RouteAuthority> fileAuthorities = List.of();
+    private RouteFileWatcher routeFileWatcher;
+    private int publishedRoleCount;
     private final Logger logger = LoggerFactory.getLogger(CoreSecurityConfig.class);
 
     /**
@@ -64,18 +76,25 @@ public class CoreSecurityConfig {
      * @param corsConfig the {@link CorsConfig} object used to configure Cross-Origin Resource Sharing (CORS) settings.
      * @param securityUtil the {@link SecurityUtil} utility used for various security-related operations, such as user repository handling.
      * @param securityFilter the {@link SecurityFilter} that is added to the security filter chain to handle custom authentication and authorization.
+     * @param roleRegistry the {@link RoleRegistry} assigning a bit to every role used by the route authorities.
+     * @param advancedFilterChecker the {@link AdvancedFilterChecker} holding the state of the advanced filter.
+     * @param principalCache the {@link PrincipalCache} dropped when a route change introduces new roles.
      */
-    public CoreSecurityConfig(CorsConfig corsConfig, SecurityUtil securityUtil, SecurityFilter securityFilter) {
+    CoreSecurityConfig(CorsConfig corsConfig, SecurityUtil securityUtil, SecurityFilter securityFilter, RoleRegistry roleRegistry,
+                       AdvancedFilterChecker advancedFilterChecker, PrincipalCache principalCache) {
         this.corsConfig = corsConfig;
         this.securityUtil = securityUtil;
         this.securityFilter = securityFilter;
+        this.roleRegistry = roleRegistry;
+        this.advancedFilterChecker = advancedFilterChecker;
+        this.principalCache = principalCache;
     }
 
     /**
      * Enables the advanced filter by updating the state in {@link AdvancedFilterChecker}.
      */
     void setAdvancedFilter() {
-        AdvancedFilterChecker.setAdvancedFiltered(true);
+        advancedFilterChecker.setAdvancedFiltered(true);
     }
 
     /**
@@ -111,106 +130,178 @@ public class CoreSecurityConfig {
     }
 
     /**
-     * Configures the authorities by iterating over the list of {@link RouteAuthority} objects.
-     * It applies the corresponding role-based access control to each route.
+     * Configures the authorities with a single {@link RouteAuthorizationManager}, which resolves the rule of each
+     * request from the {@link RouteTrie} compiled by {@link #isCalled()}. Requests matching no route authority
+     * require an authenticated user.
      *
      * @return a customizer for authorizing HTTP requests based on route authorities.
      */
     private Customizer<AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry> configureAuthorities() {
-        return authorize -> {
-            authorities.forEach(authority -> configureAuthority(authorize, authority));
-            authorize.anyRequest().authenticated();
-        };
+        return authorize -> authorize.anyRequest().access(new RouteAuthorizationManager(advancedFilterChecker));
     }
 
     /**
-     * Configures the authorization for a specific {@link RouteAuthority}. If the authority has no associated HTTP methods,
-     * it configures access control for the path only. Otherwise, it configures the path along with the HTTP methods.
+     * Configures CSRF protection based on the {@code csrfProtection} flag.
+     * If CSRF protection is disabled, it will be turned off for the application.
      *
-     * @param authorize the authorization manager registry.
-     * @param authority the {@link RouteAuthority} to configure.
+     * @param csrf the CSRF configuration object.
      */
-    private void configureAuthority(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry authorize,
-                                    RouteAuthority authority) {
-        if (authority.getHttpMethods().isEmpty()) {
-            configurePathOnly(authorize, authority);
-        } else {
-            configurePathWithMethods(authorize, authority);
-        }
+    private void configureCsrfProtection(CsrfConfigurer<HttpSecurity> csrf){
+        if(!csrfProtection) csrf.disable();
     }
 
     /**
-     * Configures access control for a route path that does not have associated HTTP methods.
+     * Adds a {@link RouteAuthority} to the list of authorities and registers its roles in the {@link RoleRegistry}.
+     * The authorities are compiled into a {@link RouteTrie} when the configuration is built, or right away when it
+     * is already built; routes without roles are public and skipped by the advanced filter.
+     * <p>
+     * If the advanced filter is not currently enabled ({@link AdvancedFilterChecker#isAdvancedFiltered()} returns {@code false}),
+     * this method will enable it by calling {@link #setAdvancedFilter()} and configure the {@link SecurityFilter} with the appropriate
+     * user repository class using {@link SecurityUtil#getUserRepositoryClass()}.
      *
-     * @param authorize the authorization manager registry.
-     * @param authority the {@link RouteAuthority} to configure.
+     * @param routeAuthority the {@link RouteAuthority} object representing the authority to be added.
+     * @throws IllegalArgumentException if the route pattern is not supported, in which case nothing changes.
+     * @throws IllegalStateException if its roles would exceed the 64 roles of the {@link RoleRegistry}, in which case nothing changes.
      */
-    private void configurePathOnly(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry authorize,
-                                   RouteAuthority authority) {
-        var matcher = authorize.requestMatchers(authority.getPath());
-        applyAuthorization(matcher, authority.getRoles());
+    public synchronized void addAuthority(RouteAuthority routeAuthority) {
+        List<RouteAuthority> updated = new ArrayList<>(authorities);
+        updated.add(routeAuthority);
+        apply(fileAuthorities, updated);
+        logger.debug("Added authority: {}", routeAuthority);
     }
 
     /**
-     * Configures access control for a route path with associated HTTP methods.
+     * Replaces the route authorities registered for a path, keeping the position of the first one so the matching
+     * order of the other routes is unchanged. When the path has no authority yet, the new ones are inserted first,
+     * ahead of the broader patterns registered at startup.
+     * <p>
+     * After {@code build()}, the change is compiled into a new {@link RouteTrie} and published at once: requests
+     * see either the previous routes or the new ones, never a partial update.
      *
-     * @param authorize the authorization manager registry.
-     * @param authority the {@link RouteAuthority} to configure.
+     * @param path the path whose authorities are replaced.
+     * @param replacements the new authorities of the path, in matching order; empty to only remove the existing ones.
+     * @throws IllegalArgumentException if a new route pattern is not supported, in which case nothing changes.
      */
-    private void configurePathWithMethods(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizationManagerRequestMatcherRegistry authorize,
-                                          RouteAuthority authority) {
-        authority.getHttpMethods().forEach(method -> {
-            var matcher = authorize.requestMatchers(method.name(), authority.getPath());
-            applyAuthorization(matcher, authority.getRoles());
-        });
+    public synchronized void replaceAuthorities(String path, List<RouteAuthority> replacements) {
+        List<RouteAuthority> updated = new ArrayList<>(authorities.size() + replacements.size());
+        int position = -1;
+        for (RouteAuthority authority : authorities) {
+            if (authority.getPath().equals(path)) {
+                if (position < 0) position = updated.size();
+            } else {
+                updated.add(authority);
+            }
+        }
+        updated.addAll(Math.max(position, 0), replacements);
+        apply(fileAuthorities, updated);
+        logger.debug("Replaced the authorities of {} with {}", path, replacements);
     }
 
     /**
-     * Applies authorization rules (permitAll or hasAnyRole) to the matched URL based on the roles of the {@link RouteAuthority}.
+     * Removes every route authority registered for a path. Requests to the path then fall through to the next
+     * matching route.
      *
-     * @param authorizedUrl the URL being authorized.
-     * @param roles the roles associated with the authority.
+     * @param path the path whose authorities are removed.
+     * @return {@code true} if at least one authority was removed.
      */
-    private void applyAuthorization(AuthorizeHttpRequestsConfigurer<HttpSecurity>.AuthorizedUrl authorizedUrl,
-                                    String[] roles) {
-        if (roles == null) {
-            authorizedUrl.permitAll();
-        } else {
-            authorizedUrl.hasAnyRole(roles);
-        }
+    public synchronized boolean removeAuthorities(String path) {
+        List<RouteAuthority> updated = authorities.stream()
+                .filter(authority -> !authority.getPath().equals(path))
+                .toList();
+        if (updated.size() == authorities.size()) return false;
+        apply(fileAuthorities, updated);
+        logger.debug("Removed the authorities of {}", path);
+        return true;
     }
 
     /**
-     * Configures CSRF protection based on the {@code csrfProtection} flag.
-     * If CSRF protection is disabled, it will be turned off for the application.
+     * Gets the route authorities, in matching order: the ones of the watched route file first, then the ones
+     * registered through this class.
      *
-     * @param csrf the CSRF configuration object.
+     * @return an immutable snapshot of the route authorities.
      */
-    private void configureCsrfProtection(CsrfConfigurer<HttpSecurity> csrf){
-        if(!csrfProtection) csrf.disable();
+    public synchronized List<RouteAuthority> getAuthorities() {
+        List<RouteAuthority> all = new ArrayList<>(fileAuthorities);
+        all.addAll(authorities);
+        return List.copyOf(all);
     }
 
     /**
-     * Adds a {@link RouteAuthority} to the list of authorities. If the provided {@link RouteAuthority} does not have any associated roles,
-     * the path of the authority is added to the list of paths that should not be filtered by the advanced filter using the
-     * {@link AdvancedFilterChecker#addShoudNotFilterPath(String)} method.
-     * <p>
-     * If the advanced filter is not currently enabled ({@link AdvancedFilterChecker#isAdvancedFiltered()} returns {@code false}),
-     * this method will enable it by calling {@link #setAdvancedFilter()} and configure the {@link SecurityFilter} with the appropriate
-     * user repository class using {@link SecurityUtil#getUserRepositoryClass()}.
+     * Loads route authorities from a properties file and reloads them whenever the file changes, see
+     * {@link RouteFileWatcher} for its format. The routes of the file are matched before the ones registered
+     * through this class, and replace the previous version of the file as a whole. A file that cannot be parsed
+     * on reload is ignored, keeping the routes in place. Watching another file stops watching the previous one.
      *
-     * @param routeAuthority the {@link RouteAuthority} object representing the authority to be added.
+     * @param file the route file.
+     * @param pollInterval how often the file is checked for changes.
+     * @throws IllegalStateException if the file cannot be loaded.
      */
-    public void addAuthority(RouteAuthority routeAuthority) {
-        this.authorities.add(routeAuthority);
-        logger.debug("Added authority: {}", routeAuthority);
+    public synchronized void watchRouteFile(Path file, Duration pollInterval) {
+        if (routeFileWatcher != null) routeFileWatcher.close();
+        routeFileWatcher = new RouteFileWatcher(file, pollInterval, this::setFileAuthorities);
+        logger.debug("Watching route file {}", file);
+    }
 
-        if (routeAuthority.getRoles() == null) {
-            AdvancedFilterChecker.addShoudNotFilterPath(routeAuthority.getPath());
-            logger.debug("Added path to not filter: {}", routeAuthority.getPath());
+    /**
+     * Stops watching the route file, if any.
+     */
+    @PreDestroy
+    public synchronized void stopWatchingRouteFile() {
+        if (routeFileWatcher != null) {
+            routeFileWatcher.close();
+            routeFileWatcher = null;
         }
+    }
 
-        if (!AdvancedFilterChecker.isAdvancedFiltered()) {
+    private synchronized void setFileAuthorities(List<RouteAuthority> routes) {
+        apply(routes, authorities);
+    }
+
+    /**
+     * Registers the roles of the given routes and, once the configuration is built, compiles and publishes them.
+     * The patterns are checked and the roles registered all at once before anything is kept, so a rejected change
+     * leaves both the published routes and the role registry untouched.
+     */
+    private void apply(List<RouteAuthority> newFileAuthorities, List<RouteAuthority> newAuthorities) {
+        List<RouteAuthority> all = new ArrayList<>(newFileAuthorities);
+        all.addAll(newAuthorities);
+        RouteTrie.validate(all);
+        List<String> roles = new ArrayList<>();
+        for (RouteAuthority routeAuthority : all) {
+            if (routeAuthority.getRoles() != null) roles.addAll(List.of(routeAuthority.getRoles()));
+        }
+        roleRegistry.registerAll(roles);
+        RouteTrie routes = isCalled ? compile(newFileAuthorities, newAuthorities) : null;
+        this.fileAuthorities = List.copyOf(newFileAuthorities);
+        this.authorities = List.copyOf(newAuthorities);
+        if (!fileAuthorities.isEmpty() || !authorities.isEmpty()) enableAdvancedFilter();
+        if (routes != null) publish(routes);
+    }
+
+    private RouteTrie compile(List<RouteAuthority> newFileAuthorities, List<RouteAuthority> newAuthorities) {
+        List<RouteAuthority> all = new ArrayList<>(newFileAuthorities);
+        all.addAll(newAuthorities);
+        roleRegistry.compile();
+        return RouteTrie.compile(all, roles -> new RoleMaskAuthorizationManager(roleRegistry, roles));
+    }
+
+    /**
+     * Publishes compiled routes through the single volatile reference read by the request threads. Cached
+     * principals are dropped when new roles were registered, since their role masks lack the new bits.
+     */
+    private void publish(RouteTrie routes) {
+        advancedFilterChecker.setRoutes(routes);
+        if (publishedRoleCount != 0 && roleRegistry.size() != publishedRoleCount) principalCache.invalidateAll();
+        publishedRoleCount = roleRegistry.size();
+        logger.debug("Compiled {} route authorities", routes.size());
+    }
+
+    /**
+     * Enables the advanced filter the first time a route authority is added and configures the {@link SecurityFilter}
+     * with the user repository.
+     */
+    private void enableAdvancedFilter() {
+        if (!advancedFilterChecker.isAdvancedFiltered()) {
             setAdvancedFilter();
             securityFilter.setUserRepository(securityUtil.getUserRepositoryClass());
             logger.debug("Advanced filter set up with repository: {}",
@@ -228,30 +319,57 @@ public class CoreSecurityConfig {
     }
 
     /**
-     * Marks the security configuration as initialized. This should be called after the configuration is properly set up.
+     * Declares that a role implies another one, e.g. that {@code ADMIN} is granted every route open to {@code USER}.
+     * The hierarchy is folded into the route rules when the configuration is built.
+     *
+     * @param role the higher role.
+     * @param impliedRole the role it implies.
      */
-    public void isCalled(){
-        this.isCalled = true;
+    public void addRoleHierarchy(String role, String impliedRole) {
+        roleRegistry.addImplication(role, impliedRole);
+        logger.debug("Added role hierarchy: {} > {}", role, impliedRole);
     }
 
     /**
-     * Writes an error response with the given status code and message in JSON format.
+     * Enables or disables claims authentication. When enabled, the tokens issued with the claims of
+     * {@link SecurityUtil#getTokenClaims(Object)} carry the roles of the user, and requests are authenticated with a
+     * {@link ClaimsPrincipal} built from them, without querying the user repository. Routes without an
+     * {@link AuthenticationLevel} then default to {@link AuthenticationLevel#REVOCATION_CHECKED}, and routes marked
+     * with {@link RouteAuthority#requireUser()} still load the user entity.
+     * <p>
+     * Role changes and deleted users only take effect when the token expires or is revoked, so the token lifetime
+     * bounds how long stale roles are honored.
      *
-     * @param response the HTTP response object.
-     * @param status the HTTP status code.
-     * @param message the error message.
-     * @throws IOException if there is an error writing to the response.
+     * @param claimsAuthentication {@code true} to authenticate requests from the claims of their token.
+     */
+    public void setClaimsAuthentication(boolean claimsAuthentication) {
+        advancedFilterChecker.setClaimsAuthentication(claimsAuthentication);
+        logger.debug("Claims authentication {}", claimsAuthentication ? "enabled" : "disabled");
+    }
+
+    /**
+     * Adds a field of the user entity to the claims of the tokens issued in claims authentication mode, so it is
+     * available from {@link ClaimsPrincipal#getAttribute(String)}.
+     *
+     * @param field the name of the field, which is also the name of the claim.
      */
-    private void writeErrorResponse(HttpServletResponse response, int status, String message) throws IOException {
-        response.setStatus(status);
-        response.setContentType("application/json");
-        String jsonResponse = String.format(
-                "{\"message\": \"%s\", \"status\": %d, \"timestamp\": \"%s\"}",
-                message,
-                status,
-                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-        );
-        response.getWriter().write(jsonResponse);
+    public void addPrincipalClaim(String field) {
+        securityUtil.addPrincipalClaim(field);
+        logger.debug("Added principal claim: {}", field);
+    }
+
+    /**
+     * Marks the security configuration as initialized, compiles the roles of the route authorities into bit masks
+     * and the route authorities into a {@link RouteTrie}.
+     * This should be called after the configuration is properly set up.
+     *
+     * Later changes to the route authorities are compiled and published right away.
+     *
+     * @throws IllegalArgumentException if a route pattern is not supported by the {@link RouteTrie}.
+     */
+    public synchronized void isCalled(){
+        publish(compile(fileAuthorities, authorities));
+        this.isCalled = true;
     }
 
     /**
@@ -261,7 +379,7 @@ public class CoreSecurityConfig {
      * @throws IOException if there is an error writing to the response.
      */
     private void handleUnauthorized(HttpServletResponse response) throws IOException {
-        writeErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+        ErrorResponseWriter.UNAUTHORIZED.write(response);
     }
 
     /**
@@ -271,6 +389,6 @@ public class CoreSecurityConfig {
      * @throws IOException if there is an error writing to the response.
      */
     private void handleAccessDenied(HttpServletResponse response) throws IOException {
-        writeErrorResponse(response, HttpServletResponse.SC_FORBIDDEN, "Access Denied");
+        ErrorResponseWriter.ACCESS_DENIED.write(response);
     }
 }
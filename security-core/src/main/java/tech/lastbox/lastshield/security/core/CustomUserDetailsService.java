@@ -25,7 +25,6 @@ import org.springframework.stereotype.Service;
 import tech.lastbox.lastshield.security.core.annotations.Password;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Optional;
 
 /**
@@ -61,12 +60,14 @@ public class CustomUserDetailsService implements UserDetailsService {
      * based on the repository class provided by {@link SecurityUtil}.
      */
     private void setUserRepository() {
-        this.userRepository = applicationContext.getBean(securityUtil.getUserRepositoryClass());
+        Object repository = applicationContext.getBean(securityUtil.getUserRepositoryClass());
+        securityUtil.prepareUserRepository(repository);
+        this.userRepository = repository;
     }
 
     /**
      * Loads the user details by username. This method fetches the user entity from the user repository and retrieves
-     * the password field that is annotated with {@link Password}.
+     * the password field that is annotated with {@link Password}, through the accessor compiled by {@link SecurityUtil}.
      * <p>
      * If the user is not found, a {@link RuntimeException} is thrown. If no field with the {@link Password} annotation
      * is found in the user entity, an {@link IllegalStateException} is thrown.
@@ -83,17 +84,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
             Optional<Object> userEntityOptional = (Optional<Object>) securityUtil.findUserByUsername(userRepository, username);
             if (userEntityOptional.isEmpty()) throw new RuntimeException("User not found.");
-            Object userEntity = userEntityOptional.get();
-            String password = Arrays.stream(userEntity.getClass().getDeclaredFields())
-                    .filter(field -> field.isAnnotationPresent(Password.class))
-                    .map(field -> {
-                        try {
-                            field.setAccessible(true);
-                            return (String) field.get(userEntity);
-                        } catch (Exception e) {
-                            throw new RuntimeException(e);
-                        }
-                    }).findFirst().orElseThrow(() -> new IllegalStateException("No field with @Password annotation found"));
+            String password = securityUtil.getUserPassword(userEntityOptional.get());
 
             return new User(username, password, new ArrayList<>());
         } catch (Exception e) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes the JSON error responses of rejected requests from pre-encoded bodies.
+ * <p>
+ * Each instance encodes its body once, split around the timestamp:
+ * {@code {"message": "...", "status": 401, "timestamp": "2024-01-01T12:00:00.000"}}. Writing a rejection only
+ * copies these bytes and the current timestamp to the response, without formatting, string building or the
+ * container error-page dispatch of {@link HttpServletResponse#sendError(int, String)}. The timestamp is the
+ * local date-time at millisecond precision; its date and time up to the second are formatted once per second
+ * and shared by every thread.
+ */
+final class ErrorResponseWriter {
+    private static final String CONTENT_TYPE = "application/json";
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+    private static final int TIMESTAMP_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSS".length();
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static volatile Second currentSecond = new Second(Long.MIN_VALUE, new byte[0]);
+
+    static final ErrorResponseWriter UNAUTHORIZED = new ErrorResponseWriter(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+    static final ErrorResponseWriter ACCESS_DENIED = new ErrorResponseWriter(HttpServletResponse.SC_FORBIDDEN, "Access Denied");
+    static final ErrorResponseWriter TOKEN_MISSING = new ErrorResponseWriter(HttpServletResponse.SC_UNAUTHORIZED, "Token is missing");
+    static final ErrorResponseWriter INVALID_TOKEN = new ErrorResponseWriter(HttpServletResponse.SC_FORBIDDEN, "Invalid token");
+    static final ErrorResponseWriter USER_NOT_FOUND = new ErrorResponseWriter(HttpServletResponse.SC_FORBIDDEN, "User not found");
+    static final ErrorResponseWriter UNEXPECTED_ERROR = new ErrorResponseWriter(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Unexpected error");
+
+    private final int status;
+    private final byte[] prefix;
+    private final int contentLength;
+
+    /**
+     * Encodes the body of an error response.
+     *
+     * @param status  the HTTP status code.
+     * @param message the error message, written as is; it must not need JSON escaping.
+     */
+    ErrorResponseWriter(int status, String message) {
+        this.status = status;
+        this.prefix = ("{\"message\": \"" + message + "\", \"status\": " + status + ", \"timestamp\": \"")
+                .getBytes(StandardCharsets.UTF_8);
+        this.contentLength = prefix.length + TIMESTAMP_LENGTH + SUFFIX.length;
+    }
+
+    /**
+     * Writes the error response. Nothing is written if the response is already committed.
+     *
+     * @param response the HTTP response.
+     * @throws IOException if the body cannot be written.
+     */
+    void write(HttpServletResponse response) throws IOException {
+        if (response.isCommitted()) return;
+        response.setStatus(status);
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(contentLength);
+        ServletOutputStream outputStream = response.getOutputStream();
+        outputStream.write(prefix);
+        outputStream.write(timestamp());
+        outputStream.write(SUFFIX);
+    }
+
+    /**
+     * Encodes the current local date-time, reusing the formatted second and only appending the milliseconds.
+     */
+    private static byte[] timestamp() {
+        long now = System.currentTimeMillis();
+        long epochSecond = Math.floorDiv(now, 1000);
+        Second second = currentSecond;
+        if (second.epochSecond() != epochSecond) {
+            String text = LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault()).format(SECOND_FORMAT);
+            second = new Second(epochSecond, text.getBytes(StandardCharsets.US_ASCII));
+            currentSecond = second;
+        }
+        byte[] timestamp = new byte[TIMESTAMP_LENGTH];
+        System.arraycopy(second.text(), 0, timestamp, 0, TIMESTAMP_LENGTH - 4);
+        int millis = (int) Math.floorMod(now, 1000);
+        timestamp[TIMESTAMP_LENGTH - 4] = '.';
+        timestamp[TIMESTAMP_LENGTH - 3] = (byte) ('0' + millis / 100);
+        timestamp[TIMESTAMP_LENGTH - 2] = (byte) ('0' + millis / 10 % 10);
+        timestamp[TIMESTAMP_LENGTH - 1] = (byte) ('0' + millis % 10);
+        return timestamp;
+    }
+
+    /**
+     * A second since the epoch and its formatted local date-time.
+     */
+    private record Second(long epochSecond, byte[] text) {}
+}
@@ -19,6 +19,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import tech.lastbox.jwt.TokenCreationException;
 
 /**
  * Global exception handler that handles {@link RuntimeException} exceptions across the entire application.
@@ -26,7 +27,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
  * This class is annotated with {@link ControllerAdvice}, allowing it to handle exceptions globally and return
  * a standardized error response to the client. When a {@link RuntimeException} is thrown, the handler constructs an
  * {@link ErrorResponse} with the exception message, the HTTP status code, and a timestamp, and then returns it
- * as part of a {@link ResponseEntity}.
+ * as part of a {@link ResponseEntity}. A {@link TokenCreationException} is caused by invalid input, so it is answered
+ * with {@link HttpStatus#BAD_REQUEST} instead.
  */
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -38,6 +40,18 @@ public class GlobalExceptionHandler {
     public GlobalExceptionHandler() {
     }
 
+    /**
+     * Handles {@link TokenCreationException}, raised when a token is requested with invalid input, with a
+     * {@link HttpStatus#BAD_REQUEST} response.
+     *
+     * @param ex the {@link TokenCreationException} that was thrown.
+     * @return a {@link ResponseEntity} containing the {@link ErrorResponse} with a {@link HttpStatus#BAD_REQUEST} status.
+     */
+    @ExceptionHandler(TokenCreationException.class)
+    public ResponseEntity<?> handleTokenCreationException(TokenCreationException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST.value()));
+    }
+
     /**
      * Handles {@link RuntimeException} by creating an {@link ErrorResponse} with the exception message and a
      * {@link HttpStatus#BAD_REQUEST} status code, then returns it as part of a {@link ResponseEntity} with a
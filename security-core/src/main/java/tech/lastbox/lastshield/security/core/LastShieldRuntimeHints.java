@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.util.ClassUtils;
+import tech.lastbox.lastshield.security.core.index.LastShieldIndex;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Registers the runtime hints LastShield needs in a GraalVM native image, where reflection and resources are
+ * only available when declared at build time.
+ * <p>
+ * The {@link LastShieldIndex} is read during the AOT processing and kept as a resource of the image. Every user
+ * entity it lists, with its superclasses, is registered for field access and constructor invocation, since
+ * {@link SecurityUtil} reads the username, role and password fields and copies cached principals, and every user handler, with its interfaces and superclasses, is
+ * registered for method invocation, since the {@code findUserBy} method is resolved by name.
+ */
+public class LastShieldRuntimeHints implements RuntimeHintsRegistrar {
+
+    /**
+     * Default constructor, used by Spring when processing {@code @ImportRuntimeHints}.
+     */
+    public LastShieldRuntimeHints() {
+    }
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern(LastShieldIndex.LOCATION);
+        ClassLoader loader = classLoader != null ? classLoader : ClassUtils.getDefaultClassLoader();
+        LastShieldIndex index = LastShieldIndex.load(loader);
+
+        Set<String> entities = new LinkedHashSet<>(index.getUsernameFields().keySet());
+        entities.addAll(index.getPasswordFields().keySet());
+        Set<Class<?>> registered = new HashSet<>();
+        for (String entity : entities) {
+            Class<?> type = resolve(entity, loader);
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                if (registered.add(current)) {
+                    hints.reflection().registerType(current, MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS,
+                            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+                }
+            }
+        }
+        for (String userHandler : index.getUserHandlers()) {
+            registerHandler(hints, resolve(userHandler, loader), registered);
+        }
+    }
+
+    private static void registerHandler(RuntimeHints hints, Class<?> type, Set<Class<?>> registered) {
+        if (type == null || type == Object.class || !registered.add(type)) return;
+        hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.INVOKE_DECLARED_METHODS);
+        for (Class<?> contract : type.getInterfaces()) registerHandler(hints, contract, registered);
+        registerHandler(hints, type.getSuperclass(), registered);
+    }
+
+    private static Class<?> resolve(String className, ClassLoader classLoader) {
+        try {
+            return ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalStateException("Class '" + className + "' is listed in " + LastShieldIndex.LOCATION + " but cannot be loaded.", e);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NativeDetector;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Builds the accessors used to read user entities and query user repositories without per-call reflection.
+ * <p>
+ * Each accessor is resolved once. When the member is a public method, or a field with a public getter, it is
+ * compiled by {@link LambdaMetafactory} into a plain {@link Function} or {@link BiFunction} implementation,
+ * which the JIT inlines like a direct call. Otherwise, for instance for a private field without a getter, the
+ * accessor wraps a {@link MethodHandle} obtained through a private lookup, which still skips the access checks
+ * and the argument boxing of {@link Field#get(Object)} and {@link Method#invoke(Object, Object...)}.
+ * <p>
+ * A native image cannot spin lambda classes at run time, so there every accessor wraps a method handle, which
+ * works on the members registered by {@link LastShieldRuntimeHints}.
+ */
+final class MemberAccessors {
+    private static final Logger logger = LoggerFactory.getLogger(MemberAccessors.class);
+
+    private MemberAccessors() {
+    }
+
+    /**
+     * Builds an accessor reading the given field, through its public getter when there is one.
+     *
+     * @param field the field to read.
+     * @return a function returning the value of the field for a given instance.
+     * @throws IllegalStateException if the field cannot be accessed.
+     */
+    static Function<Object, Object> getter(Field field) {
+        Method getter = findGetter(field);
+        if (getter != null && !NativeDetector.inNativeImage()) {
+            try {
+                return compileGetter(getter);
+            } catch (Throwable e) {
+                logger.debug("Falling back to a method handle for {}: {}", getter, e.getMessage());
+            }
+        }
+        try {
+            MethodHandle handle = lookupIn(field.getDeclaringClass()).unreflectGetter(field)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            return target -> invoke(handle, target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the field '" + field.getName() + "' of " + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * Builds an accessor invoking a single-argument finder method, such as {@code findUserByUsername(String)}.
+     *
+     * @param finder the finder method.
+     * @return a function invoking the finder on a given instance with a given argument.
+     * @throws IllegalStateException if the method cannot be accessed.
+     */
+    static BiFunction<Object, String, Object> finder(Method finder) {
+        if (isPublic(finder) && !NativeDetector.inNativeImage()) {
+            try {
+                return compileFinder(finder);
+            } catch (Throwable e) {
+                logger.debug("Falling back to a method handle for {}: {}", finder, e.getMessage());
+            }
+        }
+        try {
+            MethodHandle handle = lookupIn(finder.getDeclaringClass()).unreflect(finder)
+                    .asType(MethodType.methodType(Object.class, Object.class, String.class));
+            return (target, argument) -> invoke(handle, target, argument);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the method '" + finder.getName() + "' of " + finder.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * Builds an accessor copying instances of a class: a new instance is created with the no-argument constructor
+     * and every non-static, non-final field declared by the class and its superclasses is copied into it.
+     * Lists, sets and maps of the JDK held by fields that accept a copy are copied as well, so the copy can be
+     * changed without affecting the original; other field values, such as the lazy collections of a persistence
+     * provider, are shared.
+     *
+     * @param type the class of the instances to copy.
+     * @return a function returning a copy of a given instance.
+     * @throws IllegalStateException if the class has no no-argument constructor or a field cannot be accessed.
+     */
+    static UnaryOperator<Object> copier(Class<?> type) {
+        try {
+            MethodHandle constructor = lookupIn(type).unreflectConstructor(type.getDeclaredConstructor())
+                    .asType(MethodType.methodType(Object.class));
+            List<FieldCopier> fields = new ArrayList<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                MethodHandles.Lookup lookup = lookupIn(current);
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) continue;
+                    fields.add(new FieldCopier(
+                            lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)),
+                            lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class)),
+                            field.getType()));
+                }
+            }
+            FieldCopier[] copiers = fields.toArray(new FieldCopier[0]);
+            return source -> copy(constructor, copiers, source);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("The class " + type.getName() + " has no no-argument constructor to copy its instances.", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the members of " + type.getName() + " to copy its instances.", e);
+        }
+    }
+
+    private static Object copy(MethodHandle constructor, FieldCopier[] copiers, Object source) {
+        try {
+            Object copy = (Object) constructor.invokeExact();
+            for (FieldCopier copier : copiers) {
+                Object value = (Object) copier.getter().invokeExact(source);
+                Object copiedValue = copyOfJdkCollection(value);
+                copier.setter().invokeExact(copy, copier.type().isInstance(copiedValue) ? copiedValue : value);
+            }
+            return copy;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies a list, set or map implemented by the JDK into a new one of the same kind, and returns any other
+     * value as it is.
+     */
+    private static Object copyOfJdkCollection(Object value) {
+        if (value == null || !value.getClass().getName().startsWith("java.util.")) return value;
+        if (value instanceof List<?> list) return new ArrayList<>(list);
+        if (value instanceof Set<?> set) return new LinkedHashSet<>(set);
+        if (value instanceof Map<?, ?> map) return new LinkedHashMap<>(map);
+        return value;
+    }
+
+    /**
+     * Reads a field of the original instance and writes it into the copy.
+     *
+     * @param getter reads the field.
+     * @param setter writes the field.
+     * @param type   the declared type of the field, which a copied collection must be an instance of.
+     */
+    private record FieldCopier(MethodHandle getter, MethodHandle setter, Class<?> type) {}
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compileGetter(Method getter) throws Throwable {
+        MethodHandles.Lookup lookup = lookupIn(getter.getDeclaringClass());
+        MethodHandle implementation = lookup.unreflect(getter);
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                implementation, implementation.type().wrap());
+        return (Function<Object, Object>) callSite.getTarget().invoke();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiFunction<Object, String, Object> compileFinder(Method finder) throws Throwable {
+        MethodHandles.Lookup lookup = lookupIn(finder.getDeclaringClass());
+        MethodHandle implementation = lookup.unreflect(finder);
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(BiFunction.class),
+                MethodType.methodType(Object.class, Object.class, Object.class),
+                implementation, implementation.type().wrap());
+        return (BiFunction<Object, String, Object>) callSite.getTarget().invoke();
+    }
+
+    /**
+     * Finds the public getter of a field: {@code getName()}, or {@code isName()} for booleans, returning the
+     * field type and declared by a public class.
+     */
+    private static Method findGetter(Field field) {
+        String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        for (String prefix : new String[]{"get", "is"}) {
+            try {
+                Method method = field.getDeclaringClass().getDeclaredMethod(prefix + suffix);
+                if (method.getReturnType() == field.getType() && isPublic(method) && !Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            } catch (NoSuchMethodException ignored) {
+                // try the next prefix
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPublic(Method method) {
+        return Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    private static MethodHandles.Lookup lookupIn(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    private static Object invoke(MethodHandle handle, Object target) {
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(MethodHandle handle, Object target, String argument) {
+        try {
+            return (Object) handle.invokeExact(target, argument);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import tech.lastbox.jwt.CacheTrimmer;
+import tech.lastbox.jwt.InvalidationEvent;
+import tech.lastbox.jwt.InvalidationTransport;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time-limited cache of the principals resolved by the {@link SecurityFilter}, keyed by token subject.
+ * <p>
+ * Once a token is validated, the filter looks its subject up here before querying the user repository and
+ * reading the user roles, so authenticated requests of active users neither hit the database nor use
+ * reflection. Entries expire after the configured time to live, and the cache holds at most the configured
+ * number of entries, give or take the concurrent insertions: when it is full, a {@link CacheTrimmer} drops expired entries first, then
+ * arbitrary ones, down to three quarters of that number.
+ * <p>
+ * The cached user entity is never handed out: every request gets its own copy as its principal, so a request
+ * changing its principal affects neither the cache nor the concurrent requests of the same subject.
+ * <p>
+ * Entries are dropped as soon as a {@link InvalidationEvent.Type#PRINCIPAL_CHANGED} event is received from the
+ * {@link InvalidationTransport}, when one is available, or when {@link #invalidate(String)} is called. A lookup
+ * that started before an invalidation is not cached, so a stale user can never be stored after its invalidation.
+ * <p>
+ * Subjects without a user, e.g. the subject of a token whose user was deleted, are remembered as unknown for a
+ * shorter time, so clients retrying with such a token do not query the repository on every request. Creating or
+ * renaming a user publishes a {@link InvalidationEvent.Type#PRINCIPAL_CHANGED} event for its username, which
+ * drops its unknown entry as well, so a user registered under that name is found immediately.
+ */
+@Component
+public class PrincipalCache {
+    /** Default time to live of a cached principal. */
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(60);
+    /** Default maximum number of cached principals. */
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    /** Default time to live of an unknown subject. */
+    public static final Duration DEFAULT_UNKNOWN_TTL = Duration.ofSeconds(5);
+
+    private final Map<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    private final Map<String, Long> unknownSubjects = new ConcurrentHashMap<>();
+    private final CacheTrimmer<CachedPrincipal> principalTrimmer = new CacheTrimmer<>(CachedPrincipal::expiresAt);
+    private final CacheTrimmer<Long> unknownTrimmer = new CacheTrimmer<>(Long::longValue);
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+    private volatile long ttlNanos = DEFAULT_TTL.toNanos();
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+    private volatile long unknownTtlNanos = DEFAULT_UNKNOWN_TTL.toNanos();
+
+    /**
+     * Constructs the principal cache and subscribes it to the invalidation transport, when one is available.
+     *
+     * @param invalidationTransport the transport broadcasting user changes (auto-injected by Spring IoC, optional).
+     */
+    public PrincipalCache(ObjectProvider<InvalidationTransport> invalidationTransport) {
+        invalidationTransport.ifAvailable(transport -> transport.subscribe(this::onInvalidation));
+    }
+
+    /**
+     * Gets the principal cached for a token subject.
+     *
+     * @param subject the token subject.
+     * @return the cached principal, or {@code null} if it is not cached or has expired.
+     */
+    public CachedPrincipal get(String subject) {
+        CachedPrincipal principal = principals.get(subject);
+        if (principal == null) return null;
+        if (System.nanoTime() - principal.expiresAt() >= 0) {
+            principals.remove(subject, principal);
+            return null;
+        }
+        return principal;
+    }
+
+    /**
+     * Gets the current invalidation stamp. It must be read before loading a principal and handed over to
+     * {@link #put(String, Object, List, long, long)}, which ignores principals loaded before an invalidation.
+     *
+     * @return the current invalidation stamp.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Caches the principal resolved for a token subject, unless caching is disabled or an invalidation
+     * happened since {@code stamp} was read.
+     *
+     * @param subject     the token subject.
+     * @param user        the user entity.
+     * @param authorities the authorities granted to the user.
+     * @param roleMask    the role mask of the user, see {@link RoleRegistry}.
+     * @param stamp       the invalidation stamp read before loading the user.
+     * @return the principal, whether it was cached or not.
+     */
+    public CachedPrincipal put(String subject, Object user, List<GrantedAuthority> authorities, long roleMask, long stamp) {
+        long ttl = ttlNanos;
+        CachedPrincipal principal = new CachedPrincipal(user, List.copyOf(authorities), roleMask, System.nanoTime() + ttl);
+        if (ttl == 0 || maxSize == 0 || stamp != invalidations.get()) return principal;
+
+        principals.put(subject, principal);
+        principalTrimmer.trim(principals, maxSize);
+        return principal;
+    }
+
+    /**
+     * Checks whether a token subject was recently found to have no user.
+     *
+     * @param subject the token subject.
+     * @return {@code true} if the subject is remembered as unknown and the entry has not expired.
+     */
+    public boolean isUnknown(String subject) {
+        Long expiresAt = unknownSubjects.get(subject);
+        if (expiresAt == null) return false;
+        if (System.nanoTime() - expiresAt >= 0) {
+            unknownSubjects.remove(subject, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that a token subject has no user, unless caching unknown subjects is disabled or an invalidation
+     * happened since {@code stamp} was read.
+     *
+     * @param subject the token subject.
+     * @param stamp   the invalidation stamp read before looking the user up.
+     */
+    public void putUnknown(String subject, long stamp) {
+        long ttl = unknownTtlNanos;
+        if (ttl == 0 || maxSize == 0 || stamp != invalidations.get()) return;
+
+        unknownSubjects.put(subject, System.nanoTime() + ttl);
+        unknownTrimmer.trim(unknownSubjects, maxSize);
+    }
+
+    /**
+     * Drops the principal cached for a token subject, and forgets it if it was remembered as unknown.
+     *
+     * @param subject the token subject, usually the username.
+     */
+    public void invalidate(String subject) {
+        invalidations.incrementAndGet();
+        principals.remove(subject);
+        unknownSubjects.remove(subject);
+        logger.debug("Invalidated cached principal: {}", subject);
+    }
+
+    /**
+     * Drops every cached principal and unknown subject.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        principals.clear();
+        unknownSubjects.clear();
+    }
+
+    /**
+     * Gets the number of cached principals, including expired ones not dropped yet.
+     *
+     * @return the number of cached principals.
+     */
+    public int size() {
+        return principals.size();
+    }
+
+    /**
+     * Sets how long a resolved principal is reused. A zero duration disables the cache.
+     *
+     * @param ttl the time to live of a cached principal.
+     * @throws IllegalArgumentException if the duration is null or negative.
+     */
+    public void setTtl(Duration ttl) {
+        if (ttl == null || ttl.isNegative()) {
+            throw new IllegalArgumentException("Principal cache time to live must not be negative.");
+        }
+        this.ttlNanos = ttl.toNanos();
+        if (ttl.isZero()) invalidateAll();
+    }
+
+    /**
+     * Sets how long a subject without a user is remembered as unknown. A zero duration disables it.
+     *
+     * @param ttl the time to live of an unknown subject.
+     * @throws IllegalArgumentException if the duration is null or negative.
+     */
+    public void setUnknownTtl(Duration ttl) {
+        if (ttl == null || ttl.isNegative()) {
+            throw new IllegalArgumentException("Unknown subject time to live must not be negative.");
+        }
+        this.unknownTtlNanos = ttl.toNanos();
+        if (ttl.isZero()) unknownSubjects.clear();
+    }
+
+    /**
+     * Sets the maximum number of cached principals, which also bounds the unknown subjects. Zero disables the cache.
+     *
+     * @param maxSize the maximum number of cached principals.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Principal cache size must not be negative.");
+        }
+        this.maxSize = maxSize;
+        principalTrimmer.trim(principals, maxSize);
+        unknownTrimmer.trim(unknownSubjects, maxSize);
+    }
+
+    private void onInvalidation(InvalidationEvent event) {
+        if (event.type() == InvalidationEvent.Type.PRINCIPAL_CHANGED) {
+            invalidate(event.key());
+        }
+    }
+
+    /**
+     * A principal resolved from the user repository.
+     * <p>
+     * The same instance is shared by every request of the subject, so its user entity is never used as the
+     * authentication principal itself: each request gets its own copy, see {@link SecurityUtil#copyUser(Object)}.
+     *
+     * @param user        the user entity the authentication principal of each request is copied from.
+     * @param authorities the authorities granted to the user.
+     * @param roleMask    the role mask of the user, see {@link RoleRegistry}.
+     * @param expiresAt   the {@link System#nanoTime()} after which the entry is stale.
+     */
+    public record CachedPrincipal(Object user, List<GrantedAuthority> authorities, long roleMask, long expiresAt) {}
+}
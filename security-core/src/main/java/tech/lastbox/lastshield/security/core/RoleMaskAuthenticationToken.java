@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * Authentication of a user resolved by the {@link SecurityFilter}, carrying the role mask computed by the
+ * {@link RoleRegistry} alongside the usual authorities, so {@link RoleMaskAuthorizationManager} can authorize
+ * it without walking the authorities.
+ */
+public class RoleMaskAuthenticationToken extends UsernamePasswordAuthenticationToken {
+    private final long roleMask;
+
+    /**
+     * Constructs an authenticated token.
+     *
+     * @param principal   the user entity.
+     * @param authorities the authorities granted to the user.
+     * @param roleMask    the role mask of the user.
+     */
+    public RoleMaskAuthenticationToken(Object principal, Collection<? extends GrantedAuthority> authorities, long roleMask) {
+        super(principal, null, authorities);
+        this.roleMask = roleMask;
+    }
+
+    /**
+     * Gets the role mask of the user.
+     *
+     * @return the role mask.
+     */
+    public long getRoleMask() {
+        return roleMask;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Authorization rule of a route restricted to roles, evaluated as a single AND between the role mask of the
+ * principal and the mask of the roles the route accepts.
+ * <p>
+ * The rule mask is computed by the {@link RoleRegistry} when the rule is created, with the role hierarchy
+ * already folded in. Authentications that do not carry a mask, e.g. ones set by another filter, fall back
+ * to the mask of their {@code ROLE_} authorities.
+ */
+public class RoleMaskAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final RoleRegistry roleRegistry;
+    private final String[] roles;
+    private final long ruleMask;
+
+    /**
+     * Constructs the rule granting any of the given roles.
+     *
+     * @param roleRegistry the registry assigning the role bits.
+     * @param roles        the roles accepted by the route.
+     */
+    public RoleMaskAuthorizationManager(RoleRegistry roleRegistry, String... roles) {
+        this.roleRegistry = roleRegistry;
+        this.roles = roles.clone();
+        this.ruleMask = roleRegistry.ruleMask(roles);
+    }
+
+    /**
+     * Grants access when the principal holds one of the accepted roles, or a role implying one of them.
+     *
+     * @param authentication the supplier of the current authentication.
+     * @param context        the request being authorized.
+     * @return the authorization decision.
+     */
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        return (roleMaskOf(authentication.get()) & ruleMask) != 0 ? GRANTED : DENIED;
+    }
+
+    private long roleMaskOf(Authentication authentication) {
+        if (authentication instanceof RoleMaskAuthenticationToken token) return token.getRoleMask();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken || !authentication.isAuthenticated()) {
+            return 0;
+        }
+        return roleRegistry.maskOfAuthorities(authentication.getAuthorities());
+    }
+
+    @Override
+    public String toString() {
+        return "RoleMaskAuthorizationManager[roles=" + Arrays.toString(roles) + "]";
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry assigning a bit index to every role used by the route authorities, so authorization is a bitwise AND.
+ * <p>
+ * Roles are registered while the routes are configured and frozen into bit indexes by {@link #compile()} when
+ * the configuration is built. A principal then carries the mask of its roles, computed once when it is
+ * resolved, and each route rule carries the mask of the roles it accepts: access is granted when the two masks
+ * intersect. Role implications, such as {@code ADMIN} implying {@code USER}, are folded into the route masks at
+ * compile time, so the hierarchy costs nothing per request.
+ * <p>
+ * Role names are handled without the {@code ROLE_} prefix. The {@link GrantedAuthority} of each role is
+ * interned here and shared by every principal. Up to 64 distinct roles are supported.
+ */
+@Component
+public class RoleRegistry {
+    private static final String ROLE_PREFIX = "ROLE_";
+    private static final int MAX_ROLES = Long.SIZE;
+
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> impliedRoles = new HashMap<>();
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+    private volatile long[] acceptingMasks = new long[0];
+
+    /**
+     * Default constructor for the RoleRegistry class.
+     */
+    public RoleRegistry() {
+    }
+
+    /**
+     * Registers a role so it gets a bit index. Registering a known role has no effect.
+     *
+     * @param role the role name, with or without the {@code ROLE_} prefix.
+     * @throws IllegalStateException if more than 64 distinct roles are registered.
+     */
+    public synchronized void register(String role) {
+        String name = normalize(role);
+        if (indexes.containsKey(name)) return;
+        if (indexes.size() == MAX_ROLES) {
+            throw new IllegalStateException("At most " + MAX_ROLES + " distinct roles are supported, cannot register '" + name + "'.");
+        }
+        indexes.put(name, indexes.size());
+    }
+
+    /**
+     * Registers several roles at once: either all of them get a bit index, or none does.
+     *
+     * @param roles the role names, with or without the {@code ROLE_} prefix.
+     * @throws IllegalStateException if the new roles would exceed 64 distinct roles, in which case none is registered.
+     */
+    public synchronized void registerAll(Collection<String> roles) {
+        Set<String> newRoles = new LinkedHashSet<>();
+        for (String role : roles) {
+            String name = normalize(role);
+            if (!indexes.containsKey(name)) newRoles.add(name);
+        }
+        if (indexes.size() + newRoles.size() > MAX_ROLES) {
+            throw new IllegalStateException("At most " + MAX_ROLES + " distinct roles are supported, cannot register " + newRoles.size() + " new roles.");
+        }
+        for (String name : newRoles) indexes.put(name, indexes.size());
+    }
+
+    /**
+     * Declares that a role implies another one: principals with {@code role} are granted every route that accepts
+     * {@code impliedRole}. Implications are transitive.
+     *
+     * @param role        the higher role, e.g. {@code ADMIN}.
+     * @param impliedRole the role it implies, e.g. {@code USER}.
+     */
+    public synchronized void addImplication(String role, String impliedRole) {
+        register(role);
+        register(impliedRole);
+        impliedRoles.computeIfAbsent(normalize(role), key -> new LinkedHashSet<>()).add(normalize(impliedRole));
+        acceptingMasks = new long[0];
+    }
+
+    /**
+     * Computes, for every role, the mask of the roles that imply it, itself included.
+     * It is called when the security configuration is built and again whenever roles or implications change.
+     */
+    public synchronized void compile() {
+        long[] masks = new long[indexes.size()];
+        for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+            masks[entry.getValue()] |= 1L << entry.getValue();
+            for (String implied : reachableFrom(entry.getKey())) {
+                masks[indexes.get(implied)] |= 1L << entry.getValue();
+            }
+        }
+        acceptingMasks = masks;
+        logger.debug("Compiled {} roles into bit indexes: {}", indexes.size(), indexes);
+    }
+
+    /**
+     * Gets the mask a principal needs to intersect to be granted a rule accepting the given roles, with the
+     * role implications folded in. The roles are registered if needed.
+     *
+     * @param roles the roles accepted by the rule.
+     * @return the mask of every role granted by the rule.
+     */
+    public long ruleMask(String... roles) {
+        for (String role : roles) {
+            if (!indexes.containsKey(normalize(role))) register(role);
+        }
+        long[] masks = compiledMasks();
+        long mask = 0;
+        for (String role : roles) {
+            mask |= masks[indexes.get(normalize(role))];
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the mask of a principal's roles. Roles that no rule uses have no bit and are ignored.
+     *
+     * @param roles the roles of the principal.
+     * @return the role mask of the principal.
+     */
+    public long maskOf(Collection<String> roles) {
+        long mask = 0;
+        for (String role : roles) {
+            if (role == null) continue;
+            Integer index = indexes.get(normalize(role));
+            if (index != null) mask |= 1L << index;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the mask of the roles held as {@code ROLE_} authorities, for authentications not created by LastShield.
+     *
+     * @param grantedAuthorities the granted authorities.
+     * @return the role mask of the authorities.
+     */
+    public long maskOfAuthorities(Collection<? extends GrantedAuthority> grantedAuthorities) {
+        long mask = 0;
+        for (GrantedAuthority grantedAuthority : grantedAuthorities) {
+            String authority = grantedAuthority.getAuthority();
+            if (authority == null || !authority.startsWith(ROLE_PREFIX)) continue;
+            Integer index = indexes.get(authority.substring(ROLE_PREFIX.length()));
+            if (index != null) mask |= 1L << index;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the number of roles that have a bit.
+     *
+     * @return the number of registered roles.
+     */
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Gets the shared {@code ROLE_} authority of a role.
+     *
+     * @param role the role name, with or without the {@code ROLE_} prefix.
+     * @return the interned granted authority.
+     */
+    public GrantedAuthority authority(String role) {
+        return authorities.computeIfAbsent(normalize(role), name -> new SimpleGrantedAuthority(ROLE_PREFIX + name));
+    }
+
+    private long[] compiledMasks() {
+        long[] masks = acceptingMasks;
+        if (masks.length != indexes.size()) {
+            compile();
+            masks = acceptingMasks;
+        }
+        return masks;
+    }
+
+    private Set<String> reachableFrom(String role) {
+        Set<String> reached = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(impliedRoles.getOrDefault(role, Set.of()));
+        while (!pending.isEmpty()) {
+            String implied = pending.pop();
+            if (reached.add(implied)) pending.addAll(impliedRoles.getOrDefault(implied, Set.of()));
+        }
+        reached.remove(role);
+        return reached;
+    }
+
+    private static String normalize(String role) {
+        return role.startsWith(ROLE_PREFIX) ? role.substring(ROLE_PREFIX.length()) : role;
+    }
+}
@@ -32,6 +32,7 @@ public class RouteAuthority {
     private final String path;
     private final String[] roles;
     private final List<HttpMethod> httpMethods = new ArrayList<>();
+    private AuthenticationLevel authenticationLevel;
 
     /**
      * Constructs a {@code RouteAuthority} with the specified path and no roles.
@@ -79,6 +80,19 @@ public class RouteAuthority {
         this.roles = roles.toArray(roles.toArray(new String[0]));
     }
 
+    /**
+     * Constructs a {@code RouteAuthority} with the specified path, list of roles, and HTTP methods.
+     *
+     * @param path the path of the route to which this authority applies.
+     * @param roles the list of roles that are allowed to access this route, or null for a public route.
+     * @param httpMethods the HTTP methods (e.g., GET, POST) allowed on this route.
+     */
+    public RouteAuthority(String path, List<String> roles, HttpMethod... httpMethods) {
+        this.path = path;
+        this.roles = roles == null ? null : roles.toArray(new String[0]);
+        this.httpMethods.addAll(Arrays.asList(httpMethods));
+    }
+
     /**
      * Constructs a {@code RouteAuthority} with the specified path and HTTP methods.
      *
@@ -116,6 +130,38 @@ public class RouteAuthority {
      */
     public List<HttpMethod> getHttpMethods() {return httpMethods;}
 
+    /**
+     * Sets how deeply requests to this route are authenticated, see {@link AuthenticationLevel}.
+     * Routes without a level use {@link AuthenticationLevel#REVOCATION_CHECKED} in claims authentication mode and
+     * {@link AuthenticationLevel#FULL} otherwise. The level has no effect on public routes.
+     *
+     * @param authenticationLevel the authentication level, or null for the default one.
+     * @return this {@code RouteAuthority}, for chaining.
+     */
+    public RouteAuthority setAuthenticationLevel(AuthenticationLevel authenticationLevel) {
+        this.authenticationLevel = authenticationLevel;
+        return this;
+    }
+
+    /**
+     * Marks this route as requiring the user entity, so handlers can use the entity and access stops as soon as
+     * the user is deleted. This is a shorthand for {@link AuthenticationLevel#FULL}.
+     *
+     * @return this {@code RouteAuthority}, for chaining.
+     */
+    public RouteAuthority requireUser() {
+        return setAuthenticationLevel(AuthenticationLevel.FULL);
+    }
+
+    /**
+     * Gets the authentication level of this route.
+     *
+     * @return the authentication level, or null if the route uses the default one.
+     */
+    public AuthenticationLevel getAuthenticationLevel() {
+        return authenticationLevel;
+    }
+
     /**
      * Returns a string representation of the {@code RouteAuthority}.
      * This includes the path, roles, and HTTP methods associated with the route.
@@ -128,6 +174,7 @@ public class RouteAuthority {
                 "path='" + path + '\'' +
                 ", roles=" + Arrays.toString(roles) +
                 ", httpMethods=" + httpMethods +
+                ", authenticationLevel=" + authenticationLevel +
                 '}';
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.function.Supplier;
+
+/**
+ * Single authorization manager of the security filter chain, resolving the rule of each request from the
+ * {@link RouteTrie} compiled by {@link CoreSecurityConfig} instead of evaluating one request matcher per route.
+ * <p>
+ * The matching route decides: public routes are granted to everyone and role-restricted routes are checked by
+ * their {@link RoleMaskAuthorizationManager}. Requests matching no route only require an authenticated user.
+ */
+class RouteAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+    private final AdvancedFilterChecker advancedFilterChecker;
+    private final AuthorizationManager<RequestAuthorizationContext> fallback = AuthenticatedAuthorizationManager.authenticated();
+
+    /**
+     * Constructs the manager reading the routes compiled into the given checker.
+     *
+     * @param advancedFilterChecker the holder of the compiled routes.
+     */
+    RouteAuthorizationManager(AdvancedFilterChecker advancedFilterChecker) {
+        this.advancedFilterChecker = advancedFilterChecker;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        RouteTrie.Route route = advancedFilterChecker.getRoutes().match(context.getRequest());
+        return (route == null ? fallback : route.manager()).check(authentication, context);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.lastbox.lastshield.security.core.http.HttpMethod;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a properties file of route authorities and hands every new version of it to a listener.
+ * <p>
+ * Each entry maps a path pattern to one or more rules separated by {@code ;}. A rule is either
+ * {@code permitAll} or a comma-separated list of roles, optionally followed by {@code @} and a comma-separated
+ * list of HTTP methods, and by {@code :} and an {@link AuthenticationLevel}:
+ * <pre>
+ * /admin/**=ADMIN:FULL
+ * /reports/**=USER,ADMIN@GET:SIGNATURE;ADMIN@POST,DELETE
+ * /status=permitAll@GET
+ * </pre>
+ * Entries keep the order of the file, which is their matching order. The file is polled for changes of its
+ * modification time or size, so edits through editors, atomic renames and mounted volumes are all seen. A file
+ * that cannot be parsed is reported and ignored, leaving the previous routes in place.
+ */
+class RouteFileWatcher implements AutoCloseable {
+    private static final String PERMIT_ALL = "permitAll";
+
+    private final Path file;
+    private final Consumer<List<RouteAuthority>> listener;
+    private final ScheduledExecutorService poller;
+    private final Logger logger = LoggerFactory.getLogger(RouteFileWatcher.class);
+    private Object lastVersion;
+
+    /**
+     * Loads the file and starts polling it.
+     *
+     * @param file         the route file.
+     * @param pollInterval the delay between two checks of the file.
+     * @param listener     receives the routes of the file on start and after each change.
+     * @throws IllegalArgumentException if the poll interval is not positive.
+     * @throws IllegalStateException    if the file cannot be read or parsed on start.
+     */
+    RouteFileWatcher(Path file, Duration pollInterval, Consumer<List<RouteAuthority>> listener) {
+        if (pollInterval == null || pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval must be positive.");
+        }
+        this.file = file;
+        this.listener = listener;
+        try {
+            this.lastVersion = version();
+            listener.accept(load());
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Could not load the route file " + file + ".", e);
+        }
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lastshield-route-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            Object version = version();
+            if (version.equals(lastVersion)) return;
+            lastVersion = version;
+            List<RouteAuthority> routes = load();
+            listener.accept(routes);
+            logger.info("Reloaded {} route authorities from {}.", routes.size(), file);
+        } catch (NoSuchFileException e) {
+            logger.warn("Route file {} is missing, keeping the current routes.", file);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not reload the route file {}, keeping the current routes: {}", file, e.getMessage());
+        }
+    }
+
+    private Object version() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return List.of(attributes.lastModifiedTime(), attributes.size());
+    }
+
+    private List<RouteAuthority> load() throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses route authorities in the format described by this class.
+     *
+     * @param reader the properties to parse.
+     * @return the route authorities, in file order.
+     * @throws UncheckedIOException     if the properties cannot be read.
+     * @throws IllegalArgumentException if a rule is malformed or names an unknown HTTP method or authentication level.
+     */
+    static List<RouteAuthority> parse(Reader reader) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        Properties properties = new Properties() {
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                entries.put((String) key, (String) value);
+                return super.put(key, value);
+            }
+        };
+        try {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<RouteAuthority> authorities = new ArrayList<>();
+        entries.forEach((path, value) -> {
+            for (String rule : value.split(";")) {
+                if (!rule.isBlank()) authorities.add(parseRule(path.trim(), rule.trim()));
+            }
+        });
+        return authorities;
+    }
+
+    private static RouteAuthority parseRule(String path, String rule) {
+        int colon = rule.indexOf(':');
+        AuthenticationLevel level = colon < 0 ? null
+                : AuthenticationLevel.valueOf(rule.substring(colon + 1).trim().toUpperCase(Locale.ROOT));
+        if (colon >= 0) rule = rule.substring(0, colon);
+        int at = rule.indexOf('@');
+        String access = (at < 0 ? rule : rule.substring(0, at)).trim();
+        HttpMethod[] methods = at < 0 ? new HttpMethod[0] : Arrays.stream(rule.substring(at + 1).split(","))
+                .map(String::trim)
+                .filter(method -> !method.isEmpty())
+                .map(method -> HttpMethod.valueOf(method.toUpperCase(Locale.ROOT)))
+                .toArray(HttpMethod[]::new);
+        if (access.isEmpty()) {
+            throw new IllegalArgumentException("Route '" + path + "' has a rule without roles: '" + rule + "'.");
+        }
+        List<String> roles = access.equalsIgnoreCase(PERMIT_ALL) ? null : Arrays.stream(access.split(","))
+                .map(String::trim)
+                .filter(role -> !role.isEmpty())
+                .toList();
+        return new RouteAuthority(path, roles, methods).setAuthenticationLevel(level);
+    }
+}
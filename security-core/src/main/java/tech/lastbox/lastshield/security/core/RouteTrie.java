@@ -0,0 +1,310 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import tech.lastbox.lastshield.security.core.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable trie of the {@link RouteAuthority} entries, keyed by path segment and HTTP method.
+ * <p>
+ * Each route pattern is split on {@code /} and inserted segment by segment. Literal segments are looked up in a
+ * hash map, {@code *} and {@code {name}} match any single non-empty segment, segments such as {@code *.json} or
+ * {@code {id:\\d+}} are matched by a precompiled expression, and a trailing {@code **} or {@code {*name}} matches
+ * the remaining segments, including none. As with Spring's path patterns, {@code **} is only allowed at the end.
+ * <p>
+ * Routes keep the first-match semantics of their registration order: a lookup returns, among the routes matching
+ * the path and the method, the one registered first. Every node records the earliest route of its subtree, so
+ * branches that cannot beat the best match found so far are skipped, and a lookup costs O(path length)
+ * regardless of the number of routes.
+ */
+final class RouteTrie {
+    static final AuthorizationManager<RequestAuthorizationContext> PERMIT_ALL = new AuthorizationManager<>() {
+        private final AuthorizationDecision granted = new AuthorizationDecision(true);
+
+        @Override
+        public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+            return granted;
+        }
+
+        @Override
+        public String toString() {
+            return "PermitAll";
+        }
+    };
+
+    private static final String[] NO_SEGMENTS = new String[0];
+
+    private final Node root;
+    private final int size;
+
+    private RouteTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Compiles route authorities into a trie. Routes without roles are public and granted to everyone; the others
+     * get the authorization manager built by {@code ruleFactory} from their roles.
+     *
+     * @param authorities the route authorities, in registration order.
+     * @param ruleFactory builds the authorization manager of a role-restricted route.
+     * @return the compiled trie.
+     * @throws IllegalArgumentException if a pattern uses {@code **} before its last segment.
+     */
+    static RouteTrie compile(List<RouteAuthority> authorities,
+                             Function<String[], AuthorizationManager<RequestAuthorizationContext>> ruleFactory) {
+        Node root = new Node();
+        int order = 0;
+        for (RouteAuthority authority : authorities) {
+            String[] roles = authority.getRoles();
+            Route route = new Route(order++, authority, roles == null ? PERMIT_ALL : ruleFactory.apply(roles));
+            root.insert(split(authority.getPath()), 0, route);
+        }
+        return new RouteTrie(root, order);
+    }
+
+    /**
+     * Checks that every route pattern is supported, without building any authorization manager, so a rejected
+     * change registers no role.
+     *
+     * @param authorities the route authorities to check.
+     * @throws IllegalArgumentException if a pattern is not supported, see {@link #compile(List, Function)}.
+     */
+    static void validate(List<RouteAuthority> authorities) {
+        compile(authorities, roles -> PERMIT_ALL);
+    }
+
+    /**
+     * An empty trie, matching no request.
+     *
+     * @return the empty trie.
+     */
+    static RouteTrie empty() {
+        return new RouteTrie(new Node(), 0);
+    }
+
+    /**
+     * Finds the first registered route matching a request.
+     *
+     * @param request the request.
+     * @return the matching route, or null if none matches.
+     */
+    Route match(HttpServletRequest request) {
+        return match(request.getMethod(), pathWithinApplication(request));
+    }
+
+    /**
+     * Finds the first registered route matching a method and a path.
+     *
+     * @param method the HTTP method name.
+     * @param path   the path within the application, starting with {@code /}.
+     * @return the matching route, or null if none matches.
+     */
+    Route match(String method, String path) {
+        return root.match(split(path), 0, method, null);
+    }
+
+    /**
+     * Gets the number of compiled routes.
+     *
+     * @return the number of routes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the path of a request within the application, the same path Spring MVC maps to handlers.
+     */
+    static String pathWithinApplication(HttpServletRequest request) {
+        String servletPath = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        if (servletPath == null || servletPath.isEmpty()) return pathInfo == null ? "/" : pathInfo;
+        return pathInfo == null ? servletPath : servletPath + pathInfo;
+    }
+
+    private static String[] split(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        if (start >= path.length()) return NO_SEGMENTS;
+        List<String> segments = new ArrayList<>();
+        for (int end = path.indexOf('/', start); end >= 0; end = path.indexOf('/', start)) {
+            segments.add(path.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(path.substring(start));
+        return segments.toArray(NO_SEGMENTS);
+    }
+
+    /**
+     * A compiled route.
+     *
+     * @param order     the registration order, lower values win.
+     * @param authority the route authority it was compiled from.
+     * @param manager   the authorization manager of the route.
+     */
+    record Route(int order, RouteAuthority authority, AuthorizationManager<RequestAuthorizationContext> manager) {
+
+        /**
+         * Checks whether the route is public, i.e. not restricted to roles.
+         *
+         * @return true if the route is granted to everyone.
+         */
+        boolean isPublic() {
+            return authority.getRoles() == null;
+        }
+    }
+
+    /**
+     * Routes ending at a node: the first one registered for any method and the first one per method.
+     */
+    private static final class Terminal {
+        private Route anyMethod;
+        private final Map<String, Route> byMethod = new HashMap<>();
+
+        void add(Route route) {
+            List<HttpMethod> methods = route.authority().getHttpMethods();
+            if (methods.isEmpty()) {
+                if (anyMethod == null) anyMethod = route;
+            } else {
+                for (HttpMethod method : methods) byMethod.putIfAbsent(method.name(), route);
+            }
+        }
+
+        Route best(String method) {
+            Route specific = byMethod.isEmpty() ? null : byMethod.get(method);
+            return earliest(anyMethod, specific);
+        }
+    }
+
+    /**
+     * A segment pattern with wildcards or a variable constraint, e.g. {@code *.json}.
+     */
+    private record PatternChild(String source, Pattern pattern, Node node) {}
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private final List<PatternChild> patterns = new ArrayList<>(0);
+        private Node single;
+        private Terminal exact;
+        private Terminal rest;
+        private int minOrder = Integer.MAX_VALUE;
+
+        void insert(String[] segments, int index, Route route) {
+            minOrder = Math.min(minOrder, route.order());
+            if (index == segments.length) {
+                if (exact == null) exact = new Terminal();
+                exact.add(route);
+                return;
+            }
+            String segment = segments[index];
+            if (segment.equals("**") || (segment.startsWith("{*") && segment.endsWith("}"))) {
+                if (index != segments.length - 1) {
+                    throw new IllegalArgumentException("'**' is only allowed at the end of a route pattern: " + route.authority().getPath());
+                }
+                if (rest == null) rest = new Terminal();
+                rest.add(route);
+                return;
+            }
+            childFor(segment).insert(segments, index + 1, route);
+        }
+
+        private Node childFor(String segment) {
+            if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}") && segment.indexOf(':') < 0)) {
+                if (single == null) single = new Node();
+                return single;
+            }
+            if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0 && segment.indexOf('{') < 0) {
+                return literals.computeIfAbsent(segment, key -> new Node());
+            }
+            for (PatternChild child : patterns) {
+                if (child.source().equals(segment)) return child.node();
+            }
+            PatternChild child = new PatternChild(segment, compileSegment(segment), new Node());
+            patterns.add(child);
+            return child.node();
+        }
+
+        Route match(String[] segments, int index, String method, Route best) {
+            if (best != null && best.order() <= minOrder) return best;
+            if (rest != null) best = earliest(best, rest.best(method));
+            if (index == segments.length) {
+                return exact == null ? best : earliest(best, exact.best(method));
+            }
+            String segment = segments[index];
+            Node literal = literals.get(segment);
+            if (literal != null) best = literal.match(segments, index + 1, method, best);
+            if (single != null && !segment.isEmpty()) best = single.match(segments, index + 1, method, best);
+            for (int i = 0; i < patterns.size(); i++) {
+                PatternChild child = patterns.get(i);
+                if (child.pattern().matcher(segment).matches()) best = child.node().match(segments, index + 1, method, best);
+            }
+            return best;
+        }
+    }
+
+    private static Route earliest(Route first, Route second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return first.order() <= second.order() ? first : second;
+    }
+
+    /**
+     * Compiles a segment pattern: {@code *} matches any characters, {@code ?} one character, {@code {name}}
+     * any characters and {@code {name:regex}} the given expression.
+     */
+    private static Pattern compileSegment(String segment) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    int end = segment.indexOf('}', i);
+                    if (end < 0) throw new IllegalArgumentException("Unclosed variable in route segment: " + segment);
+                    String variable = segment.substring(i + 1, end);
+                    int colon = variable.indexOf(':');
+                    regex.append('(').append(colon < 0 ? ".*" : variable.substring(colon + 1)).append(')');
+                    i = end;
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) regex.append(Pattern.quote(literal.toString()));
+        return Pattern.compile(regex.toString());
+    }
+}
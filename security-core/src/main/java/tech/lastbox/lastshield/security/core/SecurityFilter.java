@@ -22,13 +22,18 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import tech.lastbox.jwt.JwtService;
+import tech.lastbox.jwt.SingleFlight;
+import tech.lastbox.jwt.Token;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -41,6 +46,10 @@ import java.util.Optional;
  * advanced filtering (as indicated by the {@link AdvancedFilterChecker}). If advanced filtering
  * is enabled, it processes the token, validates it using the {@link JwtService}, retrieves the
  * associated user from the repository, and sets the authenticated user in the {@link SecurityContextHolder}.
+ * Resolved users and their authorities are kept in the {@link PrincipalCache}, so the repository is only
+ * queried when the cache misses, and concurrent misses for the same subject share a single query through a
+ * {@link SingleFlight}. With claims authentication, the principal is built from the roles and claims
+ * of the token instead, and the repository is only queried on the routes that require the user entity.
  */
 @Component
 public class SecurityFilter extends OncePerRequestFilter {
@@ -49,6 +58,9 @@ public class SecurityFilter extends OncePerRequestFilter {
     private final ApplicationContext applicationContext;
     private final Logger logger = LoggerFactory.getLogger(SecurityFilter.class);
     private final SecurityUtil securityUtil;
+    private final PrincipalCache principalCache;
+    private final AdvancedFilterChecker advancedFilterChecker;
+    private final SingleFlight<String, PrincipalCache.CachedPrincipal> userLookups = new SingleFlight<>();
 
     /**
      * Constructs a new {@code SecurityFilter}.
@@ -58,37 +70,51 @@ public class SecurityFilter extends OncePerRequestFilter {
      *     <li>{@link JwtService} for validating JWT tokens.</li>
      *     <li>{@link ApplicationContext} for accessing Spring beans, such as the user repository.</li>
      *     <li>{@link SecurityUtil} for handling user lookups and authority retrieval.</li>
+     *     <li>{@link PrincipalCache} for reusing the users resolved by previous requests.</li>
+     *     <li>{@link AdvancedFilterChecker} for the routes that are not filtered.</li>
      * </ul>
      *
      * @param jwtService the JWT service used to validate and decode tokens.
      * @param applicationContext the Spring application context to fetch the user repository bean.
      * @param securityUtil utility class for performing security-related operations like user lookup and authority retrieval.
+     * @param principalCache cache of the users and authorities resolved for token subjects.
+     * @param advancedFilterChecker the state of the advanced filter and the paths it skips.
      */
-    public SecurityFilter(JwtService jwtService, ApplicationContext applicationContext, SecurityUtil securityUtil) {
+    SecurityFilter(JwtService jwtService, ApplicationContext applicationContext, SecurityUtil securityUtil, PrincipalCache principalCache,
+                   AdvancedFilterChecker advancedFilterChecker) {
         this.jwtService = jwtService;
         this.applicationContext = applicationContext;
         this.securityUtil = securityUtil;
+        this.principalCache = principalCache;
+        this.advancedFilterChecker = advancedFilterChecker;
     }
 
     /**
      * Sets the user repository class to be used for user lookups during authentication.
-     * The repository bean is retrieved from the Spring application context.
+     * The repository bean is retrieved from the Spring application context and its finder method is resolved
+     * right away.
      *
      * @param userRepositoryClass the class type of the user repository.
      */
     public void setUserRepository(Class<?> userRepositoryClass) {
         this.userRepository = applicationContext.getBean(userRepositoryClass);
+        securityUtil.prepareUserRepository(userRepository);
     }
 
     /**
      * Filters HTTP requests by validating JWT tokens and setting the authentication context.
      * <p>
-     * If the token is valid, it retrieves the associated user from the repository and sets
-     * the user as the authenticated principal in the security context.
+     * Only the stages required by the {@link AuthenticationLevel} of the matched route run: the token is always
+     * verified, the token store is skipped on {@link AuthenticationLevel#SIGNATURE} routes, and below
+     * {@link AuthenticationLevel#FULL} the principal is built from the claims of the token. Otherwise, it retrieves
+     * the associated user from the {@link PrincipalCache}, or from the repository on a cache miss, and sets the user
+     * as the authenticated principal in the security context. Requests that miss the cache for the same subject at
+     * the same time wait for a single repository query.
      * <p>
-     * If the token is missing or invalid, the filter sends an appropriate error response with the status:
+     * If the token is missing or invalid, the filter writes an error response with the {@link ErrorResponseWriter}
+     * and stops the chain, so the request reaches neither the next filters nor the container error page:
      * <ul>
-     *     <li>401 Unauthorized if the token is missing or invalid.</li>
+     *     <li>401 Unauthorized if the token is missing.</li>
      *     <li>403 Forbidden if the user cannot be found or the token is invalid.</li>
      * </ul>
      *
@@ -99,55 +125,119 @@ public class SecurityFilter extends OncePerRequestFilter {
      * @throws IOException if an I/O error occurs during the filter process.
      */
     @Override
-    @SuppressWarnings("unchecked")
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         try {
-            if (AdvancedFilterChecker.isAdvancedFiltered()) {
+            if (advancedFilterChecker.isAdvancedFiltered()) {
                 var authorization = this.recoverToken(request);
                 if (authorization == null || authorization.isEmpty()) {
-                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token is missing");
+                    ErrorResponseWriter.TOKEN_MISSING.write(response);
                     return;
                 }
 
-                var tokenValidation = jwtService.validateToken(authorization);
+                var level = authenticationLevel(advancedFilterChecker.getRoutes().match(request));
+                var tokenValidation = level == AuthenticationLevel.SIGNATURE
+                        ? jwtService.verifyToken(authorization)
+                        : jwtService.validateToken(authorization);
                 var tokenOptional = tokenValidation.tokenOptional();
                 if (tokenOptional.isPresent() && tokenValidation.isValid()) {
                     var token = tokenOptional.get();
-                    Optional<Object> userEntityOptional = (Optional<Object>) securityUtil.findUserByUsername(userRepository, token.subject());
-                    if (userEntityOptional.isEmpty()) {
-                        response.sendError(HttpServletResponse.SC_FORBIDDEN, "User not found");
-                        return;
+                    if (level == AuthenticationLevel.FULL || !authenticateFromClaims(token)) {
+                        var principal = principalCache.get(token.subject());
+                        if (principal == null) {
+                            if (principalCache.isUnknown(token.subject())) {
+                                ErrorResponseWriter.USER_NOT_FOUND.write(response);
+                                return;
+                            }
+                            principal = userLookups.execute(token.subject(), () -> loadPrincipal(token.subject()));
+                            if (principal == null) {
+                                ErrorResponseWriter.USER_NOT_FOUND.write(response);
+                                return;
+                            }
+                        }
+                        var authentication = new RoleMaskAuthenticationToken(securityUtil.copyUser(principal.user()), principal.authorities(), principal.roleMask());
+                        SecurityContextHolder.getContext().setAuthentication(authentication);
                     }
-
-                    Object userEntity = userEntityOptional.get();
-                    var authorities = securityUtil.getUserAuthorities(userEntity);
-                    var authentication = new UsernamePasswordAuthenticationToken(userEntity, null, authorities);
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
                 } else {
-                    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid token");
+                    ErrorResponseWriter.INVALID_TOKEN.write(response);
+                    return;
                 }
             }
         } catch (RuntimeException e) {
             logger.error("Exception in SecurityFilter: {}", e.getMessage(), e);
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Unexpected error");
+            ErrorResponseWriter.UNEXPECTED_ERROR.write(response);
+            return;
         }
         filterChain.doFilter(request, response);
     }
 
 
+    /**
+     * Loads the user of a subject from the repository and caches it with its authorities, or remembers the
+     * subject as unknown when it has no user.
+     *
+     * @param subject the subject of the token.
+     * @return the cached principal, or null if no user has this username.
+     */
+    @SuppressWarnings("unchecked")
+    private PrincipalCache.CachedPrincipal loadPrincipal(String subject) {
+        long stamp = principalCache.stamp();
+        Optional<Object> userEntityOptional = (Optional<Object>) securityUtil.findUserByUsername(userRepository, subject);
+        if (userEntityOptional.isEmpty()) {
+            principalCache.putUnknown(subject, stamp);
+            return null;
+        }
+
+        Object userEntity = userEntityOptional.get();
+        return principalCache.put(subject, userEntity, securityUtil.getUserAuthorities(userEntity),
+                securityUtil.getUserRoleMask(userEntity), stamp);
+    }
+
+    /**
+     * Resolves the authentication level of a route, falling back to the default level of the configuration
+     * when the route has none or no route matches.
+     *
+     * @param route the route matching the request, or null.
+     * @return the authentication level to apply.
+     */
+    private AuthenticationLevel authenticationLevel(RouteTrie.Route route) {
+        AuthenticationLevel level = route == null ? null : route.authority().getAuthenticationLevel();
+        if (level != null) return level;
+        return advancedFilterChecker.isClaimsAuthentication() ? AuthenticationLevel.REVOCATION_CHECKED : AuthenticationLevel.FULL;
+    }
+
+    /**
+     * Authenticates the request with a {@link ClaimsPrincipal} built from the verified claims of its token,
+     * without querying the repository. This is skipped when the token has no roles claim, e.g. because it was
+     * issued without the claims of {@link SecurityUtil#getTokenClaims(Object)}.
+     *
+     * @param token the validated token.
+     * @return {@code true} if the request was authenticated, {@code false} if the user must be loaded.
+     */
+    private boolean authenticateFromClaims(Token token) {
+        if (!(token.claims().get(ClaimsPrincipal.ROLES_CLAIM) instanceof List<?> roleClaim)) return false;
+
+        List<String> roles = new ArrayList<>(roleClaim.size());
+        for (Object role : roleClaim) roles.add(String.valueOf(role));
+        Map<String, Object> attributes = new HashMap<>(token.claims());
+        attributes.remove(ClaimsPrincipal.ROLES_CLAIM);
+        var principal = new ClaimsPrincipal(token.subject(), List.copyOf(roles), Map.copyOf(attributes));
+        var authentication = new RoleMaskAuthenticationToken(principal, securityUtil.getAuthorities(roles), securityUtil.getRoleMask(roles));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        return true;
+    }
+
     /**
      * Determines if this filter should be applied to the given HTTP request.
      * <p>
-     * This method checks if the request path is in the list of paths that should not be filtered.
+     * This method checks if the first route matching the request is public, see {@link RouteTrie}.
      *
      * @param request the HTTP request.
      * @return {@code true} if the request should not be filtered; {@code false} otherwise.
      */
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
-        String path = request.getServletPath();
-        if (AdvancedFilterChecker.isAdvancedFiltered()) {
-            return AdvancedFilterChecker.isInShoudNotFilterList(path);
+        if (advancedFilterChecker.isAdvancedFiltered()) {
+            return advancedFilterChecker.isInShoudNotFilterList(request);
         } else {
             return true;
         }
@@ -22,15 +22,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
+import tech.lastbox.lastshield.security.core.annotations.Password;
 import tech.lastbox.lastshield.security.core.annotations.UserHandler;
 import tech.lastbox.lastshield.security.core.annotations.Username;
+import tech.lastbox.lastshield.security.core.index.LastShieldIndex;
 
-import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.net.URL;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * Utility class for various security-related operations, such as retrieving user roles and authorities,
@@ -43,25 +45,72 @@ import java.util.stream.Collectors;
  *     <li>Retrieve user roles and convert them to granted authorities for Spring Security.</li>
  *     <li>Handle class loading and reflection for user repository discovery and user entity interaction.</li>
  * </ul>
+ * The annotated entities, fields and user handlers are resolved from the {@link LastShieldIndex} generated at
+ * compile time, or from a bytecode scan of the classpath when no index exists, so only the classes actually
+ * annotated are loaded.
+ * Reflection is only used to resolve members. The finder method of each repository class and the role and
+ * password fields of each entity class are compiled once into accessors by {@link MemberAccessors} and cached
+ * per class, so finding a user and reading its roles or password cost a direct call on every request.
  */
 @Component
 public class SecurityUtil {
     private final Logger logger = LoggerFactory.getLogger(SecurityUtil.class);
-    private final Set<String> usernameFields = new HashSet<>();
+    private final Set<String> usernameFields = new LinkedHashSet<>();
+    private final Set<String> principalClaims = new LinkedHashSet<>();
+    private final RoleRegistry roleRegistry;
+    private final AdvancedFilterChecker advancedFilterChecker;
+    private volatile LastShieldIndex index;
+    private final ClassValue<BiFunction<Object, String, Object>> finders = new ClassValue<>() {
+        @Override
+        protected BiFunction<Object, String, Object> computeValue(Class<?> type) {
+            return resolveFinder(type);
+        }
+    };
+    private final ClassValue<UserEntityAccessor> entityAccessors = new ClassValue<>() {
+        @Override
+        protected UserEntityAccessor computeValue(Class<?> type) {
+            return UserEntityAccessor.of(type, index().getPasswordField(type.getName()));
+        }
+    };
+    private final ClassValue<UnaryOperator<Object>> userCopiers = new ClassValue<>() {
+        @Override
+        protected UnaryOperator<Object> computeValue(Class<?> type) {
+            return MemberAccessors.copier(type);
+        }
+    };
+    private final ClassValue<Map<String, Function<Object, Object>>> claimAccessors = new ClassValue<>() {
+        @Override
+        protected Map<String, Function<Object, Object>> computeValue(Class<?> type) {
+            Map<String, Function<Object, Object>> accessors = new LinkedHashMap<>();
+            for (String claim : principalClaims) {
+                Field field = UserEntityAccessor.findField(type, claim);
+                if (field == null) {
+                    throw new IllegalStateException("The user entity " + type.getName() + " has no field '" + claim + "' for the principal claim.");
+                }
+                accessors.put(claim, MemberAccessors.getter(field));
+            }
+            return Map.copyOf(accessors);
+        }
+    };
 
     /**
-     * Default constructor for the SecurityUtil class.
-     * This constructor is used to instantiate the SecurityUtil utility class.
+     * Constructs the SecurityUtil utility class.
+     *
+     * @param roleRegistry the {@link RoleRegistry} providing the interned role authorities and the role masks.
+     * @param advancedFilterChecker the state of the advanced filter.
      */
-    public SecurityUtil() {
+    SecurityUtil(RoleRegistry roleRegistry, AdvancedFilterChecker advancedFilterChecker) {
+        this.roleRegistry = roleRegistry;
+        this.advancedFilterChecker = advancedFilterChecker;
     }
 
     /**
      * This method is executed after the bean has been initialized to retrieve and register all fields annotated
      * with {@link Username} from entities within the classpath.
      * <p>
-     * It scans all classes loaded by the current class loader, identifies those annotated with {@link Entity},
-     * and registers the field names that are annotated with {@link Username} for later use.
+     * It reads the {@link LastShieldIndex} of the current class loader, loads the classes annotated with {@link Entity}
+     * that declare fields annotated with {@link Username}, and registers those field names for later use. The role
+     * and password accessors of those entities are compiled at the same time.
      * <p>
      * If an error occurs during the process, an error message will be logged.
      * <p>
@@ -70,14 +119,11 @@ public class SecurityUtil {
     @PostConstruct
     public void getUsernameFields() {
         try {
-            List<Class<?>> allClasses = getAllClassesFromClassLoader(Thread.currentThread().getContextClassLoader());
-            for (Class<?> clazz : allClasses) {
-                if (clazz.isAnnotationPresent(Entity.class)) registerUsernameFields(clazz);
-            }
+            index().getUsernameFields().forEach((className, fields) -> registerUsernameFields(loadClass(className), fields));
         } catch (Exception e) {
             logger.error("Error during application startup: {}", e.getMessage(), e);
         }
-        if (AdvancedFilterChecker.isAdvancedFiltered() && usernameFields.isEmpty()) {
+        if (advancedFilterChecker.isAdvancedFiltered() && usernameFields.isEmpty()) {
             logger.error("There's no field with @Username annotation, so the authentication can't run properly. So consider to changing to no auth or creating a field with this annotation.");
             throw new RuntimeException("There's no field with @Username annotation, so the authentication can't run properly.");
         }
@@ -85,20 +131,56 @@ public class SecurityUtil {
 
     /**
      * Registers the field names of a class annotated with {@link Username} into the {@link #usernameFields} set.
-     * This method is called for each class annotated with {@link Entity} during the classpath scan.
-     * <p>
-     * The method inspects each field in the given class, checking if the field is annotated with {@link Username}.
-     * If it is, the field name is added to the {@link #usernameFields} set.
+     * This method is called for each class annotated with {@link Entity} listed in the index.
+     *
+     * @param clazz the entity class declaring the fields.
+     * @param fields the names of the fields annotated with {@link Username}.
+     */
+    private void registerUsernameFields(Class<?> clazz, Set<String> fields) {
+        usernameFields.addAll(fields);
+        entityAccessors.get(clazz);
+    }
+
+    /**
+     * Gets the annotation index of the current class loader, loading it on first use.
      *
-     * @param clazz the class to inspect for fields annotated with {@link Username}.
+     * @return the annotation index.
      */
-    private void registerUsernameFields(Class<?> clazz) {
-        Field[] fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            if (field.isAnnotationPresent(Username.class)) {
-                usernameFields.add(field.getName());
+    private LastShieldIndex index() {
+        LastShieldIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) index = LastShieldIndex.load(Thread.currentThread().getContextClassLoader());
+                current = index;
             }
         }
+        return current;
+    }
+
+    /**
+     * Loads a class listed in the index without initializing it.
+     *
+     * @param className the binary name of the class.
+     * @return the loaded class.
+     * @throws RuntimeException if the class is listed in the index but cannot be loaded.
+     */
+    private Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Class '" + className + "' is listed in " + LastShieldIndex.LOCATION + " but cannot be loaded.", e);
+        }
+    }
+
+    /**
+     * Resolves the finder accessor of a user repository ahead of the first request, so a repository without
+     * a matching {@code findUserBy} method is reported at startup.
+     *
+     * @param userRepository the user repository or service that will be searched.
+     * @throws RuntimeException if no {@code findUserBy} method matches a field annotated with {@link Username}.
+     */
+    public void prepareUserRepository(Object userRepository) {
+        if (userRepository != null) finders.get(userRepository.getClass());
     }
 
 
@@ -121,33 +203,21 @@ public class SecurityUtil {
 
     /**
      * Retrieves the class of the user repository annotated with {@link UserHandler}.
-     * This method performs classpath scanning to find classes annotated with {@link UserHandler} and returns
-     * the corresponding class for the user repository. The class is expected to have a method to retrieve
+     * This method looks up the classes annotated with {@link UserHandler} in the {@link LastShieldIndex} and returns
+     * the first one as the class of the user repository. The class is expected to have a method to retrieve
      * users by their username.
      * <p>
-     * If advanced filtering is enabled (via {@link AdvancedFilterChecker}), it will scan the classpath for
-     * the appropriate class and return it. If no such class is found, it throws an exception.
+     * If advanced filtering is enabled (via {@link AdvancedFilterChecker}), it will load the appropriate class and
+     * return it. If no such class is found, it throws an exception.
      *
      * @return the user repository class annotated with {@link UserHandler}.
      * @throws RuntimeException if no user handler class is found or if an error occurs during class loading.
      */
     public Class<?> getUserRepositoryClass() {
-        if (AdvancedFilterChecker.isAdvancedFiltered()) {
-            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-
-            for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
-                for (Class<?> cls : getAllClassesFromClassLoader(cl)) {
-                    if (cls.isAnnotationPresent(UserHandler.class)) {
-                        try {
-                            return cls;
-                        } catch (Exception e) {
-                            throw new RuntimeException("Error instantiating UserService", e);
-                        }
-                    }
-                }
-            }
-
-            throw new RuntimeException("No UserHandler found");
+        if (advancedFilterChecker.isAdvancedFiltered()) {
+            List<String> userHandlers = index().getUserHandlers();
+            if (userHandlers.isEmpty()) throw new RuntimeException("No UserHandler found");
+            return loadClass(userHandlers.get(0));
         } else {
             return null;
         }
@@ -165,10 +235,107 @@ public class SecurityUtil {
         return convertRolesToAuthorities(getUserRoles(user));
     }
 
+    /**
+     * Converts role names, such as the roles claim of a token, into {@link GrantedAuthority} objects.
+     *
+     * @param roles the role names.
+     * @return the interned authorities of the roles.
+     */
+    List<GrantedAuthority> getAuthorities(List<String> roles) {
+        return convertRolesToAuthorities(roles);
+    }
+
+    /**
+     * Computes the role mask of role names, such as the roles claim of a token.
+     *
+     * @param roles the role names.
+     * @return the role mask of the roles.
+     */
+    long getRoleMask(List<String> roles) {
+        return roleRegistry.maskOf(roles);
+    }
+
+    /**
+     * Adds a field of the user entity to the claims of the tokens issued in claims authentication mode.
+     * Principal claims must be added before the first token is issued.
+     *
+     * @param field the name of the field, which is also the name of the claim.
+     */
+    public void addPrincipalClaim(String field) {
+        principalClaims.add(field);
+    }
+
+    /**
+     * Builds the custom claims of a token issued for a user, to be passed to
+     * {@link tech.lastbox.jwt.JwtService#generateToken(String, String, Map)}.
+     * <p>
+     * When claims authentication is enabled, the claims hold the roles of the user under
+     * {@link ClaimsPrincipal#ROLES_CLAIM} and the value of every principal claim field. Strings, booleans and
+     * numbers are kept as they are, other values are converted to strings, and null values are omitted.
+     * Otherwise, there are no claims and the user is loaded on every request as usual.
+     *
+     * @param user the user entity the token is issued for.
+     * @return the custom claims of the token, empty when claims authentication is disabled.
+     */
+    public Map<String, Object> getTokenClaims(Object user) {
+        if (!advancedFilterChecker.isClaimsAuthentication()) return Map.of();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put(ClaimsPrincipal.ROLES_CLAIM, List.copyOf(getUserRoles(user)));
+        claimAccessors.get(user.getClass()).forEach((claim, accessor) -> {
+            Object value = accessor.apply(user);
+            if (value != null) claims.put(claim, toClaimValue(value));
+        });
+        return claims;
+    }
+
+    private static Object toClaimValue(Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Double) {
+            return value;
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Computes the role mask of a user, the bits the {@link RoleRegistry} assigned to the user's roles.
+     * Roles that no route authority uses are ignored.
+     *
+     * @param user the user object from which roles will be extracted.
+     * @return the role mask of the user.
+     */
+    public long getUserRoleMask(Object user) {
+        return roleRegistry.maskOf(getUserRoles(user));
+    }
+
+    /**
+     * Copies a user entity, so a request can be handed its own principal while the original stays cached.
+     * The copier of each entity class is compiled once, see {@link MemberAccessors#copier(Class)}.
+     *
+     * @param user the user entity to copy.
+     * @return a detached copy of the user entity.
+     * @throws IllegalStateException if the user entity has no no-argument constructor.
+     */
+    public Object copyUser(Object user) {
+        return userCopiers.get(user.getClass()).apply(user);
+    }
+
+    /**
+     * Retrieves the password of a user from the field annotated with {@link Password}.
+     *
+     * @param user the user entity from which the password will be extracted.
+     * @return the password stored in the user entity.
+     * @throws IllegalStateException if the user entity has no field annotated with {@link Password}.
+     */
+    public String getUserPassword(Object user) {
+        Function<Object, Object> password = entityAccessors.get(user.getClass()).password();
+        if (password == null) throw new IllegalStateException("No field with @Password annotation found");
+        return (String) password.apply(user);
+    }
+
     /**
      * Finds a user by their username by invoking the "findUserByUsername" method on the provided user repository.
-     * The method uses reflection to dynamically invoke the appropriate method on the user repository to retrieve
-     * the user associated with the given username.
+     * The matching {@code findUserBy} method is resolved once per repository class and compiled into an accessor,
+     * so this is a direct call on the repository.
      *
      * @param userService the user repository or service to search for the user.
      * @param username the username of the user to search for.
@@ -176,101 +343,52 @@ public class SecurityUtil {
      * @throws RuntimeException if the "findUserByUsername" method is not found or if an error occurs during invocation.
      */
     public Object findUserByUsername(Object userService,  String username) {
+        BiFunction<Object, String, Object> finder = finders.get(userService.getClass());
         try {
-            for (String field : usernameFields) {
-                try {
-                    String fieldToSearch = String.format("findUserBy%s", capitalizeFirstLetter(field));
-                    Method method = userService.getClass().getDeclaredMethod(fieldToSearch, String.class);
-                    method.setAccessible(true);
-                    return method.invoke(userService, username);
-                } catch (Exception ignored) {}
-            }
-            throw new NoSuchMethodException();
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException("The method 'findUserBy' was not found in the provided class for any username fields.", e);
-        } catch (Exception e) {
+            return finder.apply(userService, username);
+        } catch (RuntimeException e) {
             throw new RuntimeException("Error invoking 'findUserBy' on the provided class.", e);
         }
     }
 
     /**
-     * Retrieves all classes loaded by a specific class loader. This method scans the resources available
-     * in the given class loader and attempts to find all the class files.
+     * Resolves the {@code findUserBy<Field>(String)} method of a repository class for the first field annotated
+     * with {@link Username} that has one. Interfaces are searched first, so the methods of repository proxies
+     * are resolved on the repository interface they implement.
      *
-     * @param classLoader the class loader to scan for classes.
-     * @return a list of {@link Class} objects found in the class loader.
+     * @param type the repository class.
+     * @return the compiled finder accessor.
+     * @throws RuntimeException if no matching method exists.
      */
-    private List<Class<?>> getAllClassesFromClassLoader(ClassLoader classLoader) {
-        List<Class<?>> classes = new ArrayList<>();
-        try {
-            Enumeration<URL> resources = classLoader.getResources("");
-            while (resources.hasMoreElements()) {
-                URL resource = resources.nextElement();
-                if (resource.getProtocol().equals("file")) {
-                    classes.addAll(findClassesInDirectory(new File(resource.toURI()), ""));
-                }
+    private BiFunction<Object, String, Object> resolveFinder(Class<?> type) {
+        for (String field : usernameFields) {
+            Method method = findFinderMethod(type, String.format("findUserBy%s", capitalizeFirstLetter(field)));
+            if (method != null) {
+                logger.debug("Resolved user finder {} for {}", method, type.getName());
+                return MemberAccessors.finder(method);
             }
-        } catch (Exception e) {
-            logger.error("Error: {}", e, e);
         }
-        return classes;
+        throw new RuntimeException("The method 'findUserBy' was not found in the provided class for any username fields.");
     }
 
-    /**
-     * Recursively searches a directory for class files and adds them to the class list.
-     * This method is used to find all classes in the classpath.
-     *
-     * @param directory the directory to search for classes.
-     * @param packageName the base package name used to form class names.
-     * @return a list of {@link Class} objects found in the directory.
-     */
-    private List<Class<?>> findClassesInDirectory(File directory, String packageName) {
-        List<Class<?>> classes = new ArrayList<>();
-        if (!directory.exists()) {
-            return classes;
-        }
-
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    classes.addAll(findClassesInDirectory(file, packageName + file.getName() + "."));
-                } else if (file.getName().endsWith(".class")) {
-                    String className = packageName + file.getName().substring(0, file.getName().length() - 6);
-                    try {
-                        classes.add(Class.forName(className));
-                    } catch (ClassNotFoundException e) {
-                        logger.error("Error: {}", e, e);
-                    }
+    private Method findFinderMethod(Class<?> type, String name) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Class<?> contract : current.getInterfaces()) {
+                try {
+                    return contract.getMethod(name, String.class);
+                } catch (NoSuchMethodException ignored) {
+                    // not declared by this interface
                 }
             }
         }
-        return classes;
-    }
-
-    /**
-     * Retrieves the value of a field using reflection. This method is used to access private fields in user objects,
-     * such as "roles" or "role", and return their value.
-     *
-     * @param object the object from which the field value will be extracted.
-     * @param fieldName the name of the field to retrieve.
-     * @param <T> the expected type of the field value.
-     * @return the value of the specified field.
-     * @throws RuntimeException if the field is not found or cannot be accessed.
-     */
-    @SuppressWarnings("unchecked")
-    private  <T> T getFieldValue(Object object, String fieldName) {
-        try {
-            Field field = object.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            Object value = field.get(object);
-            return (T) field.get(object);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException("Error accessing the field '" + fieldName + "' in "
-                    + object.getClass().getName(), e);
-        } catch (ClassCastException e) {
-            throw new RuntimeException("The field '" + fieldName + "' is not of the expected type.", e);
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredMethod(name, String.class);
+            } catch (NoSuchMethodException ignored) {
+                // not declared by this class
+            }
         }
+        return null;
     }
 
     /**
@@ -282,35 +400,71 @@ public class SecurityUtil {
      * @return a list of role names associated with the user.
      * @throws RuntimeException if neither "roles" nor "role" fields can be found.
      */
+    @SuppressWarnings("unchecked")
     private List<String> getUserRoles(Object user) {
+        UserEntityAccessor accessor = entityAccessors.get(user.getClass());
+        if (accessor.roles() == null) {
+            throw new RuntimeException("Failed to retrieve roles or role field");
+        }
+        Object roles = accessor.roles().apply(user);
         try {
-            return getFieldValue(user, "roles");
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof NoSuchFieldException) {
+            return accessor.multipleRoles() ? (List<String>) roles : List.of((String) roles);
+        } catch (ClassCastException e) {
+            throw new RuntimeException("The field '" + (accessor.multipleRoles() ? "roles" : "role") + "' is not of the expected type.", e);
+        }
+    }
+
+    /**
+     * Compiled accessors of a user entity class.
+     *
+     * @param roles         reads the "roles" field, or the "role" field when there is none; null if neither exists.
+     * @param multipleRoles whether {@code roles} reads the "roles" list rather than the single "role".
+     * @param password      reads the field annotated with {@link Password}; null if there is none.
+     */
+    private record UserEntityAccessor(Function<Object, Object> roles, boolean multipleRoles, Function<Object, Object> password) {
+
+        static UserEntityAccessor of(Class<?> type, String indexedPasswordField) {
+            Field rolesField = findField(type, "roles");
+            Field roleField = rolesField == null ? findField(type, "role") : null;
+            Field passwordField = indexedPasswordField == null ? null : findField(type, indexedPasswordField);
+            for (Class<?> current = type; current != null && passwordField == null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Password.class)) {
+                        passwordField = field;
+                        break;
+                    }
+                }
+            }
+            Field role = rolesField != null ? rolesField : roleField;
+            return new UserEntityAccessor(role == null ? null : MemberAccessors.getter(role), rolesField != null,
+                    passwordField == null ? null : MemberAccessors.getter(passwordField));
+        }
+
+        private static Field findField(Class<?> type, String name) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
                 try {
-                    String singleRole = getFieldValue(user, "role");
-                    return List.of(singleRole);
-                } catch (RuntimeException ex) {
-                    throw new RuntimeException("Failed to retrieve roles or role field", ex);
+                    return current.getDeclaredField(name);
+                } catch (NoSuchFieldException ignored) {
+                    // not declared by this class
                 }
-            } else {
-                throw e;
             }
+            return null;
         }
     }
 
     /**
      * Converts a list of role names into a list of {@link GrantedAuthority} objects.
      * This is used to convert roles (e.g., "ADMIN", "USER") into {@link SimpleGrantedAuthority} objects
-     * that Spring Security understands.
+     * that Spring Security understands. The authorities are interned by the {@link RoleRegistry}, so every
+     * user holding a role shares the same instance.
      *
      * @param roles a list of role names.
      * @return a list of {@link GrantedAuthority} objects corresponding to the roles.
      */
     private List<GrantedAuthority> convertRolesToAuthorities(List<String> roles) {
-        return roles.stream()
-                .map(role -> new SimpleGrantedAuthority(treatRole(role)))
-                .collect(Collectors.toList());
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) authorities.add(roleRegistry.authority(treatRole(role)));
+        return authorities;
     }
 
     /**
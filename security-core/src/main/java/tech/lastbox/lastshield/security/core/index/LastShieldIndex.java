@@ -0,0 +1,311 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.core.NativeDetector;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Index of the classes and fields carrying the LastShield annotations: the {@code @Username} fields of
+ * {@code @Entity} classes, the {@code @Password} fields and the {@code @UserHandler} types.
+ * <p>
+ * The index is written at compile time by {@link LastShieldIndexProcessor} into {@value #LOCATION} of every module
+ * using the annotations, and the files of all modules are merged on startup. When no index file is found, or when
+ * the {@value #IGNORE_PROPERTY} system property is {@code true}, the classpath is scanned instead: class files are
+ * read as bytecode metadata, in directories and jars alike, and no class is loaded or initialized by the scan.
+ * <p>
+ * Like other build-time indexes, it is all or nothing: once an index file is present, modules compiled without
+ * the processor are not scanned. A native image has no class files to scan, so it relies on the index only.
+ */
+public final class LastShieldIndex {
+    /** Location of the index files on the classpath. */
+    public static final String LOCATION = "META-INF/lastshield/index";
+    /** System property forcing a classpath scan even when index files exist. */
+    public static final String IGNORE_PROPERTY = "lastshield.index.ignore";
+
+    static final String USERNAME = "username";
+    static final String PASSWORD = "password";
+    static final String USER_HANDLER = "user-handler";
+
+    private static final Logger logger = LoggerFactory.getLogger(LastShieldIndex.class);
+    private static final String ENTITY_DESCRIPTOR = "Ljakarta/persistence/Entity;";
+    private static final String ANNOTATIONS_PACKAGE = "tech/lastbox/lastshield/security/core/annotations/";
+    private static final String USERNAME_DESCRIPTOR = "L" + ANNOTATIONS_PACKAGE + "Username;";
+    private static final String PASSWORD_DESCRIPTOR = "L" + ANNOTATIONS_PACKAGE + "Password;";
+    private static final String USER_HANDLER_DESCRIPTOR = "L" + ANNOTATIONS_PACKAGE + "UserHandler;";
+    private static final byte[] ANNOTATIONS_PACKAGE_BYTES = ANNOTATIONS_PACKAGE.getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Set<String>> usernameFields = new LinkedHashMap<>();
+    private final Map<String, String> passwordFields = new LinkedHashMap<>();
+    private final Set<String> userHandlers = new LinkedHashSet<>();
+
+    private LastShieldIndex() {
+    }
+
+    /**
+     * Loads the index visible to a class loader, merging every index file, or scanning the classpath when
+     * there is none. The time spent is logged.
+     *
+     * @param classLoader the class loader of the application.
+     * @return the loaded index.
+     */
+    public static LastShieldIndex load(ClassLoader classLoader) {
+        long start = System.nanoTime();
+        try {
+            Enumeration<URL> files = Boolean.getBoolean(IGNORE_PROPERTY) ? Collections.emptyEnumeration() : classLoader.getResources(LOCATION);
+            if (files.hasMoreElements()) {
+                LastShieldIndex index = new LastShieldIndex();
+                int count = 0;
+                while (files.hasMoreElements()) {
+                    index.read(files.nextElement());
+                    count++;
+                }
+                logger.info("LastShield annotations resolved from {} index files in {} ms.", count, elapsedMillis(start));
+                return index;
+            }
+            LastShieldIndex index = new LastShieldIndex();
+            if (NativeDetector.inNativeImage()) {
+                logger.warn("No {} found in the native image; compile the modules using the LastShield annotations with its annotation processor.", LOCATION);
+                return index;
+            }
+            int scanned = index.scan(classLoader);
+            logger.info("No {} found, LastShield annotations resolved by scanning {} class files in {} ms.",
+                    LOCATION, scanned, elapsedMillis(start));
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not resolve the LastShield annotations.", e);
+        }
+    }
+
+    /**
+     * Gets the fields annotated with {@code @Username}, by entity class name.
+     *
+     * @return the username fields of every entity class.
+     */
+    public Map<String, Set<String>> getUsernameFields() {
+        return Collections.unmodifiableMap(usernameFields);
+    }
+
+    /**
+     * Gets the name of the field annotated with {@code @Password} in a class.
+     *
+     * @param className the binary name of the class.
+     * @return the field name, or null if the class has none.
+     */
+    public String getPasswordField(String className) {
+        return passwordFields.get(className);
+    }
+
+    /**
+     * Gets the fields annotated with {@code @Password}, by class name.
+     *
+     * @return the password field of every class declaring one.
+     */
+    public Map<String, String> getPasswordFields() {
+        return Collections.unmodifiableMap(passwordFields);
+    }
+
+    /**
+     * Gets the names of the types annotated with {@code @UserHandler}.
+     *
+     * @return the user handler class names, in discovery order.
+     */
+    public List<String> getUserHandlers() {
+        return new ArrayList<>(userHandlers);
+    }
+
+    private void read(URL file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(" ");
+                switch (parts[0]) {
+                    case USERNAME -> addUsernameField(parts[1], parts[2]);
+                    case PASSWORD -> passwordFields.putIfAbsent(parts[1], parts[2]);
+                    case USER_HANDLER -> userHandlers.add(parts[1]);
+                    default -> logger.warn("Ignoring unknown entry '{}' in {}.", line, file);
+                }
+            }
+        }
+    }
+
+    private void addUsernameField(String className, String field) {
+        usernameFields.computeIfAbsent(className, key -> new LinkedHashSet<>()).add(field);
+    }
+
+    /**
+     * Scans every class file of the classpath roots. Directories and plain jar files are read directly; other
+     * roots, such as the nested jars of an executable archive, go through Spring's resource resolution.
+     *
+     * @return the number of class files read.
+     */
+    private int scan(ClassLoader classLoader) throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        int scanned = 0;
+        for (Resource root : resolver.getResources("classpath*:")) {
+            URL url = root.getURL();
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    scanned += scanDirectory(Path.of(url.toURI()));
+                } else if ("jar".equals(url.getProtocol()) && url.getPath().startsWith("file:") && url.getPath().endsWith("!/")) {
+                    String path = url.getPath();
+                    scanned += scanJar(Path.of(new URI(path.substring(0, path.length() - 2))));
+                } else {
+                    for (Resource resource : resolver.getResources(url + "**/*.class")) {
+                        try (InputStream input = resource.getInputStream()) {
+                            index(input.readAllBytes(), resource.getDescription());
+                            scanned++;
+                        }
+                    }
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                logger.debug("Could not scan {}: {}", url, e.getMessage());
+            }
+        }
+        return scanned;
+    }
+
+    private int scanDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return 0;
+        int scanned = 0;
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.toString().endsWith(".class")) continue;
+                index(Files.readAllBytes(file), file.toString());
+                scanned++;
+            }
+        }
+        return scanned;
+    }
+
+    private int scanJar(Path file) throws IOException {
+        int scanned = 0;
+        try (JarFile jar = new JarFile(file.toFile())) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/")) continue;
+                try (InputStream input = jar.getInputStream(entry)) {
+                    index(input.readAllBytes(), entry.getName());
+                }
+                scanned++;
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Indexes one class file. Files that do not reference the LastShield annotations package are skipped without
+     * being parsed; the others are parsed without their code.
+     */
+    private void index(byte[] bytes, String source) {
+        if (!contains(bytes, ANNOTATIONS_PACKAGE_BYTES)) return;
+        try {
+            new ClassReader(bytes).accept(new IndexingVisitor(), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            logger.debug("Could not parse {}: {}", source, e.getMessage());
+        }
+    }
+
+    private static boolean contains(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0, last = bytes.length - pattern.length; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Records the annotations of one class file into the index.
+     */
+    private final class IndexingVisitor extends ClassVisitor {
+        private final List<String> usernames = new ArrayList<>();
+        private String className;
+        private boolean entity;
+
+        IndexingVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = name.replace('/', '.');
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (ENTITY_DESCRIPTOR.equals(descriptor)) entity = true;
+            else if (USER_HANDLER_DESCRIPTOR.equals(descriptor)) userHandlers.add(className);
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return new FieldVisitor(Opcodes.ASM9) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    if (USERNAME_DESCRIPTOR.equals(annotationDescriptor)) usernames.add(name);
+                    else if (PASSWORD_DESCRIPTOR.equals(annotationDescriptor)) passwordFields.putIfAbsent(className, name);
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            if (entity) usernames.forEach(field -> addUsernameField(className, field));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tech.lastbox.lastshield.security.core.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writing the {@link LastShieldIndex} of a module at compile time.
+ * <p>
+ * It records the fields annotated with {@code @Username} in classes annotated with {@code @Entity}, the fields
+ * annotated with {@code @Password} and the types annotated with {@code @UserHandler}, so the application does not
+ * have to scan the classpath for them on startup. The processor is registered as a service of security-core and
+ * is picked up by {@code javac} from the compile classpath; on JDK 23 and later, where implicit processing is
+ * disabled, the consuming module has to compile with {@code -proc:full}.
+ * <p>
+ * On incremental compilations the entries of the previous index are kept for every type that is not being
+ * recompiled.
+ */
+@SupportedAnnotationTypes({
+        LastShieldIndexProcessor.USERNAME,
+        LastShieldIndexProcessor.PASSWORD,
+        LastShieldIndexProcessor.USER_HANDLER
+})
+public class LastShieldIndexProcessor extends AbstractProcessor {
+    static final String USERNAME = "tech.lastbox.lastshield.security.core.annotations.Username";
+    static final String PASSWORD = "tech.lastbox.lastshield.security.core.annotations.Password";
+    static final String USER_HANDLER = "tech.lastbox.lastshield.security.core.annotations.UserHandler";
+    private static final String ENTITY = "jakarta.persistence.Entity";
+
+    private final Set<String> entries = new TreeSet<>();
+    private final Set<String> compiledTypes = new HashSet<>();
+
+    /**
+     * Default constructor, used by {@code javac} through the service loader.
+     */
+    public LastShieldIndexProcessor() {
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) collectTypes(root);
+        for (TypeElement annotation : annotations) {
+            String annotationName = annotation.getQualifiedName().toString();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                switch (annotationName) {
+                    case USERNAME -> {
+                        TypeElement owner = (TypeElement) element.getEnclosingElement();
+                        if (element.getKind() == ElementKind.FIELD && isAnnotated(owner, ENTITY)) {
+                            entries.add(LastShieldIndex.USERNAME + " " + binaryName(owner) + " " + element.getSimpleName());
+                        }
+                    }
+                    case PASSWORD -> {
+                        if (element.getKind() == ElementKind.FIELD) {
+                            entries.add(LastShieldIndex.PASSWORD + " " + binaryName((TypeElement) element.getEnclosingElement())
+                                    + " " + element.getSimpleName());
+                        }
+                    }
+                    case USER_HANDLER -> entries.add(LastShieldIndex.USER_HANDLER + " " + binaryName((TypeElement) element));
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (roundEnv.processingOver()) writeIndex();
+        return false;
+    }
+
+    private void collectTypes(Element element) {
+        if (element instanceof TypeElement type) {
+            compiledTypes.add(binaryName(type));
+            for (Element enclosed : type.getEnclosedElements()) collectTypes(enclosed);
+        }
+    }
+
+    /**
+     * Merges the entries of the previous index for the types not compiled this time, then writes the index.
+     * No file is written when there is nothing to index.
+     */
+    private void writeIndex() {
+        Filer filer = processingEnv.getFiler();
+        Set<String> merged = new TreeSet<>(entries);
+        try {
+            FileObject previous = filer.getResource(StandardLocation.CLASS_OUTPUT, "", LastShieldIndex.LOCATION);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(previous.openInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String[] parts = line.trim().split(" ");
+                    if (parts.length >= 2 && !line.startsWith("#") && !compiledTypes.contains(parts[1])) merged.add(line.trim());
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignored) {
+            // no previous index
+        }
+        if (merged.isEmpty()) return;
+
+        try {
+            FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", LastShieldIndex.LOCATION);
+            try (Writer writer = index.openWriter()) {
+                writer.write("# LastShield annotation index, generated by " + LastShieldIndexProcessor.class.getSimpleName() + "\n");
+                for (String entry : merged) writer.write(entry + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write " + LastShieldIndex.LOCATION + ", LastShield will scan the classpath on startup: " + e.getMessage());
+        }
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private static boolean isAnnotated(TypeElement type, String annotationName) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps a bounded cache of expiring entries under its maximum size.
+ * <p>
+ * Once the map exceeds its maximum size, a single thread drops the expired entries, then arbitrary ones, until
+ * the map is down to three quarters of the maximum. A full cache therefore pays one scan every quarter of its
+ * capacity of insertions instead of one per insertion, which keeps insertions into a cache flooded with distinct
+ * keys amortized constant time. Threads inserting while a trim is in progress do not wait for it, so the map may
+ * briefly exceed its maximum size by the number of concurrent writers.
+ *
+ * @param <V> the type of the cached values.
+ */
+public final class CacheTrimmer<V> {
+    private final ToLongFunction<? super V> expiresAt;
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    /**
+     * Constructs a trimmer for the values of a cache.
+     *
+     * @param expiresAt gives the {@link System#nanoTime()} after which a value is stale.
+     */
+    public CacheTrimmer(ToLongFunction<? super V> expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Trims the map if it exceeds its maximum size and no other thread is trimming it. Called after every insertion.
+     *
+     * @param map     the cache.
+     * @param maxSize the maximum number of entries of the cache.
+     */
+    public void trim(Map<?, ? extends V> map, int maxSize) {
+        if (map.size() <= maxSize || !trimming.compareAndSet(false, true)) return;
+        try {
+            int target = maxSize - maxSize / 4;
+            long now = System.nanoTime();
+            map.values().removeIf(value -> now - expiresAt.applyAsLong(value) >= 0);
+            Iterator<?> keys = map.keySet().iterator();
+            while (map.size() > target && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link InvalidationTransport} that delivers events synchronously to the listeners of the current JVM.
+ * <p>
+ * It is suited for single-node deployments and tests. Events never leave the JVM, so it must not be used
+ * when several nodes cache tokens or principals.
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Logger logger = LoggerFactory.getLogger(InMemoryInvalidationTransport.class);
+
+    /**
+     * Delivers the event to every registered listener on the calling thread.
+     * A failing listener does not prevent the others from being notified.
+     *
+     * @param event the event to publish.
+     */
+    @Override
+    public void publish(InvalidationEvent event) {
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(event);
+            } catch (RuntimeException e) {
+                logger.error("Invalidation listener failed for event {}", event.type(), e);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to register.
+     */
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Events never leave the JVM.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean isClusterWide() {
+        return false;
+    }
+}
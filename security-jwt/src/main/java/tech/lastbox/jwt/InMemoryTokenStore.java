@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link TokenStore} that keeps tokens on the heap, for services without a database and latency-sensitive nodes.
+ * <p>
+ * Tokens live in a {@link ConcurrentHashMap}, so lookups never block. Expiry is driven by a hierarchical timing
+ * wheel: five levels of 64 buckets, each level covering 64 times the span of the one below. Scheduling a token
+ * and expiring a bucket are O(1) per token, and every token is cascaded at most once per level on its way down,
+ * so expired tokens are evicted within one tick without scanning the map. The heap therefore stays
+ * proportional to the live tokens.
+ * <p>
+ * The wheel is advanced by a daemon thread once per tick and guarded by a lock that is only held to append to
+ * or drain a bucket. Tokens are lost when the JVM stops, so this store suits deployments where a restart may
+ * invalidate every session or where tokens are short-lived.
+ */
+public class InMemoryTokenStore implements TokenStore, AutoCloseable {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final ConcurrentHashMap<String, TokenEntity> tokens = new ConcurrentHashMap<>();
+    private final ArrayDeque<Timer>[][] wheel;
+    private final long tickMillis;
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final ScheduledExecutorService ticker;
+    private final Logger logger = LoggerFactory.getLogger(InMemoryTokenStore.class);
+    private long currentTick;
+
+    /**
+     * Constructs an in-memory token store that evicts expired tokens within one second.
+     */
+    public InMemoryTokenStore() {
+        this(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Constructs an in-memory token store with the given wheel resolution.
+     *
+     * @param tick the wheel resolution; expired tokens are evicted within one tick.
+     * @throws IllegalArgumentException if the tick is shorter than one millisecond.
+     */
+    @SuppressWarnings("unchecked")
+    public InMemoryTokenStore(Duration tick) {
+        if (tick == null || tick.toMillis() < 1) {
+            throw new IllegalArgumentException("Tick must be at least one millisecond.");
+        }
+        this.tickMillis = tick.toMillis();
+        this.wheel = new ArrayDeque[LEVELS][WHEEL_SIZE];
+        for (ArrayDeque<Timer>[] level : wheel) {
+            for (int i = 0; i < WHEEL_SIZE; i++) level[i] = new ArrayDeque<>();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lastshield-token-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves a token entity and schedules its eviction at expiry.
+     * Saving an entity that is already stored with the same expiry, e.g. to revoke it, does not reschedule it.
+     *
+     * @param tokenEntity the token entity to be saved.
+     * @return the saved token entity.
+     */
+    @Override
+    public TokenEntity save(TokenEntity tokenEntity) {
+        TokenEntity previous = tokens.put(tokenEntity.getToken(), tokenEntity);
+        if (previous == null || !Objects.equals(previous.getExpiresIn(), tokenEntity.getExpiresIn())) {
+            schedule(tokenEntity.getToken(), expiryTick(tokenEntity.getExpiresIn()));
+        }
+        return tokenEntity;
+    }
+
+    /**
+     * Finds a token entity by its token string.
+     *
+     * @param token the token string of the entity to be retrieved.
+     * @return an {@link Optional} containing the found token entity, or {@link Optional#empty()} if not found.
+     */
+    @Override
+    public Optional<TokenEntity> findById(String token) {
+        return Optional.ofNullable(tokens.get(token));
+    }
+
+    /**
+     * Gets the number of stored tokens, including expired tokens not evicted yet.
+     *
+     * @return the number of stored tokens.
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Stops the eviction thread and drops every stored token.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        tokens.clear();
+    }
+
+    private long expiryTick(Instant expiresIn) {
+        return expiresIn == null ? currentTickEstimate() : Math.floorDiv(expiresIn.toEpochMilli(), tickMillis) + 1;
+    }
+
+    private long currentTickEstimate() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Places a timer in the bucket matching its remaining delay: level {@code n} holds the timers due within
+     * {@code 64^(n+1)} ticks, indexed by the corresponding six bits of their expiry tick.
+     */
+    private void schedule(String token, long expiryTick) {
+        wheelLock.lock();
+        try {
+            place(new Timer(token, expiryTick));
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private void place(Timer timer) {
+        long delay = timer.expiryTick - currentTick;
+        if (delay <= 0) {
+            wheel[0][(int) ((currentTick + 1) & WHEEL_MASK)].add(timer);
+            return;
+        }
+        long placementTick = delay > MAX_DELAY_TICKS ? currentTick + MAX_DELAY_TICKS : timer.expiryTick;
+        int level = 0;
+        while (level < LEVELS - 1 && (placementTick - currentTick) >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        wheel[level][(int) ((placementTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(timer);
+    }
+
+    /**
+     * Advances the wheel up to the current time, expiring the level-0 bucket of every elapsed tick and
+     * cascading the higher-level buckets whose span starts at that tick. Cascading goes from the highest level
+     * down, so timers moved into a lower level land in buckets that have not been drained yet.
+     */
+    private void advance() {
+        long targetTick = currentTickEstimate();
+        long evicted = 0;
+        wheelLock.lock();
+        try {
+            while (currentTick < targetTick) {
+                currentTick++;
+                int topLevel = 0;
+                while (topLevel < LEVELS - 1 && (currentTick & ((1L << (WHEEL_BITS * (topLevel + 1))) - 1)) == 0) {
+                    topLevel++;
+                }
+                for (int level = topLevel; level > 0; level--) {
+                    ArrayDeque<Timer> bucket = wheel[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+                    for (Timer timer = bucket.poll(); timer != null; timer = bucket.poll()) place(timer);
+                }
+                ArrayDeque<Timer> due = wheel[0][(int) (currentTick & WHEEL_MASK)];
+                for (Timer timer = due.poll(); timer != null; timer = due.poll()) {
+                    if (timer.expiryTick > currentTick) {
+                        place(timer);
+                    } else if (evict(timer)) {
+                        evicted++;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Token wheel failed to advance.", e);
+        } finally {
+            wheelLock.unlock();
+        }
+        if (evicted > 0) logger.debug("Evicted {} expired tokens.", evicted);
+    }
+
+    /**
+     * Removes the token if it is still expired; a token saved again with a later expiry is kept, since the
+     * save scheduled a timer of its own.
+     */
+    private boolean evict(Timer timer) {
+        long now = System.currentTimeMillis();
+        boolean[] evicted = new boolean[1];
+        tokens.computeIfPresent(timer.token, (token, tokenEntity) -> {
+            evicted[0] = tokenEntity.getExpiresIn() == null || tokenEntity.getExpiresIn().toEpochMilli() <= now;
+            return evicted[0] ? null : tokenEntity;
+        });
+        return evicted[0];
+    }
+
+    /**
+     * Pending eviction of a token at the given tick.
+     */
+    private record Timer(String token, long expiryTick) {}
+}
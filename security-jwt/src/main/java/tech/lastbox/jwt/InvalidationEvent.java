@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import java.time.Instant;
+
+/**
+ * Represents a change that makes node-local token or principal state stale.
+ * <p>
+ * Events are published through an {@link InvalidationTransport} whenever a token is revoked or a principal
+ * is updated, so every node of a cluster can evict what it has cached for the affected key.
+ * <p>
+ * A revoked token is never carried in clear, since events may be stored by the transport while the token is
+ * still accepted by the nodes that have not received them. Its key is the 64-bit digest the revocation set and
+ * the rejected token cache are keyed by, followed by the expiry of the token.
+ *
+ * @param type       The kind of invalidation.
+ * @param key        The affected key: the digest and expiry of the token for {@link Type#TOKEN_REVOKED}, the
+ *                   subject (e.g., username) for {@link Type#PRINCIPAL_CHANGED}.
+ * @param occurredAt The moment the change happened.
+ */
+public record InvalidationEvent(Type type, String key, Instant occurredAt) {
+
+    /**
+     * Kinds of invalidation that can be broadcast.
+     */
+    public enum Type {
+        /** A single token has been revoked. */
+        TOKEN_REVOKED,
+        /** The principal (its roles, credentials or any other attribute) of a subject has changed. */
+        PRINCIPAL_CHANGED
+    }
+
+    /**
+     * Creates an event for a revoked token, keyed by the digest of the token.
+     *
+     * @param token     the revoked token.
+     * @param expiresAt the expiry of the token, until which the revocation must be remembered.
+     * @return the invalidation event.
+     */
+    public static InvalidationEvent tokenRevoked(String token, Instant expiresAt) {
+        String key = Long.toHexString(MappedRevocationSet.hash(token)) + ":" + expiresAt.getEpochSecond();
+        return new InvalidationEvent(Type.TOKEN_REVOKED, key, Instant.now());
+    }
+
+    /**
+     * Creates an event for a changed principal.
+     *
+     * @param subject the subject whose principal has changed.
+     * @return the invalidation event.
+     */
+    public static InvalidationEvent principalChanged(String subject) {
+        return new InvalidationEvent(Type.PRINCIPAL_CHANGED, subject, Instant.now());
+    }
+
+    /**
+     * Gets the digest of the token of a {@link Type#TOKEN_REVOKED} event.
+     *
+     * @return the digest of the revoked token.
+     * @throws NumberFormatException if the key is not a token digest.
+     */
+    long tokenDigest() {
+        return Long.parseUnsignedLong(key.substring(0, key.indexOf(':')), 16);
+    }
+
+    /**
+     * Gets the expiry of the token of a {@link Type#TOKEN_REVOKED} event.
+     *
+     * @return the expiry of the revoked token.
+     * @throws NumberFormatException if the key does not hold an expiry.
+     */
+    Instant tokenExpiresAt() {
+        return Instant.ofEpochSecond(Long.parseLong(key.substring(key.indexOf(':') + 1)));
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+/**
+ * Callback notified of every {@link InvalidationEvent} delivered by an {@link InvalidationTransport}.
+ * <p>
+ * Listeners are typically node-local caches that evict the affected key. They may be called from a
+ * transport thread and must therefore be thread-safe and return quickly.
+ */
+@FunctionalInterface
+public interface InvalidationListener {
+
+    /**
+     * Handles an invalidation event.
+     *
+     * @param event the event to handle.
+     */
+    void onInvalidation(InvalidationEvent event);
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+/**
+ * Service provider interface for broadcasting token revocations and principal changes across a cluster.
+ * <p>
+ * Events published on one node are delivered to the listeners of every node, including the publishing one,
+ * within a bounded delay defined by the implementation. This allows node-local caches to be long-lived while
+ * revocations still take effect cluster-wide.
+ * <p>
+ * Two implementations are provided: {@link InMemoryInvalidationTransport}, which only reaches the current JVM,
+ * and {@link JdbcInvalidationTransport}, which shares a change-log table that every node polls.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Publishes an event to every subscribed listener of the cluster.
+     *
+     * @param event the event to publish.
+     */
+    void publish(InvalidationEvent event);
+
+    /**
+     * Registers a listener that is notified of every event, whichever node published it.
+     *
+     * @param listener the listener to register.
+     */
+    void subscribe(InvalidationListener listener);
+
+    /**
+     * Tells whether published events reach the listeners of other processes, and not only those of the current JVM.
+     *
+     * @return true if events are delivered to every node of the cluster.
+     */
+    default boolean isClusterWide() {
+        return true;
+    }
+
+    /**
+     * Releases the resources of the transport. No event is delivered after this call.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvalidationTransport} backed by a change-log table shared by every node of a cluster.
+ * <p>
+ * Publishing appends a row to the {@value #TABLE} table and notifies the local listeners right away. Every
+ * node polls the table at a fixed interval and delivers the rows written by the other nodes, so an event
+ * reaches the whole cluster within roughly one poll interval. The table is created on startup when it does
+ * not exist, and rows older than the retention period are purged by the pollers.
+ * <p>
+ * Rows are read by their database timestamp with a lookback window, which tolerates inserts that become
+ * visible slightly out of order. Rows already delivered within the window are remembered and skipped.
+ * <p>
+ * An event published inside a Spring-managed transaction is held until that transaction commits and is
+ * dropped if it rolls back, so no node reloads the data it invalidates before the change is visible.
+ */
+public class JdbcInvalidationTransport implements InvalidationTransport {
+    /** Name of the change-log table. */
+    public static final String TABLE = "lastshield_invalidation_log";
+
+    private static final String INSERT = "INSERT INTO " + TABLE + " (event_type, event_key, occurred_at, origin) VALUES (?, ?, CURRENT_TIMESTAMP, ?)";
+    private static final String SELECT = "SELECT id, event_type, event_key, occurred_at, origin FROM " + TABLE + " WHERE occurred_at >= ? ORDER BY occurred_at, id";
+    private static final String PURGE = "DELETE FROM " + TABLE + " WHERE occurred_at < ?";
+    private static final Duration MINIMUM_LOOKBACK = Duration.ofSeconds(5);
+    private static final int POLLS_BETWEEN_PURGES = 100;
+
+    private final DataSource dataSource;
+    private final Duration lookback;
+    private final Duration retention;
+    private final String origin = UUID.randomUUID().toString();
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Long, Timestamp> deliveredIds = new HashMap<>();
+    private final ScheduledExecutorService poller;
+    private final Logger logger = LoggerFactory.getLogger(JdbcInvalidationTransport.class);
+    private Timestamp highWatermark;
+    private int pollsSincePurge;
+
+    /**
+     * Constructs a transport polling the change-log table every {@code pollInterval} and keeping
+     * rows for one day.
+     *
+     * @param dataSource   the data source shared by every node.
+     * @param pollInterval the delay between two polls, which bounds the propagation delay.
+     * @throws IllegalStateException if the change-log table cannot be created or read.
+     */
+    public JdbcInvalidationTransport(DataSource dataSource, Duration pollInterval) {
+        this(dataSource, pollInterval, Duration.ofDays(1));
+    }
+
+    /**
+     * Constructs a transport polling the change-log table every {@code pollInterval}.
+     *
+     * @param dataSource   the data source shared by every node.
+     * @param pollInterval the delay between two polls, which bounds the propagation delay.
+     * @param retention    how long rows are kept before being purged; must exceed the longest expected node pause.
+     * @throws IllegalStateException if the change-log table cannot be created or read.
+     */
+    public JdbcInvalidationTransport(DataSource dataSource, Duration pollInterval, Duration retention) {
+        if (pollInterval == null || pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval must be positive.");
+        }
+        this.dataSource = dataSource;
+        this.retention = retention;
+        Duration doubledInterval = pollInterval.multipliedBy(2);
+        this.lookback = doubledInterval.compareTo(MINIMUM_LOOKBACK) > 0 ? doubledInterval : MINIMUM_LOOKBACK;
+
+        try (Connection connection = dataSource.getConnection()) {
+            initializeSchema(connection);
+            this.highWatermark = currentHighWatermark(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not initialize the invalidation change-log table '" + TABLE + "'.", e);
+        }
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lastshield-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notifies the local listeners and appends the event to the change-log table for the other nodes.
+     * When called inside a transaction with synchronization active, both happen after it commits; the row
+     * is written on its own connection.
+     *
+     * @param event the event to publish.
+     */
+    @Override
+    public void publish(InvalidationEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishNow(event);
+                }
+            });
+        } else {
+            publishNow(event);
+        }
+    }
+
+    private void publishNow(InvalidationEvent event) {
+        deliver(event);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            statement.setString(1, event.type().name());
+            statement.setString(2, event.key());
+            statement.setString(3, origin);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Could not publish invalidation event {} to the change-log table.", event.type(), e);
+        }
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to register.
+     */
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops polling the change-log table.
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Reads the rows written since the last poll, minus the lookback window, and delivers the ones published
+     * by other nodes that have not been delivered yet. Failures are logged and retried on the next poll.
+     */
+    private void poll() {
+        try (Connection connection = dataSource.getConnection()) {
+            Timestamp windowStart = Timestamp.from(highWatermark.toInstant().minus(lookback));
+            try (PreparedStatement statement = connection.prepareStatement(SELECT)) {
+                statement.setTimestamp(1, windowStart);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        long id = resultSet.getLong(1);
+                        Timestamp occurredAt = resultSet.getTimestamp(4);
+                        if (occurredAt.after(highWatermark)) highWatermark = occurredAt;
+                        if (deliveredIds.putIfAbsent(id, occurredAt) != null || origin.equals(resultSet.getString(5))) {
+                            continue;
+                        }
+                        deliver(new InvalidationEvent(InvalidationEvent.Type.valueOf(resultSet.getString(2)),
+                                resultSet.getString(3), occurredAt.toInstant()));
+                    }
+                }
+            }
+            deliveredIds.values().removeIf(occurredAt -> occurredAt.before(windowStart));
+
+            if (++pollsSincePurge >= POLLS_BETWEEN_PURGES) {
+                pollsSincePurge = 0;
+                purge(connection);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Could not poll the invalidation change-log table: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(InvalidationEvent event) {
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(event);
+            } catch (RuntimeException e) {
+                logger.error("Invalidation listener failed for event {}", event.type(), e);
+            }
+        }
+    }
+
+    private void purge(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(PURGE)) {
+            statement.setTimestamp(1, Timestamp.from(Instant.now().minus(retention)));
+            int purged = statement.executeUpdate();
+            if (purged > 0) logger.debug("Purged {} rows from the invalidation change-log table.", purged);
+        }
+    }
+
+    /**
+     * Creates the change-log table and its timestamp index when the table does not exist yet.
+     */
+    private static void initializeSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : List.of(TABLE, TABLE.toUpperCase())) {
+            try (ResultSet tables = metaData.getTables(null, null, name, null)) {
+                if (tables.next()) return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "event_type VARCHAR(32) NOT NULL, "
+                    + "event_key VARCHAR(4096) NOT NULL, "
+                    + "occurred_at TIMESTAMP NOT NULL, "
+                    + "origin VARCHAR(36) NOT NULL)");
+            statement.execute("CREATE INDEX " + TABLE + "_occurred_at ON " + TABLE + " (occurred_at)");
+        }
+    }
+
+    /**
+     * Returns the timestamp of the most recent row, so a starting node does not replay the whole history.
+     */
+    private static Timestamp currentHighWatermark(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(occurred_at) FROM " + TABLE)) {
+            Timestamp latest = resultSet.next() ? resultSet.getTimestamp(1) : null;
+            return latest != null ? latest : new Timestamp(0);
+        }
+    }
+}
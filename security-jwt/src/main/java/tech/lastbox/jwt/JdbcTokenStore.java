@@ -0,0 +1,315 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static tech.lastbox.jwt.DateUtil.instantToLocalDateTime;
+
+/**
+ * {@link TokenStore} that talks to the database with plain prepared statements, without JPA or Hibernate.
+ * <p>
+ * Every token is a single flat row of the {@value #TABLE} table: timestamps are stored as epoch milliseconds
+ * and the scope as one newline-separated column, so a lookup is one primary-key query with no second query for
+ * the scope collection and no persistence context. Valid tokens are filtered in SQL and mapped straight to a
+ * {@link Token}, a revocation is a single {@code UPDATE}, and {@link #saveAll(Collection)} inserts tokens in JDBC
+ * batches. The table is created on startup when it does not exist.
+ * <p>
+ * Each call borrows its own connection from the data source and runs in auto-commit mode, outside of any
+ * ongoing transaction; the data source should therefore be pooled.
+ */
+public class JdbcTokenStore implements TokenStore {
+    /** Name of the token table. */
+    public static final String TABLE = "lastshield_jwt_tokens";
+
+    private static final String COLUMNS = "token, issued_at, expires_at, subject, issuer, scope, revoked";
+    private static final String INSERT = "INSERT INTO " + TABLE + " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE " + TABLE + " SET issued_at = ?, expires_at = ?, subject = ?, issuer = ?, scope = ?, revoked = ? WHERE token = ?";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE token = ?";
+    private static final String SELECT_VALID = "SELECT subject, issued_at, expires_at, issuer, scope FROM " + TABLE + " WHERE token = ? AND revoked = FALSE AND expires_at > ?";
+    private static final String REVOKE = "UPDATE " + TABLE + " SET revoked = TRUE WHERE token = ? AND revoked = FALSE";
+    private static final String SCOPE_SEPARATOR = "\n";
+    private static final int BATCH_SIZE = 500;
+
+    private final DataSource dataSource;
+    private final Logger logger = LoggerFactory.getLogger(JdbcTokenStore.class);
+
+    /**
+     * Constructs a token store on the given data source and creates the token table when it does not exist.
+     *
+     * @param dataSource the data source holding the token table.
+     * @throws IllegalStateException if the token table cannot be created or read.
+     */
+    public JdbcTokenStore(DataSource dataSource) {
+        this.dataSource = dataSource;
+        try (Connection connection = dataSource.getConnection()) {
+            initializeSchema(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not initialize the token table '" + TABLE + "'.", e);
+        }
+    }
+
+    /**
+     * Saves a token entity with a single {@code INSERT}, or an {@code UPDATE} when the token is already stored.
+     *
+     * @param tokenEntity the token entity to be saved.
+     * @return the saved token entity.
+     * @throws IllegalStateException if the database rejects the statement.
+     */
+    @Override
+    public TokenEntity save(TokenEntity tokenEntity) {
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                bindInsert(statement, tokenEntity);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (!isConstraintViolation(e)) throw e;
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+                    bindUpdate(statement, tokenEntity);
+                    statement.executeUpdate();
+                }
+            }
+            return tokenEntity;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not save token in '" + TABLE + "'.", e);
+        }
+    }
+
+    /**
+     * Inserts new token entities with JDBC batches of 500 rows, all in one transaction.
+     * The tokens must not be stored yet; use {@link #save(TokenEntity)} to update existing ones.
+     *
+     * @param tokenEntities the token entities to be inserted.
+     * @throws IllegalStateException if the database rejects the batch, in which case no token is inserted.
+     */
+    public void saveAll(Collection<TokenEntity> tokenEntities) {
+        if (tokenEntities.isEmpty()) return;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                int pending = 0;
+                for (TokenEntity tokenEntity : tokenEntities) {
+                    bindInsert(statement, tokenEntity);
+                    statement.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not insert " + tokenEntities.size() + " tokens in '" + TABLE + "'.", e);
+        }
+    }
+
+    /**
+     * Finds a token entity by its token string.
+     *
+     * @param token the token string of the entity to be retrieved.
+     * @return an {@link Optional} containing the found token entity, or {@link Optional#empty()} if not found.
+     * @throws IllegalStateException if the database rejects the query.
+     */
+    @Override
+    public Optional<TokenEntity> findById(String token) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            statement.setString(1, token);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? Optional.of(readEntity(resultSet)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read token from '" + TABLE + "'.", e);
+        }
+    }
+
+    /**
+     * Finds a valid token with a single query that filters out revoked and expired rows, and maps the row
+     * straight to a {@link Token}.
+     *
+     * @param token the token string to be retrieved.
+     * @return an {@link Optional} containing the valid token, or {@link Optional#empty()} if it is not stored or not valid.
+     * @throws IllegalStateException if the database rejects the query.
+     */
+    @Override
+    public Optional<Token> findValidToken(String token) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_VALID)) {
+            statement.setString(1, token);
+            statement.setLong(2, System.currentTimeMillis());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) return Optional.empty();
+                return Optional.of(new Token(token, resultSet.getString(1),
+                        instantToLocalDateTime(Instant.ofEpochMilli(resultSet.getLong(2))),
+                        instantToLocalDateTime(Instant.ofEpochMilli(resultSet.getLong(3))),
+                        resultSet.getString(4), decodeScope(resultSet.getString(5)), false));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read token from '" + TABLE + "'.", e);
+        }
+    }
+
+    /**
+     * Finds every token entity whose token string is in the given collection, with one {@code IN} query
+     * per 500 tokens.
+     *
+     * @param tokens the token strings of the entities to be retrieved.
+     * @return the found token entities, in no particular order.
+     * @throws IllegalStateException if the database rejects the query.
+     */
+    @Override
+    public List<TokenEntity> findAllById(Iterable<String> tokens) {
+        List<TokenEntity> tokenEntities = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(BATCH_SIZE);
+        try (Connection connection = dataSource.getConnection()) {
+            Iterator<String> iterator = tokens.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == BATCH_SIZE || !iterator.hasNext()) {
+                    findChunk(connection, chunk, tokenEntities);
+                    chunk.clear();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read tokens from '" + TABLE + "'.", e);
+        }
+        return tokenEntities;
+    }
+
+    /**
+     * Revokes a token with a single {@code UPDATE} that only matches rows not revoked yet.
+     *
+     * @param token the token string to be revoked.
+     * @return true if the token was revoked by this call, false if it is not stored or already revoked.
+     * @throws IllegalStateException if the database rejects the update.
+     */
+    @Override
+    public boolean revoke(String token) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(REVOKE)) {
+            statement.setString(1, token);
+            return statement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not revoke token in '" + TABLE + "'.", e);
+        }
+    }
+
+    private void findChunk(Connection connection, List<String> chunk, List<TokenEntity> tokenEntities) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE token IN (" + placeholders + ")")) {
+            for (int i = 0; i < chunk.size(); i++) statement.setString(i + 1, chunk.get(i));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) tokenEntities.add(readEntity(resultSet));
+            }
+        }
+    }
+
+    private static void bindInsert(PreparedStatement statement, TokenEntity tokenEntity) throws SQLException {
+        statement.setString(1, tokenEntity.getToken());
+        bindFields(statement, 2, tokenEntity);
+    }
+
+    private static void bindUpdate(PreparedStatement statement, TokenEntity tokenEntity) throws SQLException {
+        bindFields(statement, 1, tokenEntity);
+        statement.setString(7, tokenEntity.getToken());
+    }
+
+    /**
+     * Binds the six non-key columns, in table order, starting at the given parameter index.
+     */
+    private static void bindFields(PreparedStatement statement, int index, TokenEntity tokenEntity) throws SQLException {
+        if (tokenEntity.getIssuedAt() != null) {
+            statement.setLong(index, tokenEntity.getIssuedAt().toEpochMilli());
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+        statement.setLong(index + 1, tokenEntity.getExpiresIn() != null ? tokenEntity.getExpiresIn().toEpochMilli() : 0);
+        statement.setString(index + 2, tokenEntity.getSubject());
+        statement.setString(index + 3, tokenEntity.getIssuer());
+        statement.setString(index + 4, tokenEntity.getScope() != null ? String.join(SCOPE_SEPARATOR, tokenEntity.getScope()) : null);
+        statement.setBoolean(index + 5, tokenEntity.isRevoked());
+    }
+
+    private static TokenEntity readEntity(ResultSet resultSet) throws SQLException {
+        long issuedAt = resultSet.getLong(2);
+        Instant issuedAtInstant = resultSet.wasNull() ? null : Instant.ofEpochMilli(issuedAt);
+        TokenEntity tokenEntity = new TokenEntity(resultSet.getString(1), issuedAtInstant,
+                Instant.ofEpochMilli(resultSet.getLong(3)), resultSet.getString(4), resultSet.getString(5),
+                decodeScope(resultSet.getString(6)));
+        tokenEntity.setRevoked(resultSet.getBoolean(7));
+        return tokenEntity;
+    }
+
+    private static List<String> decodeScope(String scope) {
+        return scope == null || scope.isEmpty() ? new ArrayList<>() : new ArrayList<>(List.of(scope.split(SCOPE_SEPARATOR)));
+    }
+
+    /**
+     * Checks whether the exception reports an integrity constraint violation, SQL state class {@code 23}.
+     */
+    private static boolean isConstraintViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    /**
+     * Creates the token table when the table does not exist yet.
+     */
+    private void initializeSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : List.of(TABLE, TABLE.toUpperCase())) {
+            try (ResultSet tables = metaData.getTables(null, null, name, null)) {
+                if (tables.next()) return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "token VARCHAR(2048) PRIMARY KEY, "
+                    + "issued_at BIGINT, "
+                    + "expires_at BIGINT NOT NULL, "
+                    + "subject VARCHAR(255), "
+                    + "issuer VARCHAR(255), "
+                    + "scope VARCHAR(4096), "
+                    + "revoked BOOLEAN NOT NULL)");
+        }
+        logger.info("Created the token table '{}'.", TABLE);
+    }
+}
@@ -29,7 +29,7 @@ import com.auth0.jwt.algorithms.Algorithm;
 public enum JwtAlgorithm {
 
     /** HMAC256 algorithm for signing JWTs using a 256-bit key. */
-    HMAC256 {
+    HMAC256("HS256", "HmacSHA256") {
         @Override
         public Algorithm getAlgorithm(String secretKey) {
             return Algorithm.HMAC256(secretKey);
@@ -37,7 +37,7 @@ public enum JwtAlgorithm {
     },
 
     /** HMAC384 algorithm for signing JWTs using a 384-bit key. */
-    HMAC384 {
+    HMAC384("HS384", "HmacSHA384") {
         @Override
         public Algorithm getAlgorithm(String secretKey) {
             return Algorithm.HMAC384(secretKey);
@@ -45,13 +45,39 @@ public enum JwtAlgorithm {
     },
 
     /** HMAC512 algorithm for signing JWTs using a 512-bit key. */
-    HMAC512 {
+    HMAC512("HS512", "HmacSHA512") {
         @Override
         public Algorithm getAlgorithm(String secretKey) {
             return Algorithm.HMAC512(secretKey);
         }
     };
 
+    private final String headerName;
+    private final String macAlgorithm;
+
+    JwtAlgorithm(String headerName, String macAlgorithm) {
+        this.headerName = headerName;
+        this.macAlgorithm = macAlgorithm;
+    }
+
+    /**
+     * Gets the name of the algorithm in the {@code alg} header of the tokens it signs, e.g. {@code HS256}.
+     *
+     * @return the JWT algorithm name.
+     */
+    String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * Gets the standard JCA name of the MAC algorithm, e.g. {@code HmacSHA256}.
+     *
+     * @return the {@link javax.crypto.Mac} algorithm name.
+     */
+    String getMacAlgorithm() {
+        return macAlgorithm;
+    }
+
     /**
      * Abstract method that must be implemented by each constant to return the
      * corresponding {@link Algorithm} instance using the provided secret key.
@@ -16,15 +16,17 @@
 
 package tech.lastbox.jwt;
 
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Configuration class for JWT (JSON Web Token) settings.
  * <p>
  * This class provides the configurations required for JWT creation and validation.
  * It supports customization of algorithms, secret keys, issuers, expiration settings,
- * and an optional token store for persistence.
+ * an optional token store for persistence and an optional {@link InvalidationTransport} used to broadcast revocations.
  * The preset of trusted issuers contains: "Google", "GitHub", "Facebook", "Microsoft", "Twitter", "LinkedIn" and "Spotify"
  */
 public class JwtConfig {
@@ -34,6 +36,10 @@ public class JwtConfig {
     private final long expirationAmount;
     private final ExpirationTimeUnit expirationTimeUnit;
     private final TokenStore tokenStore;
+    private InvalidationTransport invalidationTransport;
+    private MappedRevocationSet revocationSet;
+    private Duration rejectedTokenTtl = RejectedTokenCache.DEFAULT_TTL;
+    private int rejectedTokenCacheSize = RejectedTokenCache.DEFAULT_MAX_SIZE;
     private final List<String> DEFAULT_ISSUERS = List.of("google", "github", "facebook", "microsoft", "twitter", "linkedin", "spotify");
 
     /**
@@ -167,7 +173,7 @@ public class JwtConfig {
      */
     private HashSet<String> generateTrustedIssuers(List<String> issuers) {
         HashSet<String> trustedIssuers = new HashSet<>(DEFAULT_ISSUERS);
-        trustedIssuers.addAll(issuers);
+        issuers.forEach(issuer -> trustedIssuers.add(issuer.toLowerCase(Locale.ROOT)));
         return trustedIssuers;
     }
 
@@ -180,7 +186,7 @@ public class JwtConfig {
      */
     private HashSet<String> generateTrustedIssuers(String issuer) {
         HashSet<String> trustedIssuers = new HashSet<>(DEFAULT_ISSUERS);
-        trustedIssuers.add(issuer);
+        trustedIssuers.add(issuer.toLowerCase(Locale.ROOT));
         return trustedIssuers;
     }
 
@@ -238,4 +244,85 @@ public class JwtConfig {
     public TokenStore getTokenStore() {
         return tokenStore;
     }
+
+    /**
+     * Sets the transport used to broadcast token revocations to every node of the cluster.
+     *
+     * @param invalidationTransport The invalidation transport, or null to disable broadcasting.
+     * @return The current JwtConfig instance for method chaining.
+     */
+    public JwtConfig setInvalidationTransport(InvalidationTransport invalidationTransport) {
+        this.invalidationTransport = invalidationTransport;
+        return this;
+    }
+
+    /**
+     * Gets the transport used to broadcast token revocations.
+     * If no transport is configured, this returns null.
+     *
+     * @return The invalidation transport, or null if not configured.
+     */
+    public InvalidationTransport getInvalidationTransport() {
+        return invalidationTransport;
+    }
+
+    /**
+     * Sets the memory-mapped revocation set shared by the processes of the host.
+     * When configured, revoked tokens are rejected with a single probe of the set, and tokens can be
+     * revoked even without a token store.
+     *
+     * @param revocationSet The revocation set, or null to disable it.
+     * @return The current JwtConfig instance for method chaining.
+     */
+    public JwtConfig setRevocationSet(MappedRevocationSet revocationSet) {
+        this.revocationSet = revocationSet;
+        return this;
+    }
+
+    /**
+     * Gets the memory-mapped revocation set.
+     * If no revocation set is configured, this returns null.
+     *
+     * @return The revocation set, or null if not configured.
+     */
+    public MappedRevocationSet getRevocationSet() {
+        return revocationSet;
+    }
+
+    /**
+     * Sets how long the rejection of a malformed, forged, expired or revoked token is remembered, so clients
+     * retrying with it are rejected without re-running the crypto or querying the token store.
+     * Defaults to 10 seconds and 10,000 tokens; a zero duration or size disables the cache.
+     *
+     * @param ttl     How long a rejection is remembered.
+     * @param maxSize The maximum number of remembered rejections.
+     * @return The current JwtConfig instance for method chaining.
+     * @throws IllegalArgumentException If the duration is null or negative, or the size is negative.
+     */
+    public JwtConfig setRejectedTokenCache(Duration ttl, int maxSize) {
+        if (ttl == null || ttl.isNegative() || maxSize < 0) {
+            throw new IllegalArgumentException("Rejected token cache time to live and size must not be negative.");
+        }
+        this.rejectedTokenTtl = ttl;
+        this.rejectedTokenCacheSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Gets how long the rejection of a token is remembered.
+     *
+     * @return The time to live of a rejection.
+     */
+    public Duration getRejectedTokenTtl() {
+        return rejectedTokenTtl;
+    }
+
+    /**
+     * Gets the maximum number of remembered token rejections.
+     *
+     * @return The size of the rejected token cache.
+     */
+    public int getRejectedTokenCacheSize() {
+        return rejectedTokenCacheSize;
+    }
 }
@@ -17,15 +17,27 @@
 package tech.lastbox.jwt;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.algorithms.Algorithm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static tech.lastbox.jwt.DateUtil.*;
 import static tech.lastbox.jwt.TokenUtil.*;
@@ -35,11 +47,18 @@ import static tech.lastbox.jwt.TokenUtil.*;
  * It generates JWTs, validates them, and can revoke existing tokens.
  */
 public class JwtService {
+    private static final List<String> DEFAULT_SCOPE = List.of("name, username");
+
     private final Algorithm algorithm;
     private final ExpirationTimeUnit expirationTimeUnit;
     private final HashSet<String> trustedIssuers;
     private final long expirationAmount;
     private final TokenStore tokenStore;
+    private final InvalidationTransport invalidationTransport;
+    private final MappedRevocationSet revocationSet;
+    private final HmacTokenVerifier verifier;
+    private final SingleFlight<String, Optional<Token>> tokenLookups = new SingleFlight<>();
+    private final RejectedTokenCache rejectedTokens;
     private final Logger logger = LoggerFactory.getLogger(JwtService.class);
 
     /**
@@ -53,6 +72,13 @@ public class JwtService {
         this.expirationTimeUnit = jwtConfig.getExpirationTimeUnit();
         this.expirationAmount = jwtConfig.getExpirationAmount();
         this.tokenStore = jwtConfig.getTokenStore();
+        this.invalidationTransport = jwtConfig.getInvalidationTransport();
+        this.revocationSet = jwtConfig.getRevocationSet();
+        this.verifier = new HmacTokenVerifier(jwtConfig.getJwtAlgorithm(), jwtConfig.getSecretKey(), trustedIssuers);
+        this.rejectedTokens = new RejectedTokenCache(jwtConfig.getRejectedTokenTtl(), jwtConfig.getRejectedTokenCacheSize());
+        if (revocationSet != null && invalidationTransport != null) {
+            invalidationTransport.subscribe(this::recordRemoteRevocation);
+        }
     }
 
     /**
@@ -69,35 +95,30 @@ public class JwtService {
      */
     @Transactional
     public Token generateToken(String subject, String issuer, List<String> scope) {
-        if (subject == null || subject.isEmpty()) {
-            throw new TokenCreationException("Subject must not be null or empty.");
-        }
+        return generateToken(subject, issuer, scope, Map.of());
+    }
 
+    /**
+     * Generates a JWT for the specified subject with a given issuer, scope and custom claims.
+     *
+     * <p>The custom claims are signed with the token and returned by {@link Token#claims()} when it is validated,
+     * for instance the roles and attributes of the principal, so it can be authenticated without loading it.
+     * Claim values may be strings, numbers, booleans, instants, lists and maps of these. The token is saved in
+     * the configured token store if available.
+     *
+     * @param subject the subject (e.g., user identifier) for whom the token is generated
+     * @param issuer the trusted issuer of the token
+     * @param scope the list of permissions or roles associated with the token
+     * @param claims the custom claims by name; the registered claims and "scope" are reserved
+     * @return a {@link Token} object containing the generated token and its metadata
+     * @throws TokenCreationException if the subject, issuer, scope or a claim is invalid
+     */
+    @Transactional
+    public Token generateToken(String subject, String issuer, List<String> scope, Map<String, ?> claims) {
         if (scope == null || scope.isEmpty()) {
-            throw new TokenCreationException("Scope must not be null or empty.");
+            throw TokenCreationException.EMPTY_SCOPE;
         }
-
-        if (!trustedIssuers.contains(issuer)) {
-            throw new TokenCreationException("Issuer must be in issuers trusted list.");
-        }
-
-        Instant now = Instant.now();
-        Instant expiresIn = DateUtil.getExpirationDate(now, expirationAmount, expirationTimeUnit);
-
-        String token = JWT.create()
-                .withSubject(subject)
-                .withExpiresAt(expiresIn)
-                .withIssuedAt(now)
-                .withIssuer(issuer)
-                .withClaim("scope", scope)
-                .sign(algorithm);
-
-        if (tokenStore != null) {
-            TokenEntity tokenEntity = new TokenEntity(token, now, expiresIn, subject, issuer, scope);
-            tokenStore.save(tokenEntity);
-        }
-        logger.info("Generating token with subject: {}", subject);
-        return new Token(token, subject, instantToLocalDateTime(now), instantToLocalDateTime(expiresIn), issuer, scope, false);
+        return issueToken(subject, issuer, scope, claims);
     }
 
     /**
@@ -113,20 +134,219 @@ public class JwtService {
      */
     @Transactional
     public Token generateToken(String subject, String issuer) {
+        return generateToken(subject, issuer, Map.of());
+    }
+
+    /**
+     * Generates a JWT for the specified subject with a given issuer and custom claims, without scope.
+     * See {@link #generateToken(String, String, List, Map)} for the custom claims.
+     *
+     * @param subject the subject (e.g., user identifier) for whom the token is generated
+     * @param issuer the trusted issuer of the token
+     * @param claims the custom claims by name; the registered claims and "scope" are reserved
+     * @return a {@link Token} object containing the generated token and its metadata
+     * @throws TokenCreationException if the subject, issuer or a claim is invalid
+     */
+    @Transactional
+    public Token generateToken(String subject, String issuer, Map<String, ?> claims) {
+        return issueToken(subject, issuer, DEFAULT_SCOPE, claims);
+    }
+
+    /**
+     * Revokes the specified token, marking it as invalid in the token store.
+     *
+     * <p>If the token does not exist in the store, or neither a store nor a revocation set is configured,
+     * an exception is thrown. Without a store, a valid token is revoked through the revocation set only: when
+     * another process writes the set, the revocation is forwarded to it by the invalidation transport, so it
+     * fails unless that transport is cluster-wide.
+     * When an {@link InvalidationTransport} is configured, the revocation is broadcast to every node.
+     *
+     * @param token the token to revoke
+     * @throws TokenRevocationException if the token cannot be revoked or is not found
+     */
+    @Transactional
+    public void revokeToken(String token) {
+        if (tokenStore == null && revocationSet != null) {
+            Token decodedToken = verifier.verify(token).tokenOptional()
+                    .orElseThrow(() -> TokenRevocationException.INVALID_TOKEN);
+            boolean written = revocationSet.add(token, decodedToken.expiresIn().toInstant(ZoneOffset.UTC));
+            if (!written && (invalidationTransport == null || !invalidationTransport.isClusterWide())) {
+                logger.error("Cannot revoke token: the revocation set is written by another process that is not notified.");
+                throw TokenRevocationException.REVOCATION_NOT_SHARED;
+            }
+            rejectedTokens.put(token, TokenValidationFailure.REVOKED);
+            logger.info("Token revoked successfully: {}", token);
+            if (invalidationTransport != null) {
+                invalidationTransport.publish(InvalidationEvent.tokenRevoked(token, decodedToken.expiresIn().toInstant(ZoneOffset.UTC)));
+            }
+        } else if (tokenStore != null) {
+            if (tokenStore.revoke(token)) {
+                logger.info("Token revoked successfully: {}", token);
+                rejectedTokens.put(token, TokenValidationFailure.REVOKED);
+                Instant expiresAt = expiryOf(token);
+                if (expiresAt != null) {
+                    recordRevocation(MappedRevocationSet.hash(token), expiresAt);
+                    if (invalidationTransport != null) {
+                        invalidationTransport.publish(InvalidationEvent.tokenRevoked(token, expiresAt));
+                    }
+                }
+            } else if (tokenStore.findById(token).isPresent()) {
+                logger.info("Token is already revoked: {}", token);
+            } else {
+                logger.error("Cannot revoke non-existent token: {}", token);
+                throw TokenRevocationException.TOKEN_NOT_FOUND;
+            }
+        } else {
+            logger.error("Cannot revoke token without a configured store.");
+            throw TokenRevocationException.STORE_NOT_CONFIGURED;
+        }
+    }
+
+    /**
+     * Validates a token, reporting the reason why it is invalid without throwing.
+     *
+     * <p>The structure and the signature of the token are checked first, so forged or garbled tokens are rejected
+     * without parsing their claims or querying the store. Revoked tokens are then rejected when a revocation set
+     * is configured, and the claims are validated against the configured algorithm and issuer list. Finally, if a
+     * token store is configured, the token must also be valid in the store, through
+     * {@link TokenStore#findValidToken(String)}; concurrent validations of the same token share a single store
+     * lookup through a {@link SingleFlight}. The returned {@link Token} carries the custom claims of the token.
+     *
+     * <p>Tokens rejected for a reason that cannot heal are remembered for a short time,
+     * see {@link JwtConfig#setRejectedTokenCache(java.time.Duration, int)}, so clients retrying with them are
+     * rejected without re-running these checks.
+     *
+     * @param token the token to validate
+     * @return the {@link TokenValidation} holding the valid {@link Token}, or the {@link TokenValidationFailure} of the token
+     */
+    public TokenValidation validateToken(String token) {
+        TokenValidationFailure rejection = rejectedTokens.get(token);
+        if (rejection != null) return TokenValidation.invalid(rejection);
+
+        TokenValidation validation = verify(token);
+        if (validation.isValid() && tokenStore != null
+                && tokenLookups.execute(token, () -> tokenStore.findValidToken(token)).isEmpty()) {
+            return TokenValidation.invalid(TokenValidationFailure.NOT_ACTIVE);
+        }
+        return validation;
+    }
+
+    /**
+     * Validates a token from its content alone, with the same rules as {@link #validateToken(String)} except that
+     * the token store is not queried. Revoked tokens are only rejected when a revocation set is configured, so
+     * this suits callers that accept a token revoked through the store until it expires.
+     *
+     * @param token the token to validate
+     * @return the {@link TokenValidation} holding the valid {@link Token}, or the {@link TokenValidationFailure} of the token
+     */
+    public TokenValidation verifyToken(String token) {
+        TokenValidationFailure rejection = rejectedTokens.get(token);
+        if (rejection != null) return TokenValidation.invalid(rejection);
+        return verify(token);
+    }
+
+    /**
+     * Checks the signature of a token, the revocation set and the claims of the token, and remembers the
+     * rejected tokens.
+     */
+    private TokenValidation verify(String token) {
+        TokenValidation validation = check(token);
+        if (!validation.isValid()) {
+            logger.debug("Token rejected: {}", validation.failure());
+            rejectedTokens.put(token, validation.failure());
+        }
+        return validation;
+    }
+
+    /**
+     * Checks the signature of a token, the revocation set and the claims of the token, computing the MAC once.
+     */
+    private TokenValidation check(String token) {
+        TokenValidationFailure failure = verifier.verifySignature(token);
+        if (failure == null && revocationSet != null && revocationSet.contains(token)) {
+            failure = TokenValidationFailure.REVOKED;
+        }
+        return failure != null ? TokenValidation.invalid(failure) : verifier.verifyClaims(token);
+    }
+
+    /**
+     * Validates a batch of tokens at once, with the same rules as {@link #validateToken(String)}.
+     *
+     * <p>The tokens are verified in parallel, each with a single pass over its signature, the revocation set and
+     * its claims. If a token store is configured, the state of the verified tokens
+     * is resolved with a single batched lookup, so the store round trip is shared by the whole batch.
+     * Duplicated tokens are validated only once.
+     *
+     * @param tokens the tokens to validate
+     * @return the validation result of every distinct token, in the iteration order of the given collection
+     */
+    public Map<String, TokenValidation> validateTokens(Collection<String> tokens) {
+        Set<String> distinctTokens = new LinkedHashSet<>(tokens);
+        Map<String, TokenValidation> results = distinctTokens.parallelStream()
+                .collect(Collectors.toMap(Function.identity(), this::check, (first, second) -> first, HashMap::new));
+        if (tokenStore != null) {
+            Set<String> verifiedTokens = new HashSet<>();
+            results.forEach((token, validation) -> {
+                if (validation.isValid()) verifiedTokens.add(token);
+            });
+            Set<String> activeTokens = new HashSet<>();
+            if (!verifiedTokens.isEmpty()) {
+                for (TokenEntity tokenEntity : tokenStore.findAllById(verifiedTokens)) {
+                    if (tokenEntity.isValid()) activeTokens.add(tokenEntity.getToken());
+                }
+            }
+            for (String token : verifiedTokens) {
+                if (!activeTokens.contains(token)) results.put(token, TokenValidation.invalid(TokenValidationFailure.NOT_ACTIVE));
+            }
+        }
+
+        Map<String, TokenValidation> validations = new LinkedHashMap<>();
+        for (String token : distinctTokens) {
+            validations.put(token, results.get(token));
+        }
+        return validations;
+    }
+
+    /**
+     * Retrieves and validates a token, with the same rules as {@link #validateToken(String)}.
+     *
+     * @param token The token to retrieve and validate.
+     * @return An {@link Optional} containing the valid {@link Token}, or an empty {@link Optional} if invalid or not found.
+     */
+    public Optional<Token> getToken(String token) {
+        return validateToken(token).tokenOptional();
+    }
+
+    /**
+     * Signs a token with the standard claims and the custom ones, then saves it in the token store if available.
+     */
+    private Token issueToken(String subject, String issuer, List<String> scope, Map<String, ?> claims) {
         if (subject == null || subject.isEmpty()) {
-            throw new TokenCreationException("Subject must not be null or empty.");
+            throw TokenCreationException.EMPTY_SUBJECT;
+        }
+
+        if (issuer == null || !trustedIssuers.contains(issuer.toLowerCase(Locale.ROOT))) {
+            throw TokenCreationException.UNTRUSTED_ISSUER;
         }
 
-        if (!trustedIssuers.contains(issuer)) {
-            throw new TokenCreationException("Issuer must be in issuers trusted list.");
+        for (String name : claims.keySet()) {
+            if (TokenUtil.RESERVED_CLAIMS.contains(name)) {
+                throw new TokenCreationException("Claim '" + name + "' is reserved.");
+            }
         }
 
         Instant now = Instant.now();
         Instant expiresIn = DateUtil.getExpirationDate(now, expirationAmount, expirationTimeUnit);
 
-        List<String> scope = List.of("name, username");
-
-        String token = JWT.create()
+        JWTCreator.Builder builder = JWT.create();
+        if (!claims.isEmpty()) {
+            try {
+                builder.withPayload(claims);
+            } catch (IllegalArgumentException e) {
+                throw new TokenCreationException("Invalid custom claims: " + e.getMessage());
+            }
+        }
+        String token = builder
                 .withSubject(subject)
                 .withExpiresAt(expiresIn)
                 .withIssuedAt(now)
@@ -140,76 +360,48 @@ public class JwtService {
         }
 
         logger.info("Generating token with subject: {}", subject);
-        return new Token(token, subject, instantToLocalDateTime(now), instantToLocalDateTime(expiresIn), issuer, scope, false);
+        return new Token(token, subject, instantToLocalDateTime(now), instantToLocalDateTime(expiresIn), issuer, scope,
+                false, claims.isEmpty() ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(claims)));
     }
 
     /**
-     * Revokes the specified token, marking it as invalid in the token store.
-     *
-     * <p>If the token does not exist in the store or the store is not configured, an exception is thrown.
+     * Adds a revoked token to the revocation set by its digest, if one is configured and this process owns it.
      *
-     * @param token the token to revoke
-     * @throws TokenRevocationException if the token cannot be revoked or is not found
+     * @param digest the digest of the revoked token
+     * @param expiresAt the expiry of the token
      */
-    @Transactional
-    public void revokeToken(String token) {
-        if (tokenStore != null) {
-            tokenStore.findById(token).ifPresentOrElse(tokenEntity -> {
-                if (tokenEntity.isRevoked()) {
-                    logger.info("Token is already revoked: {}", token);
-                } else {
-                    tokenEntity.setRevoked(true);
-                    tokenStore.save(tokenEntity);
-                    logger.info("Token revoked successfully: {}", token);
-                }
-            }, () -> {
-                logger.error("Cannot revoke non-existent token: {}", token);
-                throw new TokenRevocationException("Token not found in the repository.");
-            });
-        } else {
-            logger.error("Cannot revoke token without a configured store.");
-            throw new TokenRevocationException("Token Store not configured.");
+    private void recordRevocation(long digest, Instant expiresAt) {
+        if (revocationSet != null && !revocationSet.add(digest, expiresAt)) {
+            logger.debug("Revocation set is owned by another process; relying on the invalidation transport.");
         }
     }
 
     /**
-     * Retrieves and validates a token either from the token store or by decoding it directly.
-     *
-     * <p>If a token store is configured, the token is fetched and validated from the store.
-     * Otherwise, the token is decoded and validated using the configured algorithm and issuer list.
+     * Reads the expiry of a token from its claims.
      *
-     * @param token the token to retrieve and validate
-     * @return an {@link Optional} containing the valid {@link Token}, or an empty {@link Optional} if invalid or not found
+     * @param token the token
+     * @return the expiry of the token, or null if it has none or is malformed
      */
-    public TokenValidation validateToken(String token) {
-        Optional<Token> tokenOptional = getToken(token);
-        return new TokenValidation(tokenOptional, tokenOptional.isPresent());
+    private Instant expiryOf(String token) {
+        try {
+            return JWT.decode(token).getExpiresAtAsInstant();
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring revocation of a malformed token: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Retrieves and validates a token from the token store or decodes it if the store is not available.
-     * <p>
-     * If the token is found in the store and is valid, it is returned as a {@link Token}. If not found
-     * or invalid, an empty {@link Optional} is returned. If the token store is not available, the token
-     * is decoded and validated using the configured algorithm and issuer.
+     * Records revocations published by other nodes in the revocation set, from the digest of the token.
      *
-     * @param token The token to retrieve and validate.
-     * @return An {@link Optional} containing the valid {@link Token}, or an empty {@link Optional} if invalid or not found.
+     * @param event the invalidation event received from the transport
      */
-    public Optional<Token> getToken(String token) {
-        if (token == null || token.isEmpty()) {
-            logger.error("Token is null or empty");
-            return Optional.empty();
-        }
-
-        if (tokenStore != null) {
-            Optional<TokenEntity> tokenEntity = tokenStore.findById(token);
-            if (tokenEntity.isEmpty() || !tokenEntity.get().isValid()) {
-                return Optional.empty();
-            }
-            return tokenEntity.map(TokenUtil::convertEntityToToken);
+    private void recordRemoteRevocation(InvalidationEvent event) {
+        if (event.type() != InvalidationEvent.Type.TOKEN_REVOKED) return;
+        try {
+            recordRevocation(event.tokenDigest(), event.tokenExpiresAt());
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring a token revocation event with an invalid key: {}", e.getMessage());
         }
-
-        return validateDecodedToken(algorithm, trustedIssuers, token);
     }
 }
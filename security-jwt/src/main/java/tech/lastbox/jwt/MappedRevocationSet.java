@@ -0,0 +1,456 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Off-heap set of revoked tokens stored in a memory-mapped file, shared by every process of a host.
+ * <p>
+ * The file holds a fixed-width open-addressing table with linear probing. Each 16-byte slot contains a 64-bit
+ * hash of a revoked token followed by the token expiry in epoch seconds; a zero hash marks an empty slot.
+ * Entries past their expiry are ignored by lookups and their slots are reused by later insertions, so the table
+ * only has to be sized for the tokens revoked within one token lifetime.
+ * <p>
+ * A lookup stops at the first empty slot, so the writer keeps at most half of the slots in use: when an
+ * insertion would cross that load factor, it compacts the table, emptying the expired slots and moving the live
+ * entries back towards their home slot. Compaction runs in place and copies an entry before clearing its old
+ * slot, so a writer stopping half-way never loses a revocation; the next writer finishes the job. Lookups are
+ * guarded by a compaction epoch in the header, odd while a compaction runs: a lookup overlapping a compaction is
+ * retried. When the live revocations alone fill three quarters of the table, it is full.
+ * <p>
+ * A single process, the one holding an exclusive {@link FileLock} on the file, writes to the table. Every other
+ * process opens it read-only and probes it lock-free: the writer publishes the hash of a slot with release
+ * semantics after its expiry, and readers load the hash with acquire semantics. A reader becomes the writer
+ * when it adds a token after the previous writer has released the lock. Because the table lives in a file,
+ * revocations survive restarts and cost no heap in any JVM.
+ * <p>
+ * Hash collisions can only make a valid token look revoked, never the opposite; with 64-bit hashes this is
+ * negligible for the table sizes this class supports.
+ */
+public class MappedRevocationSet implements AutoCloseable {
+    private static final int MAGIC = 0x4C535256;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final long HEADER_WAIT_MILLIS = 5_000;
+    private static final int EPOCH_OFFSET = 16;
+    private static final long COMPACTION_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxUsed;
+    private int used;
+    private int compactAt;
+    private final Logger logger = LoggerFactory.getLogger(MappedRevocationSet.class);
+    private FileLock writerLock;
+
+    /**
+     * Opens the revocation set stored in the given file, creating it when it does not exist.
+     * <p>
+     * The first process to open the file becomes its writer and sizes the table to {@code capacity} slots.
+     * Processes opening an existing table use the capacity recorded in the file.
+     *
+     * @param path     the file shared by the processes of the host.
+     * @param capacity the number of slots of a new table; rounded up to a power of two.
+     * @throws IllegalArgumentException if the capacity is not positive or exceeds 2^26 slots.
+     * @throws UncheckedIOException     if the file cannot be opened or mapped.
+     * @throws IllegalStateException    if the file is not a revocation set or is never initialized by its writer.
+     */
+    public MappedRevocationSet(Path path, int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ".");
+        }
+        this.path = path;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.writerLock = tryLock();
+            if (writerLock != null && (channel.size() < HEADER_SIZE || readMagic() != MAGIC)) {
+                int slots = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+                channel.truncate(0);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, slots);
+                INTS.setRelease(buffer, 0, MAGIC);
+                this.capacity = slots;
+            } else {
+                awaitHeader();
+                int slots = readHeaderCapacity();
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                this.capacity = slots;
+            }
+            this.mask = this.capacity - 1;
+            this.maxUsed = this.capacity - this.capacity / 4;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the revocation set " + path + ".", e);
+        }
+        if (writerLock != null) takeOver();
+        logger.info("Revocation set {} opened as {} with {} slots.", path, writerLock != null ? "writer" : "reader", capacity);
+    }
+
+    /**
+     * Checks whether the token has been revoked and is not expired yet.
+     * This is a lock-free probe of the shared table and can be called from any process. A probe overlapping a
+     * compaction is retried once it is over. If the compaction does not end within a second, this process takes
+     * the table over and repairs it when the writer has stopped, or scans every slot when the writer is still
+     * busy.
+     *
+     * @param token the token to check.
+     * @return true if the token is in the set and its expiry has not passed.
+     */
+    public boolean contains(String token) {
+        long hash = hash(token);
+        long now = System.currentTimeMillis() / 1000;
+        long deadline = 0;
+        while (true) {
+            long epoch = (long) LONGS.getAcquire(buffer, EPOCH_OFFSET);
+            if ((epoch & 1) == 0) {
+                long expiry = probe(hash);
+                VarHandle.loadLoadFence();
+                if ((long) LONGS.getAcquire(buffer, EPOCH_OFFSET) == epoch) return expiry > now;
+            } else if (deadline == 0) {
+                deadline = System.nanoTime() + COMPACTION_WAIT_NANOS;
+            } else if (System.nanoTime() - deadline > 0) {
+                if (recover()) continue;
+                return scan(hash) > now;
+            }
+            LockSupport.parkNanos(10_000);
+        }
+    }
+
+    /**
+     * Adds a revoked token to the set until its expiry.
+     * <p>
+     * Only the process holding the file lock writes to the table. If the lock is free, for instance because
+     * the previous writer has stopped, this process takes it over. An insertion that would fill more than half
+     * of the slots first compacts the table.
+     *
+     * @param token     the revoked token.
+     * @param expiresAt the expiry of the token, after which the entry is ignored and its slot reused.
+     * @return true if the token was written, false if another process owns the table.
+     * @throws IllegalStateException if live revocations fill three quarters of the table.
+     */
+    public boolean add(String token, Instant expiresAt) {
+        return add(hash(token), expiresAt);
+    }
+
+    /**
+     * Adds a revoked token to the set by its digest, see {@link #add(String, Instant)}.
+     *
+     * @param hash      the digest of the revoked token, as computed by {@link #hash(String)}.
+     * @param expiresAt the expiry of the token.
+     * @return true if the token was written, false if another process owns the table.
+     * @throws IllegalArgumentException if the digest is zero, which marks empty slots.
+     * @throws IllegalStateException if live revocations fill three quarters of the table.
+     */
+    synchronized boolean add(long hash, Instant expiresAt) {
+        if (hash == 0) throw new IllegalArgumentException("Zero is not a token digest.");
+        if (writerLock == null) {
+            writerLock = tryLock();
+            if (writerLock == null) return false;
+            logger.info("Revocation set {} taken over as writer.", path);
+            takeOver();
+        }
+
+        long expiry = expiresAt.getEpochSecond();
+        long now = System.currentTimeMillis() / 1000;
+        int index = (int) hash & mask;
+        long reusable = -1;
+        long empty = -1;
+        for (int probes = 0; probes < capacity && empty < 0; probes++) {
+            long offset = slotOffset(index);
+            long slotHash = (long) LONGS.getAcquire(buffer, (int) offset);
+            if (slotHash == hash) {
+                buffer.putLong((int) offset + 8, Math.max(expiry, buffer.getLong((int) offset + 8)));
+                return true;
+            }
+            if (slotHash == 0) {
+                empty = offset;
+            } else if (reusable < 0 && buffer.getLong((int) offset + 8) <= now) {
+                reusable = offset;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if (reusable < 0) {
+            if (empty < 0 || used >= compactAt) {
+                compact();
+                if (used >= maxUsed) throw new IllegalStateException("Revocation set " + path + " is full.");
+                return add(hash, expiresAt);
+            }
+            reusable = empty;
+            used++;
+        }
+        write(reusable, hash, expiry);
+        return true;
+    }
+
+    /**
+     * Checks whether this process currently owns the table.
+     *
+     * @return true if this process is the writer.
+     */
+    public synchronized boolean isWriter() {
+        return writerLock != null;
+    }
+
+    /**
+     * Gets the number of slots of the table.
+     *
+     * @return the capacity of the table.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Flushes the table to disk if this process is the writer, then releases the file.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if (writerLock != null) {
+                buffer.force();
+                writerLock.release();
+                writerLock = null;
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close the revocation set " + path + ".", e);
+        }
+    }
+
+    /**
+     * Takes the table over if its writer has stopped in the middle of a compaction, which repairs it.
+     *
+     * @return true if this process is now the writer and the compaction is over.
+     */
+    private synchronized boolean recover() {
+        if (writerLock == null) {
+            writerLock = tryLock();
+            if (writerLock == null) return false;
+            logger.info("Revocation set {} taken over as writer.", path);
+            takeOver();
+        }
+        return ((long) LONGS.getAcquire(buffer, EPOCH_OFFSET) & 1) == 0;
+    }
+
+    /**
+     * Counts the slots in use after this process became the writer, and repairs or compacts the table if the
+     * previous writer stopped during a compaction or left it over the load factor.
+     */
+    private void takeOver() {
+        used = 0;
+        for (int index = 0; index < capacity; index++) {
+            if ((long) LONGS.getAcquire(buffer, (int) slotOffset(index)) != 0) used++;
+        }
+        compactAt = capacity / 2;
+        if (((long) LONGS.getAcquire(buffer, EPOCH_OFFSET) & 1) != 0) {
+            logger.warn("Revocation set {} was left half-compacted; compacting it again.", path);
+            compact();
+        } else if (used >= compactAt) {
+            compact();
+        }
+    }
+
+    /**
+     * Empties the expired slots, then moves every live entry to the first free slot of its probe sequence, while
+     * the epoch is odd. Slots are visited starting after an empty one, so each cluster is processed from its
+     * beginning and an entry is never moved past a hole. Entries are copied before their old slot is cleared, and
+     * a duplicate left by an interrupted compaction is merged into its first copy.
+     */
+    private void compact() {
+        long epoch = (long) LONGS.getAcquire(buffer, EPOCH_OFFSET);
+        if ((epoch & 1) == 0) LONGS.setVolatile(buffer, EPOCH_OFFSET, ++epoch);
+
+        long now = System.currentTimeMillis() / 1000;
+        int start = 0;
+        for (int index = 0; index < capacity; index++) {
+            long offset = slotOffset(index);
+            long slotHash = buffer.getLong((int) offset);
+            if (slotHash != 0 && buffer.getLong((int) offset + 8) <= now) {
+                buffer.putLong((int) offset, 0);
+                buffer.putLong((int) offset + 8, 0);
+                slotHash = 0;
+            }
+            if (slotHash == 0) start = (index + 1) & mask;
+        }
+
+        used = 0;
+        for (int step = 0; step < capacity; step++) {
+            int index = (start + step) & mask;
+            long offset = slotOffset(index);
+            long hash = buffer.getLong((int) offset);
+            if (hash == 0) continue;
+            long expiry = buffer.getLong((int) offset + 8);
+            int target = (int) hash & mask;
+            long targetHash = buffer.getLong((int) slotOffset(target));
+            while (target != index && targetHash != 0 && targetHash != hash) {
+                target = (target + 1) & mask;
+                targetHash = buffer.getLong((int) slotOffset(target));
+            }
+            if (target == index) {
+                used++;
+                continue;
+            }
+            long targetOffset = slotOffset(target);
+            if (targetHash == hash) {
+                buffer.putLong((int) targetOffset + 8, Math.max(expiry, buffer.getLong((int) targetOffset + 8)));
+            } else {
+                write(targetOffset, hash, expiry);
+                used++;
+            }
+            buffer.putLong((int) offset, 0);
+            buffer.putLong((int) offset + 8, 0);
+        }
+
+        LONGS.setRelease(buffer, EPOCH_OFFSET, epoch + 1);
+        compactAt = Math.max(capacity / 2, Math.min(maxUsed, used + capacity / 8));
+        logger.info("Revocation set {} compacted: {} of {} slots in use.", path, used, capacity);
+    }
+
+    /**
+     * Probes the table from the home slot of a hash to the first empty slot.
+     *
+     * @return the expiry of the hash, or zero if it is not in the table.
+     */
+    private long probe(long hash) {
+        int index = (int) hash & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            long offset = slotOffset(index);
+            long slotHash = (long) LONGS.getAcquire(buffer, (int) offset);
+            if (slotHash == 0) return 0;
+            if (slotHash == hash) return buffer.getLong((int) offset + 8);
+            index = (index + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Scans every slot for a hash, regardless of empty slots.
+     *
+     * @return the latest expiry of the hash, or zero if it is not in the table.
+     */
+    private long scan(long hash) {
+        long expiry = 0;
+        for (int index = 0; index < capacity; index++) {
+            long offset = slotOffset(index);
+            if ((long) LONGS.getAcquire(buffer, (int) offset) == hash) {
+                expiry = Math.max(expiry, buffer.getLong((int) offset + 8));
+            }
+        }
+        return expiry;
+    }
+
+    /**
+     * Writes a slot: the expiry first, then the hash with release semantics, so a reader that sees the hash
+     * also sees its expiry.
+     */
+    private void write(long offset, long hash, long expiry) {
+        buffer.putLong((int) offset + 8, expiry);
+        LONGS.setRelease(buffer, (int) offset, hash);
+    }
+
+    private FileLock tryLock() {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not lock the revocation set " + path + ".", e);
+        }
+    }
+
+    /**
+     * Waits for the writer to initialize the header of a table that is being created by another process.
+     */
+    private void awaitHeader() throws IOException {
+        long deadline = System.currentTimeMillis() + HEADER_WAIT_MILLIS;
+        while (channel.size() < HEADER_SIZE || readMagic() != MAGIC) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("File " + path + " is not an initialized revocation set.");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for revocation set " + path + ".", e);
+            }
+        }
+    }
+
+    private int readMagic() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        return (int) INTS.getAcquire(header, 0);
+    }
+
+    private int readHeaderCapacity() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        int slots = header.getInt(8);
+        if (header.getInt(4) != VERSION || slots <= 0 || Integer.bitCount(slots) != 1 || slots > MAX_CAPACITY) {
+            throw new IllegalStateException("File " + path + " has an unsupported revocation set layout.");
+        }
+        return slots;
+    }
+
+    private static long slotOffset(int index) {
+        return HEADER_SIZE + (long) index * SLOT_SIZE;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the token followed by a murmur finalizer; zero is reserved for empty slots.
+     * Also used as the token digest of the {@link RejectedTokenCache}.
+     */
+    static long hash(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded, short-lived cache of the tokens rejected by the {@link JwtService}, keyed by a 64-bit digest of the
+ * token, so clients retrying with the same bad token are answered without re-running the crypto or querying the
+ * token store.
+ * <p>
+ * Only failures that cannot heal while the token is retried are cached: a token that is malformed, badly
+ * signed, issued by an untrusted issuer, expired or revoked stays so. Tokens that are not valid yet are never
+ * cached, and neither are tokens missing from the store ({@link TokenValidationFailure#NOT_ACTIVE}): the store
+ * write of a token just issued may not be visible yet, e.g. behind replica lag or an uncommitted transaction. A cached
+ * rejection never makes a token valid, and a digest collision can at worst reject a valid token for the time to
+ * live, which is negligible with 64-bit digests.
+ * <p>
+ * When the cache is full, a {@link CacheTrimmer} drops expired entries first, then arbitrary ones, down to three
+ * quarters of its capacity, so a flood of distinct bad tokens does not pay a scan of the cache per rejection.
+ */
+final class RejectedTokenCache {
+    static final Duration DEFAULT_TTL = Duration.ofSeconds(10);
+    static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private static final Set<TokenValidationFailure> CACHEABLE_FAILURES = EnumSet.of(
+            TokenValidationFailure.MALFORMED, TokenValidationFailure.INVALID_SIGNATURE,
+            TokenValidationFailure.ALGORITHM_MISMATCH, TokenValidationFailure.UNTRUSTED_ISSUER,
+            TokenValidationFailure.EXPIRED, TokenValidationFailure.REVOKED);
+
+    private final ConcurrentHashMap<Long, Rejection> rejections = new ConcurrentHashMap<>();
+    private final CacheTrimmer<Rejection> trimmer = new CacheTrimmer<>(Rejection::expiresAt);
+    private final long ttlNanos;
+    private final int maxSize;
+
+    /**
+     * Constructs a rejected token cache.
+     *
+     * @param ttl     how long a rejection is remembered; zero disables the cache.
+     * @param maxSize the maximum number of remembered rejections; zero disables the cache.
+     */
+    RejectedTokenCache(Duration ttl, int maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the failure remembered for a token.
+     *
+     * @param token the token.
+     * @return the failure of the token, or null if it is not cached or has expired.
+     */
+    TokenValidationFailure get(String token) {
+        if (token == null || rejections.isEmpty()) return null;
+        Long digest = MappedRevocationSet.hash(token);
+        Rejection rejection = rejections.get(digest);
+        if (rejection == null) return null;
+        if (System.nanoTime() - rejection.expiresAt() >= 0) {
+            rejections.remove(digest, rejection);
+            return null;
+        }
+        return rejection.failure();
+    }
+
+    /**
+     * Remembers the failure of a token, if it is cacheable and the cache is enabled.
+     *
+     * @param token   the rejected token.
+     * @param failure the reason why it was rejected.
+     */
+    void put(String token, TokenValidationFailure failure) {
+        if (token == null || ttlNanos == 0 || maxSize == 0 || !CACHEABLE_FAILURES.contains(failure)) return;
+        rejections.put(MappedRevocationSet.hash(token), new Rejection(failure, System.nanoTime() + ttlNanos));
+        trimmer.trim(rejections, maxSize);
+    }
+
+    /**
+     * Forgets every rejection.
+     */
+    void clear() {
+        rejections.clear();
+    }
+
+    /**
+     * Gets the number of remembered rejections, including expired ones not dropped yet.
+     *
+     * @return the number of cached rejections.
+     */
+    int size() {
+        return rejections.size();
+    }
+
+    /**
+     * A remembered rejection.
+     *
+     * @param failure   the reason why the token was rejected.
+     * @param expiresAt the {@link System#nanoTime()} after which the entry is stale.
+     */
+    private record Rejection(TokenValidationFailure failure, long expiresAt) {}
+}
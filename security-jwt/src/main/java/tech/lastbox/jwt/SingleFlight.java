@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent lookups of the same key into a single call.
+ * <p>
+ * The first thread to request a key becomes the leader of the flight and runs the lookup on its own thread;
+ * threads requesting the same key while the flight is in progress wait for its result instead of running the
+ * lookup again. The flight is forgotten as soon as it completes, so this is not a cache: a request arriving
+ * after the result was published starts a new lookup. Bursts of requests carrying the same token therefore
+ * cost one store or repository round trip instead of one per request.
+ * <p>
+ * Exceptions thrown by the lookup are rethrown to the leader and to every waiter.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the results.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the lookup of a key, or waits for the lookup of the same key already in flight.
+     *
+     * @param key    the key to look up.
+     * @param lookup the lookup, run by the leader of the flight only.
+     * @return the result of the lookup, shared by every caller of the flight.
+     */
+    public V execute(K key, Supplier<? extends V> lookup) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) return await(inFlight);
+
+        try {
+            V result = lookup.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Gets the number of lookups in flight.
+     *
+     * @return the number of keys being looked up.
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package tech.lastbox.jwt;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a JWT (JSON Web Token) in the system.
@@ -22,6 +23,7 @@ import java.util.List;
  *     <li>{@code issuer}: The entity that issued the token.</li>
  *     <li>{@code scope}: A list of string values representing the scopes/permissions granted by the token.</li>
  *     <li>{@code isRevoked}: A boolean flag indicating whether the token has been revoked.</li>
+ *     <li>{@code claims}: The custom claims of the token, such as roles, by name; empty if it has none.</li>
  * </ul>
  *
  * <p>
@@ -36,5 +38,23 @@ public record Token(
         LocalDateTime expiresIn,
         String issuer,
         List<String> scope,
-        boolean isRevoked
-) {}
+        boolean isRevoked,
+        Map<String, Object> claims
+) {
+
+    /**
+     * Constructs a token without custom claims.
+     *
+     * @param token the string representation of the token.
+     * @param subject the subject of the token.
+     * @param issuedAt when the token was issued.
+     * @param expiresIn when the token expires.
+     * @param issuer the issuer of the token.
+     * @param scope the scopes granted by the token.
+     * @param isRevoked whether the token has been revoked.
+     */
+    public Token(String token, String subject, LocalDateTime issuedAt, LocalDateTime expiresIn, String issuer,
+                 List<String> scope, boolean isRevoked) {
+        this(token, subject, issuedAt, expiresIn, issuer, scope, isRevoked, Map.of());
+    }
+}
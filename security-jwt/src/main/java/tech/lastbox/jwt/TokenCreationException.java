@@ -1,7 +1,20 @@
 package tech.lastbox.jwt;
 
-class TokenCreationException extends RuntimeException {
+/**
+ * Thrown when a token cannot be generated because of invalid input: an empty subject or scope, or an untrusted
+ * issuer. It is a client error, so it carries no stack trace; the few possible failures are preallocated.
+ */
+public class TokenCreationException extends RuntimeException {
+    static final TokenCreationException EMPTY_SUBJECT = new TokenCreationException("Subject must not be null or empty.");
+    static final TokenCreationException EMPTY_SCOPE = new TokenCreationException("Scope must not be null or empty.");
+    static final TokenCreationException UNTRUSTED_ISSUER = new TokenCreationException("Issuer must be in issuers trusted list.");
+
+    /**
+     * Constructs a stackless {@code TokenCreationException}.
+     *
+     * @param message the reason why the token cannot be generated.
+     */
     public TokenCreationException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -17,6 +17,7 @@ import java.util.List;
 public class TokenEntity {
 
     @Id
+    @Column(length = 2048)
     private String token;
 
     private Instant issuedAt;
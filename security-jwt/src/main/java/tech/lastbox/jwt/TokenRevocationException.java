@@ -1,7 +1,16 @@
 package tech.lastbox.jwt;
 
+/**
+ * Thrown when a token cannot be revoked. It carries no stack trace; the few possible failures are preallocated.
+ */
 class TokenRevocationException extends RuntimeException {
+    static final TokenRevocationException INVALID_TOKEN = new TokenRevocationException("Token is not valid.");
+    static final TokenRevocationException TOKEN_NOT_FOUND = new TokenRevocationException("Token not found in the repository.");
+    static final TokenRevocationException STORE_NOT_CONFIGURED = new TokenRevocationException("Token Store not configured.");
+    static final TokenRevocationException REVOCATION_NOT_SHARED = new TokenRevocationException(
+            "Revocation set is written by another process and no cluster-wide invalidation transport is configured.");
+
     public TokenRevocationException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -1,5 +1,7 @@
 package tech.lastbox.jwt;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -26,4 +28,55 @@ public interface TokenStore {
      * @return an {@link Optional} containing the found token entity, or {@link Optional#empty()} if not found.
      */
     Optional<TokenEntity> findById(String token);
+
+    /**
+     * Finds a token that is stored, not revoked and not expired, as a {@link Token}.
+     * <p>
+     * The default implementation loads the token entity and checks it. Stores backed by a database can
+     * filter in the query and map the row straight to a {@link Token}.
+     *
+     * @param token the token string to be retrieved.
+     * @return an {@link Optional} containing the valid token, or {@link Optional#empty()} if it is not stored or not valid.
+     */
+    default Optional<Token> findValidToken(String token) {
+        return findById(token)
+                .filter(TokenEntity::isValid)
+                .map(TokenUtil::convertEntityToToken);
+    }
+
+    /**
+     * Marks a stored token as revoked.
+     * <p>
+     * The default implementation loads the token entity and saves it back. Stores backed by a database can
+     * revoke it with a single update instead.
+     *
+     * @param token the token string to be revoked.
+     * @return true if the token was revoked by this call, false if it is not stored or already revoked.
+     */
+    default boolean revoke(String token) {
+        Optional<TokenEntity> tokenEntity = findById(token);
+        if (tokenEntity.isEmpty() || tokenEntity.get().isRevoked()) {
+            return false;
+        }
+        tokenEntity.get().setRevoked(true);
+        save(tokenEntity.get());
+        return true;
+    }
+
+    /**
+     * Finds every token entity whose token string is in the given collection.
+     * <p>
+     * The default implementation looks each token up individually. Stores backed by a database should
+     * resolve the whole batch with a single query instead.
+     *
+     * @param tokens the token strings of the entities to be retrieved.
+     * @return the found token entities, in no particular order; tokens that are not stored are omitted.
+     */
+    default List<TokenEntity> findAllById(Iterable<String> tokens) {
+        List<TokenEntity> tokenEntities = new ArrayList<>();
+        for (String token : tokens) {
+            findById(token).ifPresent(tokenEntities::add);
+        }
+        return tokenEntities;
+    }
 }
@@ -16,27 +16,30 @@
 
 package tech.lastbox.jwt;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.RegisteredClaims;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import static tech.lastbox.jwt.DateUtil.instantToLocalDateTime;
 
 /**
  * Utility class for handling JWT (JSON Web Token) operations such as converting JWT objects to
- * the internal Token representation, validating tokens, and managing JWT-specific data.
+ * the internal Token representation and managing JWT-specific data.
  * <p>
  * This class is primarily responsible for transforming data between JWT format and application
- * entities, as well as validating the authenticity of a token using the specified algorithm
- * and trusted issuers.
+ * entities. Tokens are verified by the {@link HmacTokenVerifier}.
  */
 class TokenUtil {
-    private static final Logger logger = LoggerFactory.getLogger(TokenUtil.class);
+    /**
+     * Names of the claims set by {@link JwtService} itself, which cannot be used as custom claims.
+     */
+    static final Set<String> RESERVED_CLAIMS = Set.of(RegisteredClaims.ISSUER, RegisteredClaims.SUBJECT,
+            RegisteredClaims.EXPIRES_AT, RegisteredClaims.NOT_BEFORE, RegisteredClaims.ISSUED_AT, RegisteredClaims.JWT_ID,
+            RegisteredClaims.AUDIENCE, "scope");
 
     /**
      * Converts a decoded JWT (JSON Web Token) into a {@link Token} object.
@@ -51,7 +54,25 @@ class TokenUtil {
         return new Token(decodedJWT.getToken(), decodedJWT.getSubject(),
                 instantToLocalDateTime(decodedJWT.getIssuedAtAsInstant()),
                 instantToLocalDateTime(decodedJWT.getExpiresAtAsInstant()),
-                decodedJWT.getIssuer(), decodedJWT.getClaim("scope").asList(String.class), false);
+                decodedJWT.getIssuer(), decodedJWT.getClaim("scope").asList(String.class), false,
+                customClaims(decodedJWT));
+    }
+
+    /**
+     * Extracts the custom claims of a decoded JWT, every claim but the {@link #RESERVED_CLAIMS}.
+     * Values are converted to their plain Java form: strings, numbers, booleans, lists and maps.
+     *
+     * @param decodedJWT The decoded JWT object.
+     * @return The custom claims by name, or an empty map if the token has none.
+     */
+    static Map<String, Object> customClaims(DecodedJWT decodedJWT) {
+        Map<String, Claim> claims = decodedJWT.getClaims();
+        if (claims.size() <= RESERVED_CLAIMS.size() && RESERVED_CLAIMS.containsAll(claims.keySet())) return Map.of();
+        Map<String, Object> customClaims = new LinkedHashMap<>();
+        claims.forEach((name, claim) -> {
+            if (!RESERVED_CLAIMS.contains(name) && !claim.isNull()) customClaims.put(name, claim.as(Object.class));
+        });
+        return Map.copyOf(customClaims);
     }
 
     /**
@@ -69,37 +90,4 @@ class TokenUtil {
                 instantToLocalDateTime(tokenEntity.getExpiresIn()),
                 tokenEntity.getIssuer(), tokenEntity.getScope(), tokenEntity.isRevoked());
     }
-
-    /**
-     * Validates a JWT by checking its issuer and verifying it with the provided algorithm.
-     * <p>
-     * This method ensures that the token's issuer is in the list of trusted issuers and that the
-     * token is properly signed using the provided algorithm. If valid, it returns an {@link Optional}
-     * containing the corresponding {@link Token}. Otherwise, it returns an empty {@link Optional}.
-     *
-     * @param algorithm The algorithm to be used for token verification.
-     * @param trustedIssuers A set of trusted issuers to validate the token's issuer.
-     * @param token The JWT to be validated.
-     * @return An {@link Optional} containing a valid {@link Token} if the token is valid, otherwise an empty {@link Optional}.
-     */
-    public static Optional<Token> validateDecodedToken(Algorithm algorithm, HashSet<String> trustedIssuers, String token) {
-        try {
-            String issuer = JWT.decode(token).getIssuer();
-
-            if (trustedIssuers.contains(issuer.toLowerCase())) {
-                DecodedJWT decodedJWT = JWT.require(algorithm)
-                        .withIssuer(issuer)
-                        .build()
-                        .verify(token);
-                return Optional.of(convertDecodedJwtToToken(decodedJWT));
-            } else {
-                logger.error("Token validation failed: Issuer '{}' is not trusted. Token: {}", issuer, token);
-                return Optional.empty();
-            }
-        } catch (Exception e) {
-            logger.error("Token validation failed for token '{}'. Exception: {}. Possible causes: 1. Invalid signature or 2. Issuer mismatch. Error details: {}",
-                    token, e.getLocalizedMessage(), e.getMessage(), e);
-            return Optional.empty();
-        }
-    }
 }
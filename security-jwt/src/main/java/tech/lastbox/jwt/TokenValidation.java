@@ -4,10 +4,39 @@ import java.util.Optional;
 
 /**
  * A record representing the validation result of a JWT (JSON Web Token).
- * It encapsulates the token (if valid) and a flag indicating whether the token is valid.
+ * It encapsulates the token (if valid), a flag indicating whether the token is valid and, otherwise, the reason
+ * why it was rejected. The result of each failure is preallocated, so rejecting a token allocates nothing.
  *
  * @param tokenOptional An optional containing the token if it is valid, or empty if invalid.
  * @param isValid A flag indicating whether the token is valid.
+ * @param failure The reason why the token is invalid, or {@code null} if it is valid.
  */
-public record TokenValidation(Optional<Token> tokenOptional, boolean isValid) {
+public record TokenValidation(Optional<Token> tokenOptional, boolean isValid, TokenValidationFailure failure) {
+    private static final TokenValidation[] FAILURES = new TokenValidation[TokenValidationFailure.values().length];
+
+    static {
+        for (TokenValidationFailure failure : TokenValidationFailure.values()) {
+            FAILURES[failure.ordinal()] = new TokenValidation(Optional.empty(), false, failure);
+        }
+    }
+
+    /**
+     * Creates the result of a valid token.
+     *
+     * @param token the valid token.
+     * @return a valid {@code TokenValidation} holding the token.
+     */
+    public static TokenValidation valid(Token token) {
+        return new TokenValidation(Optional.of(token), true, null);
+    }
+
+    /**
+     * Gets the result of a token rejected for the given reason.
+     *
+     * @param failure the reason why the token is invalid.
+     * @return the shared invalid {@code TokenValidation} of that reason.
+     */
+    public static TokenValidation invalid(TokenValidationFailure failure) {
+        return FAILURES[failure.ordinal()];
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 LastBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tech.lastbox.jwt;
+
+/**
+ * Reason why a token failed validation, reported by {@link TokenValidation#failure()}.
+ * <p>
+ * Reasons are determined without throwing: the cheap structural and signature checks run first, so a forged or
+ * garbled token is rejected before any claim is parsed or any store is queried.
+ */
+public enum TokenValidationFailure {
+
+    /** The token is null or empty. */
+    MISSING,
+
+    /** The token is not three base64url segments separated by dots, or its claims cannot be parsed. */
+    MALFORMED,
+
+    /** The signature does not match the token, or was not produced with the configured key. */
+    INVALID_SIGNATURE,
+
+    /** The token was signed with the configured key but declares another algorithm in its header. */
+    ALGORITHM_MISMATCH,
+
+    /** The issuer of the token is missing or not in the trusted issuers. */
+    UNTRUSTED_ISSUER,
+
+    /** The expiry of the token has passed. */
+    EXPIRED,
+
+    /** The token is not valid yet: its issue or not-before time is in the future. */
+    NOT_YET_VALID,
+
+    /** The token is in the revocation set. */
+    REVOKED,
+
+    /** The token is not stored, or is revoked or expired in the token store. */
+    NOT_ACTIVE
+}